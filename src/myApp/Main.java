@@ -1,23 +1,58 @@
 package myApp;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import myLib.*;
 
 public class Main {
     private static final Scanner scanner = new Scanner(System.in);
-    private static final IDGenerator idGenerator = new IDGenerator();
-    private static final PasswordManager passwordManager = new PasswordManager();
-    private static final Map<String, Account> accounts = new HashMap<>();
-    private static final Map<String, Investment> investments = new HashMap<>();
-    private static final Map<String, notificationType> userNotificationPreferences = new HashMap<>();
+    private static final IdSource idGenerator = createIdGenerator();
+    private static final Path DATA_DIR = Paths.get("data");
+    private static final Path SNAPSHOT_DIR = DATA_DIR.resolve("snapshots");
+    private static final CredentialStore credentialStore = new CredentialStore(DATA_DIR.resolve("credentials"));
+    private static final PasswordManager passwordManager = new PasswordManager(credentialStore);
+    private static final int SNAPSHOT_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final long SNAPSHOT_INTERVAL_MINUTES = 5;
+    private static final int HISTORY_PAGE_SIZE = 20;
+    // Console logins all come from the same terminal
+    private static final String LOGIN_SOURCE = "console";
+    private static final EndOfDayClose endOfDayClose = new EndOfDayClose(DATA_DIR.resolve("eod"), SNAPSHOT_THREADS);
+    private static final PostingLog postingLog = new PostingLog(DATA_DIR.resolve("wal"), SyncPolicy.BATCHED);
+    private static final TransferEngine transferEngine = new TransferEngine();
+    private static final AccountRegistry accounts = new AccountRegistry();
+    private static final Map<String, Investment> investments = new ConcurrentHashMap<>();
+    private static final Map<String, notificationType> userNotificationPreferences = new ConcurrentHashMap<>();
+    private static final SessionManager sessionManager = new SessionManager();
+    private static final PriceHistory priceHistory = new PriceHistory();
+    private static final PriceFeed priceFeed = new PriceFeed(priceHistory);
+    private static final PortfolioValuation valuation = new PortfolioValuation();
     private static String currentUserId = null;
+    private static String currentSessionToken = null;
     private static String currentAccountId = null;
 
     public static void main(String[] args) {
         // Clear screen and show welcome banner
         clearScreen();
         showWelcomeBanner();
+        restoreState();
+        catchUpEndOfDay();
+        scheduleSnapshots();
+        scheduleEndOfDay();
+        startPriceFeed();
 
         do {
             if (currentUserId == null) {
@@ -28,6 +63,100 @@ public class Main {
         } while (true);
     }
 
+    // Nodes sharing a lease file draw ids from one persisted range; otherwise ids are time based
+    private static IdSource createIdGenerator() {
+        String leaseFile = System.getProperty("mcash.idLeaseFile");
+        if (leaseFile != null) {
+            return new LeasedIDGenerator(new FileIdBlockCoordinator(Paths.get(leaseFile)));
+        }
+        return new IDGenerator();
+    }
+
+    private static void restoreState() {
+        BankSnapshot.State state = BankSnapshot.restore(SNAPSHOT_DIR, postingLog, SNAPSHOT_THREADS);
+        for (Account account : state.getAccounts().values()) {
+            accounts.register(account);
+        }
+        userNotificationPreferences.putAll(state.getPreferences());
+        for (Account account : accounts.getAll()) {
+            for (Investment investment : account.getInvestments()) {
+                investments.put(investment.getInvestmentId(), investment);
+                priceFeed.register(investment);
+            }
+            valuation.attach(account);
+        }
+
+        if (!accounts.isEmpty()) {
+            showInfo("Restored " + accounts.size() + " accounts (" + state.getReplayedRecords() + " log records replayed).");
+        }
+    }
+
+    private static void scheduleSnapshots() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(Main::saveSnapshot, SNAPSHOT_INTERVAL_MINUTES, SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    // Ticks can also be streamed to a local port given with -Dmcash.priceFeedPort
+    private static void startPriceFeed() {
+        priceFeed.start();
+        Integer port = Integer.getInteger("mcash.priceFeedPort");
+        if (port != null) {
+            try {
+                showInfo("Listening for price ticks on localhost:" + priceFeed.listen(port));
+            } catch (IOException e) {
+                showError("Unable to listen for price ticks: " + e.getMessage());
+            }
+        }
+    }
+
+    // Closes the previous business date shortly after each midnight, along with any date missed while down
+    private static void scheduleEndOfDay() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "end-of-day");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long delayMillis = Duration.between(LocalDateTime.now(), LocalDate.now().plusDays(1).atTime(LocalTime.MIDNIGHT)).toMillis();
+        scheduler.scheduleAtFixedRate(Main::catchUpEndOfDay,
+                delayMillis, TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    // Resumes an interrupted close and closes every business date up to yesterday that has not been closed
+    private static synchronized void catchUpEndOfDay() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        try {
+            for (EndOfDayClose.Result result : endOfDayClose.catchUp(accounts.getAll(), yesterday)) {
+                System.out.println("End-of-day close for " + result.getBusinessDate() + ": " + result.getAccountsClosed()
+                        + " accounts, interest $" + Money.toDouble(result.getInterestCents())
+                        + ", fees $" + Money.toDouble(result.getFeeCents()));
+            }
+            endOfDayClose.pruneCheckpoints(yesterday);
+        } catch (RuntimeException e) {
+            System.out.println("End-of-day close failed: " + e.getMessage());
+        }
+    }
+
+    private static synchronized void saveSnapshot() {
+        try {
+            BankSnapshot.write(SNAPSHOT_DIR, accounts.getAll(), userNotificationPreferences,
+                    postingLog, SNAPSHOT_THREADS);
+        } catch (RuntimeException e) {
+            System.out.println("Snapshot failed: " + e.getMessage());
+        }
+    }
+
+    private static void openAccount(Account account) {
+        // Register before logging the open record so a concurrent snapshot sees one or the other
+        accounts.register(account);
+        postingLog.appendAccountOpen(account);
+        account.attachPostingLog(postingLog);
+        valuation.attach(account);
+    }
+
     private static void clearScreen() {
         // ANSI escape code to clear screen
         System.out.print("\033[2J\033[H");
@@ -65,6 +194,11 @@ public class Main {
                     break;
                 case "3":
                     showExitMessage();
+                    saveSnapshot();
+                    postingLog.close();
+                    passwordManager.shutdown();
+                    priceFeed.close();
+                    credentialStore.close();
                     System.exit(0);
                     break;
                 default:
@@ -98,6 +232,17 @@ public class Main {
 
     private static void showMainMenu() {
         while (true) {
+            // Each request is checked against the session token rather than the password
+            String refreshedToken = sessionManager.refresh(currentSessionToken);
+            if (refreshedToken == null) {
+                currentUserId = null;
+                currentAccountId = null;
+                currentSessionToken = null;
+                showError("Your session has expired. Please log in again.");
+                return;
+            }
+            currentSessionToken = refreshedToken;
+
             System.out.println("\n                     \033[1;35mMAIN DASHBOARD\033[0m");
             System.out.println("  \033[1;36mWelcome back, " + currentUserId + "\033[0m");
             System.out.println();
@@ -148,6 +293,8 @@ public class Main {
                     notificationSettings();
                     break;
                 case "7":
+                    sessionManager.revoke(currentSessionToken);
+                    currentSessionToken = null;
                     currentUserId = null;
                     currentAccountId = null;
                     showSuccess("Logged out successfully.");
@@ -188,7 +335,10 @@ public class Main {
                 continue;
             }
 
-            if (passwordManager.registerUser(username, password)) {
+            Boolean registered = awaitHashing(passwordManager.registerUserAsync(username, password));
+            if (registered == null) {
+                showError("System busy. Please try again in a moment.");
+            } else if (registered) {
                 showSuccess("User registered successfully! Welcome to MCASH Banking!");
                 break;
             } else {
@@ -227,13 +377,37 @@ public class Main {
                 continue;
             }
 
-            if (passwordManager.authenticateUser(username, password)) {
-                currentUserId = username; // Use the actual username as userId
-                showSuccess("Login successful! Welcome back, " + username + "!");
-                break;
-            } else {
-                showError("Invalid credentials. Please try again.");
+            LoginStatus status = passwordManager.authenticateUserAsync(username, password, LOGIN_SOURCE).join();
+            switch (status) {
+                case AUTHENTICATED:
+                    currentUserId = username; // Use the actual username as userId
+                    currentSessionToken = sessionManager.createSession(username);
+                    showSuccess("Login successful! Welcome back, " + username + "!");
+                    return;
+                case LOCKED_OUT:
+                    showError("Too many failed attempts. This account is temporarily locked.");
+                    break;
+                case RATE_LIMITED:
+                    showError("Too many login attempts. Please wait before trying again.");
+                    break;
+                case BUSY:
+                    showError("System busy. Please try again in a moment.");
+                    break;
+                default:
+                    showError("Invalid credentials. Please try again.");
+            }
+        }
+    }
+
+    // Returns null when the password hashing pool is saturated and turned the request away
+    private static Boolean awaitHashing(CompletableFuture<Boolean> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                return null;
             }
+            throw e;
         }
     }
 
@@ -299,7 +473,7 @@ public class Main {
 
             double overdraftLimit = Double.parseDouble(limitStr);
             CheckingAccount account = new CheckingAccount(accountId, currentUserId, overdraftLimit, passwordHash);
-            accounts.put(accountId, account);
+            openAccount(account);
             System.out.println("Checking account created successfully! Account ID: " + accountId);
             break;
         }
@@ -317,7 +491,7 @@ public class Main {
 
             double interestRate = Double.parseDouble(rateStr);
             SavingsAccount account = new SavingsAccount(accountId, currentUserId, interestRate, passwordHash);
-            accounts.put(accountId, account);
+            openAccount(account);
             System.out.println("Savings account created successfully! Account ID: " + accountId);
             break;
         }
@@ -369,8 +543,9 @@ public class Main {
             System.out.println("  \033[1;33m[2]\033[0m Make Withdrawal");
             System.out.println("  \033[1;34m[3]\033[0m View Current Balance");
             System.out.println("  \033[1;35m[4]\033[0m View Transaction History");
+            System.out.println("  \033[1;37m[5]\033[0m Transfer Funds");
             if (account instanceof SavingsAccount) {
-                System.out.println("  \033[1;36m[5]\033[0m Apply Interest (Savings Only)");
+                System.out.println("  \033[1;36m[6]\033[0m Apply Interest (Savings Only)");
             }
             System.out.println("  \033[1;31m[0]\033[0m Back to Main Menu");
             System.out.print("\n\033[1;36m» Choose option: \033[0m");
@@ -391,6 +566,9 @@ public class Main {
                     viewTransactionHistory(account);
                     break;
                 case "5":
+                    transfer(account);
+                    break;
+                case "6":
                     if (account instanceof SavingsAccount) {
                         applyInterest((SavingsAccount) account);
                     } else {
@@ -501,21 +679,84 @@ public class Main {
         }
     }
 
+    private static void transfer(Account account) {
+        System.out.println("\n                    \033[1;37mTRANSFER FUNDS\033[0m");
+        System.out.println("Current Balance: $" + String.format("%,.2f", account.getBalance()));
+        System.out.println();
+
+        while (true) {
+            System.out.print("\033[1;36mEnter destination account ID: \033[0m");
+            String destinationId = scanner.nextLine().trim();
+
+            if (destinationId.equalsIgnoreCase("back")) {
+                return;
+            }
+
+            Account destination = accounts.get(destinationId);
+            if (destination == null) {
+                showError("Account not found. Please try again.");
+                continue;
+            }
+
+            System.out.print("\033[1;36mEnter transfer amount: $\033[0m");
+            String amountStr = scanner.nextLine().trim();
+
+            if (!Utility.validateDouble(amountStr)) {
+                showError("Invalid amount. Please try again.");
+                continue;
+            }
+
+            double amount = Double.parseDouble(amountStr);
+            String transactionId = idGenerator.generateTransactionId();
+
+            switch (transferEngine.transfer(account, destination, amount, transactionId)) {
+                case POSTED:
+                    showSuccess("Transfer successful! Amount: $" + String.format("%.2f", amount));
+                    showInfo("New balance: $" + String.format("%.2f", account.getBalance()));
+                    return;
+                case INSUFFICIENT_FUNDS:
+                    showError("Insufficient funds for this transfer.");
+                    return;
+                case SAME_ACCOUNT:
+                    showError("Cannot transfer to the same account. Please try again.");
+                    break;
+                default:
+                    showError("Amount must be positive. Please try again.");
+            }
+        }
+    }
+
     private static void applyInterest(SavingsAccount account) {
         String transactionId = idGenerator.generateTransactionId();
         account.applyInterest(transactionId);
     }
 
     private static void viewTransactionHistory(Account account) {
-        List<Transaction> transactions = account.getTransactionHistory();
-        if (transactions.isEmpty()) {
+        HistoryPage page = account.queryHistory(new HistoryQuery.Builder().limit(HISTORY_PAGE_SIZE).build());
+        if (page.getTransactions().isEmpty()) {
             System.out.println("No transactions found.");
             return;
         }
 
-        System.out.println("\n--- Transaction History ---");
-        for (Transaction transaction : transactions) {
-            System.out.println(transaction.getTransactionDetails());
+        System.out.println("\n--- Transaction History (newest first) ---");
+        while (true) {
+            for (Transaction transaction : page.getTransactions()) {
+                System.out.println(transaction.getTransactionDetails());
+            }
+
+            if (!page.hasMore()) {
+                return;
+            }
+
+            System.out.print("\033[1;36m» Press Enter for more, or type 'back' to return: \033[0m");
+            if (scanner.nextLine().trim().equalsIgnoreCase("back")) {
+                return;
+            }
+
+            page = account.queryHistory(new HistoryQuery.Builder()
+                    .limit(HISTORY_PAGE_SIZE)
+                    .cursor(page.getNextCursor())
+                    .build());
         }
     }
 
@@ -527,6 +768,9 @@ public class Main {
             System.out.println("  \033[1;33m[2]\033[0m Create Bond Investment");
             System.out.println("  \033[1;36m[3]\033[0m View My Investments");
             System.out.println("  \033[1;35m[4]\033[0m Update Investment Price");
+            System.out.println("  \033[1;34m[5]\033[0m Import Price File");
+            System.out.println("  \033[1;32m[6]\033[0m View Price History");
+            System.out.println("  \033[1;33m[7]\033[0m Sell Investment");
             System.out.println("  \033[1;31m[0]\033[0m Back to Main Menu");
             System.out.print("\n\033[1;36m» Choose option: \033[0m");
 
@@ -545,6 +789,15 @@ public class Main {
                 case "4":
                     updateInvestmentPrice();
                     break;
+                case "5":
+                    importPriceFile();
+                    break;
+                case "6":
+                    viewPriceHistory();
+                    break;
+                case "7":
+                    sellInvestment();
+                    break;
                 case "0":
                     return;
                 default:
@@ -553,6 +806,54 @@ public class Main {
         }
     }
 
+    private static void importPriceFile() {
+        System.out.print("Enter price file path (TICKER,price per line): ");
+        String path = scanner.nextLine().trim();
+        if (!Utility.validateString(path)) {
+            showError("Invalid path.");
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            long lines = priceFeed.ingest(Paths.get(path));
+            priceFeed.awaitApplied();
+            long elapsedMillis = Math.max(1L, (System.nanoTime() - start) / 1_000_000L);
+            showSuccess("Read " + lines + " ticks in " + elapsedMillis + " ms across "
+                    + priceFeed.getTickerCount() + " tracked tickers.");
+        } catch (IOException e) {
+            showError("Unable to read price file: " + e.getMessage());
+        }
+    }
+
+    // Hourly bars for the last 24 hours of ticks recorded this session
+    private static void viewPriceHistory() {
+        System.out.print("Enter ticker symbol: ");
+        String ticker = scanner.nextLine().trim();
+        if (!Utility.validateString(ticker)) {
+            showError("Invalid ticker.");
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<PriceHistory.Bar> bars = priceHistory.ohlc(ticker, now - TimeUnit.DAYS.toMillis(1), now + 1,
+                TimeUnit.HOURS.toMillis(1));
+        if (bars.isEmpty()) {
+            System.out.println("No price history recorded for " + ticker.toUpperCase() + ".");
+            return;
+        }
+
+        System.out.println("\n--- " + ticker.toUpperCase() + " Hourly Prices ---");
+        System.out.println(String.format("%-17s %10s %10s %10s %10s %7s", "Hour", "Open", "High", "Low", "Close", "Ticks"));
+        for (PriceHistory.Bar bar : bars) {
+            LocalDateTime hour = LocalDateTime.ofInstant(Instant.ofEpochMilli(bar.getStartMillis()), ZoneId.systemDefault());
+            System.out.println(String.format("%-17s %10.2f %10.2f %10.2f %10.2f %7d",
+                    hour.toString().replace('T', ' '), Money.toDouble(bar.getOpenCents()),
+                    Money.toDouble(bar.getHighCents()), Money.toDouble(bar.getLowCents()),
+                    Money.toDouble(bar.getCloseCents()), bar.getTicks()));
+        }
+    }
+
     private static void createStockInvestment() {
         while (true) {
             try {
@@ -608,6 +909,7 @@ public class Main {
 
                 investments.put(investmentId, stock);
                 accounts.get(currentAccountId).addInvestment(stock);
+                priceFeed.register(stock);
 
                 System.out.println("Stock investment created successfully! ID: " + investmentId);
                 break;
@@ -707,6 +1009,12 @@ public class Main {
             investment.getInvestmentSummary();
             System.out.println();
         }
+
+        PortfolioValuation.Valuation portfolio = valuation.getAccountValuation(currentAccountId);
+        if (portfolio != null) {
+            System.out.println("Portfolio value: $" + String.format("%.2f", Money.toDouble(portfolio.getMarketValueCents()))
+                    + " (unrealized P/L: $" + String.format("%.2f", Money.toDouble(portfolio.getUnrealizedGainLossCents())) + ")");
+        }
     }
 
     private static void viewAllAccounts() {
@@ -721,16 +1029,17 @@ public class Main {
         for (Account account : userAccounts) {
             System.out.println(account.getAccountSummary());
         }
+
+        PortfolioValuation.Valuation netWorth = valuation.getUserValuation(currentUserId);
+        if (netWorth != null) {
+            System.out.println("Cash: $" + String.format("%.2f", Money.toDouble(netWorth.getCashCents()))
+                    + " | Investments: $" + String.format("%.2f", Money.toDouble(netWorth.getMarketValueCents()))
+                    + " | Net worth: $" + String.format("%.2f", Money.toDouble(netWorth.getNetWorthCents())));
+        }
     }
 
     private static List<Account> getUserAccounts() {
-        List<Account> userAccounts = new ArrayList<>();
-        for (Account account : accounts.values()) {
-            if (account.getUserId().equals(currentUserId)) {
-                userAccounts.add(account);
-            }
-        }
-        return userAccounts;
+        return accounts.getAccountsForUser(currentUserId);
     }
 
     private static void updateInvestmentPrice() {
@@ -769,6 +1078,106 @@ public class Main {
         }
     }
 
+    private static void sellInvestment() {
+        List<Investment> userInvestments = accounts.get(currentAccountId).getInvestments();
+
+        if (userInvestments.isEmpty()) {
+            System.out.println("No investments found. Please create an investment first.");
+            return;
+        }
+
+        while (true) {
+            System.out.println("\n--- Sell Investment ---");
+            for (int i = 0; i < userInvestments.size(); i++) {
+                Investment investment = userInvestments.get(i);
+                System.out.println((i + 1) + ". " + investment.getName() +
+                    " (ID: " + investment.getInvestmentId() +
+                    ") - Quantity: " + investment.getQuantity());
+            }
+            System.out.print("Select investment to sell (1-" + userInvestments.size() + "): ");
+
+            String choice = scanner.nextLine().trim();
+
+            if (!Utility.validateInt(choice)) {
+                System.out.println("Invalid input. Please try again.");
+                continue;
+            }
+
+            int investmentIndex = Integer.parseInt(choice) - 1;
+            if (investmentIndex >= 0 && investmentIndex < userInvestments.size()) {
+                sellSelectedInvestment(userInvestments.get(investmentIndex));
+                break;
+            } else {
+                System.out.println("Invalid selection. Please try again.");
+            }
+        }
+    }
+
+    private static void sellSelectedInvestment(Investment investment) {
+        System.out.println("\nLot relief method:");
+        System.out.println("1. First in, first out");
+        System.out.println("2. Last in, first out");
+        System.out.println("3. Highest cost first");
+        System.out.println("4. Specific lot");
+        System.out.print("Choose method (1-4): ");
+        String choice = scanner.nextLine().trim();
+
+        LotReliefMethod method;
+        switch (choice) {
+            case "1":
+                method = LotReliefMethod.FIFO;
+                break;
+            case "2":
+                method = LotReliefMethod.LIFO;
+                break;
+            case "3":
+                method = LotReliefMethod.HIGHEST_COST;
+                break;
+            case "4":
+                method = LotReliefMethod.SPECIFIC_LOT;
+                break;
+            default:
+                showError("Invalid method.");
+                return;
+        }
+
+        long lotId = 0L;
+        if (method == LotReliefMethod.SPECIFIC_LOT) {
+            System.out.println("\nOpen lots:");
+            for (TaxLot lot : investment.getOpenLots()) {
+                System.out.println("Lot " + lot.getLotId() + ": " + lot.getQuantity() + " @ $"
+                        + String.format("%.2f", Money.toDouble(lot.getUnitCostCents())) + " acquired " + lot.getAcquired().toLocalDate());
+            }
+            System.out.print("Enter lot number: ");
+            String lotInput = scanner.nextLine().trim();
+            if (!Utility.validateInt(lotInput)) {
+                showError("Invalid lot number.");
+                return;
+            }
+            lotId = Long.parseLong(lotInput);
+        }
+
+        System.out.print("Enter quantity to sell: ");
+        String quantityInput = scanner.nextLine().trim();
+        if (!Utility.validateInt(quantityInput)) {
+            showError("Invalid quantity.");
+            return;
+        }
+
+        try {
+            int quantity = Integer.parseInt(quantityInput);
+            long realizedCents = method == LotReliefMethod.SPECIFIC_LOT
+                    ? investment.sellLot(lotId, quantity)
+                    : investment.sellInvestment(quantity, method);
+            accounts.get(currentAccountId).logHolding(investment);
+            showSuccess("Sold " + quantity + " of " + investment.getName() + " at $"
+                    + String.format("%.2f", investment.getCurrentPrice()) + ". Realized gain/loss: $"
+                    + String.format("%.2f", Money.toDouble(realizedCents)));
+        } catch (IllegalArgumentException e) {
+            showError(e.getMessage());
+        }
+    }
+
     private static void updateSelectedInvestmentPrice(Investment investment) {
         while (true) {
             System.out.println("\nUpdating price for: " + investment.getName());
@@ -790,6 +1199,11 @@ public class Main {
             
             double oldPrice = investment.getCurrentPrice();
             investment.updateCurrentPrice(newPrice);
+            accounts.get(currentAccountId).logHolding(investment);
+            if (investment instanceof Stock) {
+                priceHistory.record(((Stock) investment).getTicker(), System.currentTimeMillis(),
+                        investment.getCurrentPriceCents());
+            }
             
             System.out.println("Price updated successfully!");
             System.out.println("Old price: $" + String.format("%.2f", oldPrice));
@@ -875,6 +1289,7 @@ public class Main {
             }
 
             userNotificationPreferences.put(currentUserId, newType);
+            postingLog.commit(postingLog.appendPreference(currentUserId, newType));
             System.out.println("Notification preference updated to: " + formatNotificationType(newType));
             break;
         }
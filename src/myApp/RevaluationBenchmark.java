@@ -0,0 +1,106 @@
+package myApp;
+
+import myLib.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Compares revaluing holdings one object at a time with HoldingsBook's column loops.
+// Usage: java myApp.RevaluationBenchmark [holdings] [rounds]
+public class RevaluationBenchmark {
+    private static final int WARMUP_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int holdingCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        List<Investment> holdings = createHoldings(holdingCount, new Random(42));
+        HoldingsBook book = HoldingsBook.pack(holdings);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        try {
+            long[] expected = revalueObjects(holdings);
+            HoldingsBook.Totals sequential = book.revalue();
+            HoldingsBook.Totals parallel = book.revalue(pool);
+            if (!matches(expected, sequential) || !matches(expected, parallel)) {
+                throw new IllegalStateException("Column revaluation disagrees with per-holding revaluation");
+            }
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                revalueObjects(holdings);
+                book.revalue();
+                book.revalue(pool);
+            }
+
+            long objectNanos = 0L;
+            long sequentialNanos = 0L;
+            long parallelNanos = 0L;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                revalueObjects(holdings);
+                objectNanos += System.nanoTime() - start;
+                sequentialNanos += book.revalue().getElapsedNanos();
+                parallelNanos += book.revalue(pool).getElapsedNanos();
+            }
+
+            System.out.println("Revalued " + holdingCount + " holdings x " + rounds + " rounds"
+                    + " (market value $" + String.format("%.2f", Money.toDouble(expected[0])) + ")");
+            report("Per-holding objects", holdingCount, rounds, objectNanos, objectNanos);
+            report("Columns, 1 thread", holdingCount, rounds, sequentialNanos, objectNanos);
+            report("Columns, pool of " + threads, holdingCount, rounds, parallelNanos, objectNanos);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // The existing path: virtual calls on every holding
+    private static long[] revalueObjects(List<Investment> holdings) {
+        long marketValue = 0L;
+        long gainLoss = 0L;
+        long income = 0L;
+        for (Investment investment : holdings) {
+            marketValue += investment.getCurrentValueCents();
+            gainLoss += investment.getGainLossCents();
+            income += investment.calculateDividendsCents();
+        }
+        return new long[]{marketValue, gainLoss, income};
+    }
+
+    private static boolean matches(long[] expected, HoldingsBook.Totals totals) {
+        return expected[0] == totals.getMarketValueCents()
+                && expected[1] == totals.getGainLossCents()
+                && expected[2] == totals.getIncomeCents();
+    }
+
+    private static void report(String label, int holdingCount, int rounds, long nanos, long baselineNanos) {
+        double millisPerRound = nanos / 1_000_000.0 / rounds;
+        double holdingsPerSecond = (double) holdingCount * rounds * 1_000_000_000.0 / nanos;
+        System.out.println(String.format("%-24s %9.3f ms/round %14.0f holdings/s %6.2fx",
+                label, millisPerRound, holdingsPerSecond, (double) baselineNanos / nanos));
+    }
+
+    // Roughly four stocks to every bond, interleaved so the object path sees both types
+    private static List<Investment> createHoldings(int count, Random random) {
+        List<Investment> holdings = new ArrayList<>(count);
+        LocalDateTime purchased = LocalDateTime.now().minusYears(1);
+        for (int i = 0; i < count; i++) {
+            String id = "INV-" + i;
+            double purchasePrice = 1 + random.nextInt(50_000) / 100.0;
+            double currentPrice = purchasePrice * (0.5 + random.nextDouble());
+            int quantity = 1 + random.nextInt(1_000);
+            if (i % 5 == 4) {
+                holdings.add(new Bond(id, "Bond " + i, purchasePrice, currentPrice, quantity, purchased, "bench",
+                        purchased.toLocalDate().plusYears(1 + random.nextInt(30)), random.nextDouble() * 0.08,
+                        1_000.0, "Issuer " + (i % 100)));
+            } else {
+                holdings.add(new Stock(id, "Stock " + i, purchasePrice, currentPrice, quantity, purchased, "bench",
+                        "T" + (i % 5_000), random.nextDouble() * 0.05));
+            }
+        }
+        return holdings;
+    }
+}
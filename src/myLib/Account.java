@@ -1,82 +1,409 @@
 package myLib;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class Account {
     protected String accountId;
-    protected double balance;
+    protected volatile long balanceCents;
     protected String userId;
     protected String passwordHash;
-    protected List<Transaction> transactions;
+    protected TransactionJournal transactions;
+    protected final AccountAggregates aggregates;
     protected List<Investment> investments;
 
+    // Every balance change on this account happens while holding its lock
+    protected final ReentrantLock lock;
+
+    protected volatile PostingLog postingLog;
+    protected volatile long lastPostingLsn;
+
+    // Epoch day of the last business date closed by EndOfDayClose
+    protected volatile long lastClosedDay;
+
+    // Epoch day the account was opened; earlier business dates are never closed for it
+    protected volatile long openedDay;
+
+    // Epoch day of the business date a periodic fee was last charged for
+    protected volatile long lastFeeDay;
+
+    protected volatile ValuationListener valuationListener;
+
     public Account(String userId, String accountId, String passwordHash) {
         this.userId = userId;
         this.accountId = accountId;
-        this.balance = 0.0;
-        this.transactions = new ArrayList<>();
-        this.investments = new ArrayList<>();
+        this.balanceCents = 0L;
+        this.transactions = new TransactionJournal();
+        this.aggregates = new AccountAggregates();
+        this.investments = new CopyOnWriteArrayList<>();
         this.passwordHash = passwordHash;
+        this.lock = new ReentrantLock();
+        this.lastClosedDay = Long.MIN_VALUE;
+        this.openedDay = LocalDate.now().toEpochDay();
+        this.lastFeeDay = Long.MIN_VALUE;
     }
 
     public void deposit(double amount, String transactionId) {
-        if (amount <= 0) {
+        depositCents(Money.toCents(amount), transactionId);
+    }
+
+    public void depositCents(long amountCents, String transactionId) {
+        if (amountCents <= 0) {
             System.out.println("Invalid deposit amount. Amount must be positive.");
             return;
         }
 
-        this.balance += amount;
-        Transaction transaction = new Transaction.Builder(
-                transactionId,
-                this.accountId,
-                amount,
-                TransactionType.DEPOSIT,
-                "Deposit to account"
-        ).build();
-        addTransaction(transaction);
-        System.out.println("Deposit successful. Amount: $" + amount);
+        lock.lock();
+        try {
+            post(amountCents, Transaction.Builder.ofCents(
+                    transactionId,
+                    this.accountId,
+                    amountCents,
+                    TransactionType.DEPOSIT,
+                    "Deposit to account"
+            ).build());
+        } finally {
+            lock.unlock();
+        }
+        commitPostings();
+        System.out.println("Deposit successful. Amount: $" + Money.toDouble(amountCents));
     }
 
 
     public void withdraw(double amount, String transactionId) {
-        if (amount <= 0) {
+        withdrawCents(Money.toCents(amount), transactionId);
+    }
+
+    public void withdrawCents(long amountCents, String transactionId) {
+        if (amountCents <= 0) {
             System.out.println("Invalid withdrawal amount. Amount must be positive.");
             return;
         }
 
-        if (amount > this.balance) {
-            System.out.println("Insufficient funds. Available balance: $" + this.balance);
-            return;
+        lock.lock();
+        try {
+            if (amountCents > availableCents()) {
+                System.out.println("Insufficient funds. Available balance: $" + getBalance());
+                return;
+            }
+
+            post(-amountCents, Transaction.Builder.ofCents(
+                    transactionId,
+                    this.accountId,
+                    amountCents,
+                    TransactionType.WITHDRAWAL,
+                    withdrawalDescription()
+            ).build());
+        } finally {
+            lock.unlock();
+        }
+        commitPostings();
+        System.out.println("Withdrawal successful. Amount: $" + Money.toDouble(amountCents));
+    }
+
+    // Applies a signed balance change and journals it; caller must hold the lock
+    protected void post(long signedCents, Transaction transaction) {
+        apply(signedCents, transaction);
+        if (postingLog != null) {
+            lastPostingLsn = postingLog.append(this.accountId, transaction, signedCents, this.balanceCents);
+        }
+    }
+
+    // As post() but without logging, for postings the caller logs together with others; caller must hold the lock
+    void apply(long signedCents, Transaction transaction) {
+        this.balanceCents += signedCents;
+        addTransaction(transaction);
+        ValuationListener listener = this.valuationListener;
+        if (listener != null) {
+            listener.onBalanceChanged(this, signedCents);
+        }
+    }
+
+    // Batch variants: the caller holds the lock and commits; nothing is printed
+    PostingStatus applyDeposit(long amountCents, String transactionId) {
+        if (amountCents <= 0) {
+            return PostingStatus.INVALID_AMOUNT;
+        }
+
+        post(amountCents, Transaction.Builder.ofCents(
+                transactionId,
+                this.accountId,
+                amountCents,
+                TransactionType.DEPOSIT,
+                "Deposit to account"
+        ).build());
+        return PostingStatus.POSTED;
+    }
+
+    PostingStatus applyWithdrawal(long amountCents, String transactionId) {
+        if (amountCents <= 0) {
+            return PostingStatus.INVALID_AMOUNT;
+        }
+        if (amountCents > availableCents()) {
+            return PostingStatus.INSUFFICIENT_FUNDS;
         }
 
-        this.balance -= amount;
-        Transaction transaction = new Transaction.Builder(
+        post(-amountCents, Transaction.Builder.ofCents(
                 transactionId,
                 this.accountId,
-                amount,
+                amountCents,
                 TransactionType.WITHDRAWAL,
-                "Withdrawal from account"
-        ).build();
-        addTransaction(transaction);
-        System.out.println("Withdrawal successful. Amount: $" + amount);
-        return;
+                withdrawalDescription()
+        ).build());
+        afterDebit(transactionId);
+        return PostingStatus.POSTED;
+    }
+
+    protected String withdrawalDescription() {
+        return "Withdrawal from account";
+    }
+
+    // Funds that may be debited right now; caller must hold the lock
+    protected long availableCents() {
+        return this.balanceCents;
+    }
+
+    // Runs after a debit while the lock is still held and returns any fee it posted
+    protected long afterDebit(String transactionId) {
+        return 0L;
+    }
+
+    // Posts the day's interest accrual and fees once per business date; the caller commits. Without
+    // assess the date is only marked closed, for a missed date whose balance is no longer known.
+    // Returns {interest cents, fee cents}, or null if the date was already closed or precedes the opening.
+    long[] closeDay(LocalDate businessDate, boolean assess) {
+        long day = businessDate.toEpochDay();
+        lock.lock();
+        try {
+            if (day <= this.lastClosedDay || day < this.openedDay) {
+                return null;
+            }
+
+            List<PostingLog.Leg> legs = new ArrayList<>(2);
+            long interestCents = assess ? dailyInterestCents(businessDate) : 0L;
+            if (interestCents > 0) {
+                Transaction interest = Transaction.Builder.ofCents(
+                        EndOfDayClose.transactionId(businessDate, EndOfDayClose.INTEREST_KIND, this.accountId),
+                        this.accountId,
+                        interestCents,
+                        TransactionType.INTEREST,
+                        "Daily interest accrual"
+                ).build();
+                apply(interestCents, interest);
+                legs.add(new PostingLog.Leg(this.accountId, interest, interestCents, this.balanceCents));
+            }
+
+            long feeCents = assess ? periodicFeeCents(businessDate) : 0L;
+            if (feeCents > 0) {
+                Transaction fee = Transaction.Builder.ofCents(
+                        EndOfDayClose.transactionId(businessDate, EndOfDayClose.FEE_KIND, this.accountId),
+                        this.accountId,
+                        feeCents,
+                        TransactionType.FEE,
+                        feeDescription()
+                ).build();
+                apply(-feeCents, fee);
+                legs.add(new PostingLog.Leg(this.accountId, fee, -feeCents, this.balanceCents));
+                this.lastFeeDay = day;
+            }
+
+            this.lastClosedDay = day;
+            // Logged even without postings, so a replayed account never closes the same day twice
+            if (postingLog != null) {
+                lastPostingLsn = postingLog.appendDayClose(this.accountId, day, legs);
+            }
+            return new long[]{Math.max(interestCents, 0L), feeCents};
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Interest earned for one business day; caller must hold the lock
+    protected long dailyInterestCents(LocalDate businessDate) {
+        return 0L;
+    }
+
+    // Fee charged by the close of businessDate, at most once per fee period; caller must hold the lock
+    protected long periodicFeeCents(LocalDate businessDate) {
+        return 0L;
+    }
+
+    protected String feeDescription() {
+        return "Account fee";
+    }
+
+    public long getLastClosedDay() {
+        return lastClosedDay;
+    }
+
+    public long getOpenedDay() {
+        return openedDay;
+    }
+
+    // Set from the account's logged or snapshotted header, before it takes any posting
+    void setOpenedDay(long openedDay) {
+        this.openedDay = openedDay;
+    }
+
+    public long getLastFeeDay() {
+        return lastFeeDay;
+    }
+
+    // Called after the lock is released so a sync never blocks other postings to this account
+    protected void commitPostings() {
+        if (postingLog != null) {
+            postingLog.commit(lastPostingLsn);
+        }
+    }
+
+    public void attachPostingLog(PostingLog postingLog) {
+        this.postingLog = postingLog;
+    }
+
+    public long getLastPostingLsn() {
+        return lastPostingLsn;
+    }
+
+    // Used when loading a snapshot; no posting is logged
+    void restoreState(long balanceCents, long lastPostingLsn, long lastClosedDay, long lastFeeDay) {
+        lock.lock();
+        try {
+            this.balanceCents = balanceCents;
+            this.lastPostingLsn = lastPostingLsn;
+            this.lastClosedDay = lastClosedDay;
+            this.lastFeeDay = lastFeeDay;
+            rebuildAggregates();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Re-applies a logged posting unless this account already reflects it
+    boolean replayPosting(PostingRecord record) {
+        lock.lock();
+        try {
+            if (record.getLsn() <= this.lastPostingLsn) {
+                return false;
+            }
+            applyRecord(record);
+            this.lastPostingLsn = record.getLsn();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Re-applies a logged end-of-day close unless this account already reflects it
+    boolean replayDayClose(long lsn, long businessDay, List<PostingRecord> postings) {
+        lock.lock();
+        try {
+            if (lsn <= this.lastPostingLsn) {
+                return false;
+            }
+            for (PostingRecord record : postings) {
+                applyRecord(record);
+                if (record.getType() == TransactionType.FEE) {
+                    this.lastFeeDay = Math.max(this.lastFeeDay, businessDay);
+                }
+            }
+            this.lastClosedDay = Math.max(this.lastClosedDay, businessDay);
+            this.lastPostingLsn = lsn;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void applyRecord(PostingRecord record) {
+        this.balanceCents = record.getBalanceAfterCents();
+        this.transactions.append(record.getTimestampMillis(), Math.abs(record.getAmountCents()), record.getType(),
+                record.getTransactionId(), record.getFirstAccountId(), record.getSecondAccountId(),
+                record.getDescription(), null);
+        this.aggregates.record(record.getType(), record.getAmountCents(),
+                TransactionJournal.toLocalDateTime(record.getTimestampMillis()).toLocalDate(),
+                record.getBalanceAfterCents());
     }
 
     public double getBalance() {
-        return this.balance;
+        return Money.toDouble(this.balanceCents);
+    }
+
+    public long getBalanceCents() {
+        return this.balanceCents;
+    }
+
+    // Walks back from the current balance to recover each entry's balance, then re-records them in order
+    private void rebuildAggregates() {
+        aggregates.clear();
+        long runningCents = this.balanceCents;
+        for (int i = 0; i < transactions.size(); i++) {
+            runningCents -= transactions.getSignedCents(i, this.accountId);
+        }
+
+        for (int i = 0; i < transactions.size(); i++) {
+            runningCents += transactions.getSignedCents(i, this.accountId);
+            aggregates.record(transactions.getType(i), transactions.getSignedCents(i, this.accountId),
+                    TransactionJournal.toLocalDateTime(transactions.getTimestampMillis(i)).toLocalDate(), runningCents);
+        }
+    }
+
+    public AccountAggregates getAggregates() {
+        return aggregates;
     }
 
     public void addTransaction(Transaction transaction) {
         if (transaction != null) {
-            this.transactions.add(transaction);
+            lock.lock();
+            try {
+                this.transactions.append(transaction);
+                this.aggregates.record(transaction.getType(),
+                        this.transactions.getSignedCents(this.transactions.size() - 1, this.accountId),
+                        transaction.getTimestamp().toLocalDate(), this.balanceCents);
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
     public List<Transaction> getTransactionHistory() {
-        return new ArrayList<>(this.transactions);
+        lock.lock();
+        try {
+            return this.transactions.snapshot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public HistoryPage queryHistory(HistoryQuery query) {
+        lock.lock();
+        try {
+            return this.transactions.query(query);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Frozen journal for long reads (statements, exports) that should not hold the account lock
+    public TransactionJournal getJournalSnapshot() {
+        lock.lock();
+        try {
+            return this.transactions.freeze();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getTransactionCount() {
+        return this.transactions.size();
+    }
+
+    public double calculateFees() {
+        return Money.toDouble(calculateFeesCents());
     }
 
-    public abstract double calculateFees();
+    public abstract long calculateFeesCents();
 
     public abstract String getAccountSummary();
 
@@ -92,6 +419,10 @@ public abstract class Account {
         return passwordHash;
     }
 
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
     public List<Investment> getInvestments() {
         return investments; // Return the actual list, not a copy
     }
@@ -99,6 +430,53 @@ public abstract class Account {
     public void addInvestment(Investment investment) {
         if (investment != null) {
             this.investments.add(investment);
+            logHolding(investment);
+            ValuationListener listener = this.valuationListener;
+            if (listener != null) {
+                listener.onHoldingAdded(this, investment);
+            }
+        }
+    }
+
+    // Logs the holding's current state after a buy, sale or price change so replay can restore it.
+    // Prices streamed by the price feed are not logged; the feed supplies them again after a restart.
+    public void logHolding(Investment investment) {
+        PostingLog log = this.postingLog;
+        if (log != null) {
+            log.commit(log.appendHolding(this.accountId, investment));
+        }
+    }
+
+    // Replaces the holding with the same id, or adds it; used by replay, nothing is logged
+    void restoreHolding(Investment investment) {
+        for (int i = 0; i < investments.size(); i++) {
+            if (investments.get(i).getInvestmentId().equals(investment.getInvestmentId())) {
+                investments.set(i, investment);
+                return;
+            }
+        }
+        investments.add(investment);
+    }
+
+    // Installs the listener and returns the balance it starts from, both under the lock so no
+    // posting is counted twice or missed
+    public long attachValuationListener(ValuationListener listener) {
+        lock.lock();
+        try {
+            this.valuationListener = listener;
+            return this.balanceCents;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long detachValuationListener() {
+        lock.lock();
+        try {
+            this.valuationListener = null;
+            return this.balanceCents;
+        } finally {
+            lock.unlock();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package myLib;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Running per-day and per-month totals for one account, updated as each transaction is added
+public class AccountAggregates {
+    private static final int TYPE_COUNT = TransactionType.values().length;
+
+    private final TreeMap<Long, Bucket> dailyBuckets;
+    private final TreeMap<Integer, Bucket> monthlyBuckets;
+
+    // Money in and out and counts per TransactionType ordinal, plus the balance at the end of the bucket.
+    // Types that move money both ways (transfers) need the two directions kept apart.
+    private static class Bucket {
+        private final long[] credits = new long[TYPE_COUNT];
+        private final long[] debits = new long[TYPE_COUNT];
+        private final int[] counts = new int[TYPE_COUNT];
+        private long closingBalanceCents;
+
+        void add(TransactionType type, long signedCents, long balanceAfterCents) {
+            if (signedCents < 0) {
+                debits[type.ordinal()] -= signedCents;
+            } else {
+                credits[type.ordinal()] += signedCents;
+            }
+            counts[type.ordinal()]++;
+            closingBalanceCents = balanceAfterCents;
+        }
+
+        long total(TransactionType type) {
+            return credits[type.ordinal()] + debits[type.ordinal()];
+        }
+    }
+
+    public AccountAggregates() {
+        this.dailyBuckets = new TreeMap<>();
+        this.monthlyBuckets = new TreeMap<>();
+    }
+
+    // signedCents is the change to the balance: negative for money leaving the account
+    public synchronized void record(TransactionType type, long signedCents, LocalDate date, long balanceAfterCents) {
+        dailyBuckets.computeIfAbsent(date.toEpochDay(), day -> new Bucket())
+                .add(type, signedCents, balanceAfterCents);
+        monthlyBuckets.computeIfAbsent(monthKey(YearMonth.from(date)), month -> new Bucket())
+                .add(type, signedCents, balanceAfterCents);
+    }
+
+    public synchronized void clear() {
+        dailyBuckets.clear();
+        monthlyBuckets.clear();
+    }
+
+    // Money moved in either direction
+    public synchronized long getMonthlyTotalCents(TransactionType type, YearMonth month) {
+        Bucket bucket = monthlyBuckets.get(monthKey(month));
+        return bucket == null ? 0L : bucket.total(type);
+    }
+
+    // Money received, e.g. transfers in
+    public synchronized long getMonthlyCreditsCents(TransactionType type, YearMonth month) {
+        Bucket bucket = monthlyBuckets.get(monthKey(month));
+        return bucket == null ? 0L : bucket.credits[type.ordinal()];
+    }
+
+    // Money paid out, as a positive amount, e.g. transfers out
+    public synchronized long getMonthlyDebitsCents(TransactionType type, YearMonth month) {
+        Bucket bucket = monthlyBuckets.get(monthKey(month));
+        return bucket == null ? 0L : bucket.debits[type.ordinal()];
+    }
+
+    public synchronized int getMonthlyCount(TransactionType type, YearMonth month) {
+        Bucket bucket = monthlyBuckets.get(monthKey(month));
+        return bucket == null ? 0 : bucket.counts[type.ordinal()];
+    }
+
+    public synchronized long getDailyTotalCents(TransactionType type, LocalDate date) {
+        Bucket bucket = dailyBuckets.get(date.toEpochDay());
+        return bucket == null ? 0L : bucket.total(type);
+    }
+
+    // Inclusive date range; walks only the days that had activity
+    public synchronized long getTotalCents(TransactionType type, LocalDate from, LocalDate to) {
+        long total = 0L;
+        for (Bucket bucket : dailyBuckets.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values()) {
+            total += bucket.total(type);
+        }
+        return total;
+    }
+
+    public synchronized int getCount(TransactionType type, LocalDate from, LocalDate to) {
+        int count = 0;
+        for (Bucket bucket : dailyBuckets.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values()) {
+            count += bucket.counts[type.ordinal()];
+        }
+        return count;
+    }
+
+    public int getFeeCount(YearMonth month) {
+        return getMonthlyCount(TransactionType.FEE, month);
+    }
+
+    // Balance at the end of the given day, carried forward from the last day with activity
+    public synchronized long getClosingBalanceCents(LocalDate date) {
+        Map.Entry<Long, Bucket> entry = dailyBuckets.floorEntry(date.toEpochDay());
+        return entry == null ? 0L : entry.getValue().closingBalanceCents;
+    }
+
+    // Mean end-of-day balance over an inclusive range; quiet days carry the previous closing balance
+    public synchronized long getAverageDailyBalanceCents(LocalDate from, LocalDate to) {
+        long firstDay = from.toEpochDay();
+        long lastDay = to.toEpochDay();
+        if (lastDay < firstDay) {
+            return 0L;
+        }
+
+        Map.Entry<Long, Bucket> before = dailyBuckets.lowerEntry(firstDay);
+        long balance = before == null ? 0L : before.getValue().closingBalanceCents;
+        long day = firstDay;
+        double sum = 0.0;
+
+        for (Map.Entry<Long, Bucket> entry : dailyBuckets.subMap(firstDay, true, lastDay, true).entrySet()) {
+            sum += (double) balance * (entry.getKey() - day);
+            balance = entry.getValue().closingBalanceCents;
+            sum += balance;
+            day = entry.getKey() + 1;
+        }
+        sum += (double) balance * (lastDay - day + 1);
+
+        return Math.round(sum / (lastDay - firstDay + 1));
+    }
+
+    public long getAverageDailyBalanceCents(YearMonth month) {
+        return getAverageDailyBalanceCents(month.atDay(1), month.atEndOfMonth());
+    }
+
+    private static int monthKey(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+}
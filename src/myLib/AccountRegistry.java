@@ -0,0 +1,99 @@
+package myLib;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// All open accounts, indexed by account id and by owning user
+public class AccountRegistry {
+    private final ConcurrentHashMap<String, Account> accountsById;
+    private final ConcurrentHashMap<String, Set<String>> accountIdsByUser;
+
+    public AccountRegistry() {
+        this.accountsById = new ConcurrentHashMap<>();
+        this.accountIdsByUser = new ConcurrentHashMap<>();
+    }
+
+    // Returns false if an account with the same id is already registered
+    public boolean register(Account account) {
+        boolean[] added = {false};
+
+        // Both maps are updated inside the per-user compute, so a user's index never misses an account
+        accountIdsByUser.compute(account.getUserId(), (userId, accountIds) -> {
+            if (accountsById.putIfAbsent(account.getAccountId(), account) != null) {
+                return accountIds;
+            }
+            Set<String> updated = accountIds == null ? ConcurrentHashMap.newKeySet() : accountIds;
+            updated.add(account.getAccountId());
+            added[0] = true;
+            return updated;
+        });
+
+        return added[0];
+    }
+
+    // Removes the account from both indexes and returns it, or null if it was not registered
+    public Account close(String accountId) {
+        Account account = accountsById.get(accountId);
+        if (account == null) {
+            return null;
+        }
+
+        Account[] removed = {null};
+        accountIdsByUser.computeIfPresent(account.getUserId(), (userId, accountIds) -> {
+            if (accountsById.remove(accountId, account)) {
+                accountIds.remove(accountId);
+                removed[0] = account;
+            }
+            return accountIds.isEmpty() ? null : accountIds;
+        });
+
+        return removed[0];
+    }
+
+    public Account get(String accountId) {
+        return accountsById.get(accountId);
+    }
+
+    public String getOwner(String accountId) {
+        Account account = accountsById.get(accountId);
+        return account == null ? null : account.getUserId();
+    }
+
+    // Costs O(accounts of this user), not O(accounts in the bank)
+    public List<Account> getAccountsForUser(String userId) {
+        Set<String> accountIds = accountIdsByUser.get(userId);
+        if (accountIds == null) {
+            return Collections.emptyList();
+        }
+
+        List<Account> userAccounts = new ArrayList<>(accountIds.size());
+        for (String accountId : accountIds) {
+            Account account = accountsById.get(accountId);
+            if (account != null) {
+                userAccounts.add(account);
+            }
+        }
+        return userAccounts;
+    }
+
+    public Collection<Account> getAll() {
+        return Collections.unmodifiableCollection(accountsById.values());
+    }
+
+    public Map<String, Account> asMap() {
+        return Collections.unmodifiableMap(accountsById);
+    }
+
+    public int size() {
+        return accountsById.size();
+    }
+
+    public boolean isEmpty() {
+        return accountsById.isEmpty();
+    }
+}
@@ -0,0 +1,608 @@
+package myLib;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+// Point-in-time copy of the bank written as partition files, restored together with the posting log
+public class BankSnapshot {
+    private static final int FORMAT_VERSION = 6;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String MANIFEST_FILE = "manifest";
+    private static final String PREFERENCES_FILE = "preferences.dat";
+    private static final int SNAPSHOTS_TO_KEEP = 2;
+
+    private static final byte CHECKING = 1;
+    private static final byte SAVINGS = 2;
+    private static final byte STOCK = 1;
+    private static final byte BOND = 2;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    // State rebuilt by restore()
+    public static class State {
+        private final Map<String, Account> accounts;
+        private final Map<String, notificationType> preferences;
+        private final long snapshotLsn;
+        private final int replayedRecords;
+
+        State(Map<String, Account> accounts, Map<String, notificationType> preferences,
+              long snapshotLsn, int replayedRecords) {
+            this.accounts = accounts;
+            this.preferences = preferences;
+            this.snapshotLsn = snapshotLsn;
+            this.replayedRecords = replayedRecords;
+        }
+
+        public Map<String, Account> getAccounts() {
+            return accounts;
+        }
+
+        public Map<String, notificationType> getPreferences() {
+            return preferences;
+        }
+
+        public long getSnapshotLsn() {
+            return snapshotLsn;
+        }
+
+        public int getReplayedRecords() {
+            return replayedRecords;
+        }
+    }
+
+    // Writes a new snapshot, makes it durable, discards the log segments it covers and returns the log
+    // position it covers
+    public static long write(Path root, Collection<Account> accounts, Map<String, notificationType> preferences,
+                             PostingLog postingLog, int threads) {
+        // Anything logged after this point is replayed; per-account LSNs skip what the snapshot already holds
+        long lsn = postingLog.getLastLsn();
+        String name = SNAPSHOT_PREFIX + String.format("%020d-%013d", lsn, System.currentTimeMillis());
+        Path finalDir = root.resolve(name);
+        Path tempDir = root.resolve(name + TEMP_SUFFIX);
+
+        List<List<Account>> partitions = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (Account account : accounts) {
+            partitions.get(Math.floorMod(account.getAccountId().hashCode(), threads)).add(account);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            deleteRecursively(tempDir);
+            Files.createDirectories(tempDir);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                List<Account> partition = partitions.get(i);
+                Path file = tempDir.resolve(partitionFileName(i));
+                futures.add(executor.submit(() -> {
+                    writePartition(file, partition);
+                    force(file);
+                    return null;
+                }));
+            }
+
+            try (DataOutputStream out = openOutput(tempDir.resolve(PREFERENCES_FILE))) {
+                out.writeInt(preferences.size());
+                for (Map.Entry<String, notificationType> entry : preferences.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().name());
+                }
+            }
+            force(tempDir.resolve(PREFERENCES_FILE));
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            try (DataOutputStream out = openOutput(tempDir.resolve(MANIFEST_FILE))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(lsn);
+                out.writeInt(threads);
+                out.writeLong(System.currentTimeMillis());
+            }
+            force(tempDir.resolve(MANIFEST_FILE));
+            force(tempDir);
+
+            Files.move(tempDir, finalDir, StandardCopyOption.ATOMIC_MOVE);
+            force(root);
+            pruneOldSnapshots(root);
+            // Only now that the snapshot survives a crash can the log records it covers go
+            postingLog.discardThrough(lsn);
+            return lsn;
+        } catch (IOException | ExecutionException e) {
+            throw new RuntimeException("Unable to write snapshot to " + root, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Snapshot interrupted", e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Loads the newest snapshot (if any) and replays the posting log written after it
+    public static State restore(Path root, PostingLog postingLog, int threads) {
+        Map<String, Account> accounts = new ConcurrentHashMap<>();
+        Map<String, notificationType> preferences = new ConcurrentHashMap<>();
+        long lsn = 0L;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Path latest = findLatestSnapshot(root);
+            if (latest != null) {
+                int partitions;
+                try (DataInputStream in = openInput(latest.resolve(MANIFEST_FILE))) {
+                    int version = in.readInt();
+                    if (version != FORMAT_VERSION) {
+                        throw new IOException("Unsupported snapshot version " + version);
+                    }
+                    lsn = in.readLong();
+                    partitions = in.readInt();
+                }
+
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < partitions; i++) {
+                    Path file = latest.resolve(partitionFileName(i));
+                    futures.add(executor.submit(() -> {
+                        readPartition(file, accounts);
+                        return null;
+                    }));
+                }
+
+                try (DataInputStream in = openInput(latest.resolve(PREFERENCES_FILE))) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        preferences.put(in.readUTF(), notificationType.valueOf(in.readUTF()));
+                    }
+                }
+
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        } catch (IOException | ExecutionException e) {
+            throw new RuntimeException("Unable to restore snapshot from " + root, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Snapshot restore interrupted", e);
+        } finally {
+            executor.shutdown();
+        }
+
+        int[] replayed = {0};
+        postingLog.replay(lsn, new PostingLog.ReplayHandler() {
+            @Override
+            public void onAccountOpened(long recordLsn, Account account) {
+                account.restoreState(0L, recordLsn, Long.MIN_VALUE, Long.MIN_VALUE);
+                if (accounts.putIfAbsent(account.getAccountId(), account) == null) {
+                    replayed[0]++;
+                }
+            }
+
+            @Override
+            public void onPosting(PostingRecord record) {
+                Account account = accounts.get(record.getAccountId());
+                if (account != null && account.replayPosting(record)) {
+                    replayed[0]++;
+                }
+            }
+
+            @Override
+            public void onDayClosed(long recordLsn, String accountId, long businessDay, List<PostingRecord> postings) {
+                Account account = accounts.get(accountId);
+                if (account != null && account.replayDayClose(recordLsn, businessDay, postings)) {
+                    replayed[0]++;
+                }
+            }
+
+            @Override
+            public void onHolding(long recordLsn, String accountId, Investment investment) {
+                Account account = accounts.get(accountId);
+                if (account != null) {
+                    account.restoreHolding(investment);
+                    replayed[0]++;
+                }
+            }
+
+            @Override
+            public void onPreference(long recordLsn, String userId, notificationType preference) {
+                preferences.put(userId, preference);
+                replayed[0]++;
+            }
+        });
+
+        for (Account account : accounts.values()) {
+            account.attachPostingLog(postingLog);
+        }
+
+        return new State(accounts, preferences, lsn, replayed[0]);
+    }
+
+    // Account header only (no history or holdings); used for account-open log records
+    static byte[] encodeAccount(Account account) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeAccountHeader(out, account);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to encode account " + account.getAccountId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Account decodeAccount(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return readAccountHeader(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to decode account record", e);
+        }
+    }
+
+    static byte[] encodeHolding(String accountId, Investment investment) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(accountId);
+            writeInvestment(out, investment);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to encode investment " + investment.getInvestmentId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static void decodeHolding(byte[] payload, long lsn, PostingLog.ReplayHandler handler) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            String accountId = in.readUTF();
+            handler.onHolding(lsn, accountId, readInvestment(in));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to decode investment record", e);
+        }
+    }
+
+    static byte[] encodePreference(String userId, notificationType preference) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(userId);
+            out.writeUTF(preference.name());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to encode preference for " + userId, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static void decodePreference(byte[] payload, long lsn, PostingLog.ReplayHandler handler) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            String userId = in.readUTF();
+            handler.onPreference(lsn, userId, notificationType.valueOf(in.readUTF()));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to decode preference record", e);
+        }
+    }
+
+    private static void writePartition(Path file, List<Account> partition) throws IOException {
+        try (DataOutputStream out = openOutput(file)) {
+            out.writeInt(partition.size());
+            for (Account account : partition) {
+                // Hold the account lock so balance, history and LSN are consistent with each other
+                account.getLock().lock();
+                try {
+                    writeAccount(out, account);
+                } finally {
+                    account.getLock().unlock();
+                }
+            }
+        }
+    }
+
+    private static void readPartition(Path file, Map<String, Account> accounts) throws IOException {
+        try (DataInputStream in = openInput(file)) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Account account = readAccount(in);
+                accounts.put(account.getAccountId(), account);
+            }
+        }
+    }
+
+    private static void writeAccount(DataOutput out, Account account) throws IOException {
+        writeAccountHeader(out, account);
+        out.writeLong(account.getBalanceCents());
+        out.writeLong(account.getLastPostingLsn());
+        out.writeLong(account.getLastClosedDay());
+        out.writeLong(account.getLastFeeDay());
+
+        TransactionJournal journal = account.transactions;
+        out.writeInt(journal.size());
+        for (int i = 0; i < journal.size(); i++) {
+            out.writeUTF(journal.getTransactionId(i));
+            out.writeUTF(journal.getAccountId1(i));
+            writeNullableString(out, journal.getAccountId2(i));
+            writeNullableString(out, journal.getInvestmentId(i));
+            out.writeLong(journal.getAmountCents(i));
+            out.writeByte(journal.getType(i).ordinal());
+            writeNullableString(out, journal.getDescription(i));
+            out.writeLong(journal.getTimestampMillis(i));
+        }
+
+        List<Investment> holdings = account.getInvestments();
+        out.writeInt(holdings.size());
+        for (Investment investment : holdings) {
+            writeInvestment(out, investment);
+        }
+    }
+
+    private static Account readAccount(DataInput in) throws IOException {
+        Account account = readAccountHeader(in);
+        long balanceCents = in.readLong();
+        long lastPostingLsn = in.readLong();
+        long lastClosedDay = in.readLong();
+        long lastFeeDay = in.readLong();
+
+        int transactions = in.readInt();
+        for (int i = 0; i < transactions; i++) {
+            String transactionId = in.readUTF();
+            String accountId1 = in.readUTF();
+            String accountId2 = readNullableString(in);
+            String investmentId = readNullableString(in);
+            long amountCents = in.readLong();
+            TransactionType type = TYPES[in.readByte()];
+            String description = readNullableString(in);
+            long timestampMillis = in.readLong();
+            account.transactions.append(timestampMillis, amountCents, type, transactionId,
+                    accountId1, accountId2, description, investmentId);
+        }
+
+        int holdings = in.readInt();
+        for (int i = 0; i < holdings; i++) {
+            account.addInvestment(readInvestment(in));
+        }
+
+        account.restoreState(balanceCents, lastPostingLsn, lastClosedDay, lastFeeDay);
+        return account;
+    }
+
+    private static void writeAccountHeader(DataOutput out, Account account) throws IOException {
+        if (account instanceof CheckingAccount) {
+            CheckingAccount checking = (CheckingAccount) account;
+            out.writeByte(CHECKING);
+            writeCommonHeader(out, account);
+            out.writeLong(checking.getOverdraftLimitCents());
+            out.writeLong(checking.getOverdraftFeeCents());
+        } else if (account instanceof SavingsAccount) {
+            SavingsAccount savings = (SavingsAccount) account;
+            out.writeByte(SAVINGS);
+            writeCommonHeader(out, account);
+            out.writeDouble(savings.getInterestRate());
+            out.writeLong(savings.getMinimumBalanceCents());
+        } else {
+            throw new IOException("Unsupported account type " + account.getClass().getName());
+        }
+    }
+
+    private static void writeCommonHeader(DataOutput out, Account account) throws IOException {
+        out.writeUTF(account.getAccountId());
+        out.writeUTF(account.getUserId());
+        writeNullableString(out, account.getPasswordHash());
+        out.writeLong(account.getOpenedDay());
+    }
+
+    private static Account readAccountHeader(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        String accountId = in.readUTF();
+        String userId = in.readUTF();
+        String passwordHash = readNullableString(in);
+        long openedDay = in.readLong();
+
+        switch (kind) {
+            case CHECKING: {
+                CheckingAccount checking = new CheckingAccount(accountId, userId, 0.0, passwordHash);
+                checking.setOpenedDay(openedDay);
+                checking.setOverdraftLimit(Money.toDouble(in.readLong()));
+                checking.setOverdraftFee(Money.toDouble(in.readLong()));
+                return checking;
+            }
+            case SAVINGS: {
+                SavingsAccount savings = new SavingsAccount(accountId, userId, in.readDouble(), passwordHash);
+                savings.setOpenedDay(openedDay);
+                savings.setMinimumBalance(Money.toDouble(in.readLong()));
+                return savings;
+            }
+            default:
+                throw new IOException("Unknown account kind " + kind);
+        }
+    }
+
+    private static void writeInvestment(DataOutput out, Investment investment) throws IOException {
+        if (investment instanceof Stock) {
+            out.writeByte(STOCK);
+        } else if (investment instanceof Bond) {
+            out.writeByte(BOND);
+        } else {
+            throw new IOException("Unsupported investment type " + investment.getClass().getName());
+        }
+
+        out.writeUTF(investment.getInvestmentId());
+        out.writeUTF(investment.getName());
+        out.writeLong(investment.getPurchasePriceCents());
+        out.writeLong(investment.getCurrentPriceCents());
+        out.writeInt(investment.getQuantity());
+        out.writeLong(TransactionJournal.toEpochMillis(investment.getPurchaseDate()));
+        out.writeUTF(investment.getUserId());
+
+        if (investment instanceof Stock) {
+            Stock stock = (Stock) investment;
+            out.writeUTF(stock.getTicker());
+            out.writeDouble(stock.getDividendYield());
+        } else {
+            Bond bond = (Bond) investment;
+            out.writeLong(bond.getMaturityDate().toEpochDay());
+            out.writeDouble(bond.getCouponRate());
+            out.writeLong(bond.getFaceValueCents());
+            out.writeUTF(bond.getIssuer());
+        }
+
+        synchronized (investment) {
+            out.writeByte(investment.getReliefMethod().ordinal());
+            out.writeLong(investment.getNextLotId());
+            out.writeLong(investment.getRealizedGainCents());
+            List<TaxLot> lots = investment.getOpenLots();
+            out.writeInt(lots.size());
+            for (TaxLot lot : lots) {
+                out.writeLong(lot.getLotId());
+                out.writeLong(TransactionJournal.toEpochMillis(lot.getAcquired()));
+                out.writeLong(lot.getUnitCostCents());
+                out.writeInt(lot.getQuantity());
+            }
+        }
+    }
+
+    private static Investment readInvestment(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        String investmentId = in.readUTF();
+        String name = in.readUTF();
+        double purchasePrice = Money.toDouble(in.readLong());
+        double currentPrice = Money.toDouble(in.readLong());
+        int quantity = in.readInt();
+        long purchaseMillis = in.readLong();
+        String userId = in.readUTF();
+
+        Investment investment;
+        switch (kind) {
+            case STOCK:
+                investment = new Stock(investmentId, name, purchasePrice, currentPrice, quantity,
+                        TransactionJournal.toLocalDateTime(purchaseMillis), userId,
+                        in.readUTF(), in.readDouble());
+                break;
+            case BOND:
+                LocalDate maturityDate = LocalDate.ofEpochDay(in.readLong());
+                double couponRate = in.readDouble();
+                double faceValue = Money.toDouble(in.readLong());
+                investment = new Bond(investmentId, name, purchasePrice, currentPrice, quantity,
+                        TransactionJournal.toLocalDateTime(purchaseMillis), userId,
+                        maturityDate, couponRate, faceValue, in.readUTF());
+                break;
+            default:
+                throw new IOException("Unknown investment kind " + kind);
+        }
+
+        LotReliefMethod reliefMethod = LotReliefMethod.values()[in.readByte()];
+        long nextLotId = in.readLong();
+        long realizedGainCents = in.readLong();
+        int lotCount = in.readInt();
+        List<TaxLot> lots = new ArrayList<>(lotCount);
+        for (int i = 0; i < lotCount; i++) {
+            long lotId = in.readLong();
+            LocalDateTime acquired = TransactionJournal.toLocalDateTime(in.readLong());
+            long unitCostCents = in.readLong();
+            lots.add(new TaxLot(lotId, acquired, unitCostCents, in.readInt()));
+        }
+        investment.restoreLots(reliefMethod, nextLotId, realizedGainCents, lots);
+        return investment;
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static String partitionFileName(int partition) {
+        return String.format("partition-%04d.dat", partition);
+    }
+
+    private static DataOutputStream openOutput(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+
+    private static DataInputStream openInput(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+    }
+
+    // Flushes a file or directory to disk. Directories cannot be opened for fsync on every platform;
+    // there the rename is left to the file system's own ordering.
+    private static void force(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                // not supported here
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+    }
+
+    private static List<Path> listSnapshots(Path root) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, SNAPSHOT_PREFIX + "*")) {
+            for (Path path : stream) {
+                if (!path.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                    snapshots.add(path);
+                }
+            }
+        }
+        snapshots.sort(Comparator.comparing(Path::getFileName));
+        return snapshots;
+    }
+
+    private static Path findLatestSnapshot(Path root) throws IOException {
+        List<Path> snapshots = listSnapshots(root);
+        return snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+    }
+
+    private static void pruneOldSnapshots(Path root) throws IOException {
+        List<Path> snapshots = listSnapshots(root);
+        for (int i = 0; i < snapshots.size() - SNAPSHOTS_TO_KEEP; i++) {
+            deleteRecursively(snapshots.get(i));
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            List<Path> paths = new ArrayList<>();
+            walk.forEach(paths::add);
+            for (int i = paths.size() - 1; i >= 0; i--) {
+                Files.delete(paths.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package myLib;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Applies whole files of deposits and withdrawals, locking each account once per batch
+public class BatchPostingEngine {
+    private final Map<String, Account> accounts;
+    private final IdSource idGenerator;
+
+    // One line of a batch
+    public static class Posting {
+        private final String accountId;
+        private final TransactionType type;
+        private final long amountCents;
+
+        public Posting(String accountId, TransactionType type, long amountCents) {
+            if (type != TransactionType.DEPOSIT && type != TransactionType.WITHDRAWAL) {
+                throw new IllegalArgumentException("Batch postings must be deposits or withdrawals: " + type);
+            }
+            this.accountId = accountId;
+            this.type = type;
+            this.amountCents = amountCents;
+        }
+
+        public String getAccountId() {
+            return accountId;
+        }
+
+        public TransactionType getType() {
+            return type;
+        }
+
+        public long getAmountCents() {
+            return amountCents;
+        }
+    }
+
+    // Per-line outcome of a batch, in input order
+    public static class Result {
+        private final PostingStatus[] statuses;
+        private final String[] transactionIds;
+        private final int postedCount;
+        private final long elapsedNanos;
+
+        Result(PostingStatus[] statuses, String[] transactionIds, int postedCount, long elapsedNanos) {
+            this.statuses = statuses;
+            this.transactionIds = transactionIds;
+            this.postedCount = postedCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public PostingStatus getStatus(int line) {
+            return statuses[line];
+        }
+
+        public String getTransactionId(int line) {
+            return transactionIds[line];
+        }
+
+        public int size() {
+            return statuses.length;
+        }
+
+        public int getPostedCount() {
+            return postedCount;
+        }
+
+        public int getRejectedCount() {
+            return statuses.length - postedCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getPostingsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : statuses.length * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+
+    public BatchPostingEngine(Map<String, Account> accounts, IdSource idGenerator) {
+        this.accounts = accounts;
+        this.idGenerator = idGenerator;
+    }
+
+    public Result post(List<Posting> postings) {
+        long start = System.nanoTime();
+        int size = postings.size();
+        PostingStatus[] statuses = new PostingStatus[size];
+        String[] transactionIds = new String[size];
+
+        // One generated id per batch; each line is identified by batch id and line number
+        String batchId = idGenerator.generateTransactionId();
+
+        // Group lines by account while keeping file order within each account
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> postings.get(a).getAccountId().compareTo(postings.get(b).getAccountId()));
+
+        int posted = 0;
+        PostingLog postingLog = null;
+        long lastLsn = 0L;
+        int groupStart = 0;
+
+        while (groupStart < size) {
+            String accountId = postings.get(order[groupStart]).getAccountId();
+            int groupEnd = groupStart + 1;
+            while (groupEnd < size && postings.get(order[groupEnd]).getAccountId().equals(accountId)) {
+                groupEnd++;
+            }
+
+            Account account = accounts.get(accountId);
+            if (account == null) {
+                for (int i = groupStart; i < groupEnd; i++) {
+                    statuses[order[i]] = PostingStatus.UNKNOWN_ACCOUNT;
+                }
+            } else {
+                account.lock.lock();
+                try {
+                    for (int i = groupStart; i < groupEnd; i++) {
+                        int line = order[i];
+                        Posting posting = postings.get(line);
+                        String transactionId = batchId + "-" + line;
+                        PostingStatus status = posting.getType() == TransactionType.DEPOSIT
+                                ? account.applyDeposit(posting.getAmountCents(), transactionId)
+                                : account.applyWithdrawal(posting.getAmountCents(), transactionId);
+
+                        statuses[line] = status;
+                        if (status == PostingStatus.POSTED) {
+                            transactionIds[line] = transactionId;
+                            posted++;
+                        }
+                    }
+                } finally {
+                    account.lock.unlock();
+                }
+
+                if (account.postingLog != null) {
+                    postingLog = account.postingLog;
+                    lastLsn = Math.max(lastLsn, account.getLastPostingLsn());
+                }
+            }
+            groupStart = groupEnd;
+        }
+
+        // A single commit makes the whole batch durable
+        if (postingLog != null) {
+            postingLog.commit(lastLsn);
+        }
+
+        return new Result(statuses, transactionIds, posted, System.nanoTime() - start);
+    }
+
+    // Reads "accountId,DEPOSIT|WITHDRAWAL,amount" lines; blank lines and lines starting with # are skipped
+    public static List<Posting> readFile(Path file) throws IOException {
+        List<Posting> postings = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split(",");
+                if (fields.length != 3 || !Utility.validateDouble(fields[2])) {
+                    throw malformed(lineNumber, line, null);
+                }
+                try {
+                    postings.add(new Posting(
+                            fields[0].trim(),
+                            TransactionType.valueOf(fields[1].trim().toUpperCase()),
+                            Money.toCents(Double.parseDouble(fields[2].trim()))
+                    ));
+                } catch (IllegalArgumentException e) {
+                    // An unknown type, or one a batch may not post such as FEE
+                    throw malformed(lineNumber, line, e);
+                }
+            }
+        }
+        return postings;
+    }
+
+    private static IOException malformed(int lineNumber, String line, Throwable cause) {
+        return new IOException("Malformed posting on line " + lineNumber + ": " + line, cause);
+    }
+}
@@ -1,18 +1,19 @@
 package myLib;
 
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 
 public class Bond extends Investment{
     private LocalDate maturityDate;
-    private Double couponRate;
-    private Double faceValue;
+    private double couponRate;
+    private long faceValueCents;
     private String issuer;
+    // Last analytics computed by BondAnalytics; terms never change, so price and date identify it
+    volatile BondAnalytics.Result cachedAnalytics;
     
     private static final String DECIMAL_FORMAT = "#,##0.00";
-    private static final double DAYS_PER_YEAR = 365.0;
     private static final double PERCENTAGE_MULTIPLIER = 100.0;
 
     public Bond(
@@ -24,8 +25,8 @@ public class Bond extends Investment{
             LocalDateTime purchaseDate,
             String userId,
             LocalDate maturityDate,
-            Double couponRate,
-            Double faceValue,
+            double couponRate,
+            double faceValue,
             String issuer
     ) {
         super(
@@ -39,41 +40,66 @@ public class Bond extends Investment{
         );
         this.maturityDate = maturityDate;
         this.couponRate = couponRate;
-        this.faceValue = faceValue;
+        this.faceValueCents = Money.toCents(faceValue);
         this.issuer = issuer;
     }
 
-    private double calculateYieldToMaturity() {
-        double yearsToMaturity = ChronoUnit.DAYS.between(LocalDate.now(), maturityDate) / DAYS_PER_YEAR;
-        return (faceValue - currentPrice) / currentPrice / yearsToMaturity + couponRate;
+    public LocalDate getMaturityDate() {
+        return maturityDate;
+    }
+
+    public double getCouponRate() {
+        return couponRate;
+    }
+
+    public double getFaceValue() {
+        return Money.toDouble(faceValueCents);
+    }
+
+    public long getFaceValueCents() {
+        return faceValueCents;
+    }
+
+    public String getIssuer() {
+        return issuer;
     }
 
     @Override
-    public double calculateDividends(){
-        return faceValue * couponRate * quantity;
+    public long calculateDividendsCents(){
+        return Money.multiply(faceValueCents * quantity, couponRate, RoundingMode.HALF_EVEN);
     }
 
     @Override
     public void getInvestmentSummary(){
         DecimalFormat df = new DecimalFormat(DECIMAL_FORMAT);
-        long daysToMaturity = ChronoUnit.DAYS.between(LocalDate.now(), maturityDate);
-        double ytm = calculateYieldToMaturity();
+        BondAnalytics.Result analytics = BondAnalytics.analyze(this, LocalDate.now());
 
         System.out.println("\n\033[1;36mBond Investment Summary\033[0m");
         System.out.println("\033[1;33mBond:\033[0m " + name + " (" + issuer + ")");
         System.out.println("\033[1;33mInvestment ID:\033[0m " + investmentId);
         System.out.println("\033[1;33mQuantity:\033[0m " + quantity + " bonds");
-        System.out.println("\033[1;33mFace Value:\033[0m $" + df.format(faceValue) + " per bond");
-        System.out.println("\033[1;33mPurchase Price:\033[0m $" + df.format(purchasePrice));
-        System.out.println("\033[1;33mCurrent Price:\033[0m $" + df.format(currentPrice));
+        System.out.println("\033[1;33mFace Value:\033[0m $" + df.format(getFaceValue()) + " per bond");
+        System.out.println("\033[1;33mPurchase Price:\033[0m $" + df.format(getPurchasePrice()));
+        System.out.println("\033[1;33mCurrent Price:\033[0m $" + df.format(getCurrentPrice()));
         System.out.println("\033[1;33mMaturity Date:\033[0m " + maturityDate);
-        System.out.println("\033[1;33mDays to Maturity:\033[0m " + daysToMaturity);
+        System.out.println("\033[1;33mDays to Maturity:\033[0m " + Math.max(analytics.getDaysToMaturity(), 0));
         System.out.println("\033[1;33mCoupon Rate:\033[0m " + df.format(couponRate*PERCENTAGE_MULTIPLIER) + "%");
         System.out.println("\033[1;33mAnnual Coupons:\033[0m $" + df.format(calculateDividends()));
-        System.out.println("\033[1;33mYield to Maturity:\033[0m " + df.format(ytm*PERCENTAGE_MULTIPLIER) + "%");
+        if (analytics.isMatured()) {
+            System.out.println("\033[1;33mYield to Maturity:\033[0m Matured");
+        } else if (Double.isNaN(analytics.getYieldToMaturity())) {
+            System.out.println("\033[1;33mYield to Maturity:\033[0m N/A");
+        } else {
+            System.out.println("\033[1;33mYield to Maturity:\033[0m " + df.format(analytics.getYieldToMaturity()*PERCENTAGE_MULTIPLIER) + "%");
+            System.out.println("\033[1;33mModified Duration:\033[0m " + df.format(analytics.getModifiedDuration()) + " years");
+            System.out.println("\033[1;33mConvexity:\033[0m " + df.format(analytics.getConvexity()));
+        }
         System.out.println("\033[1;33mTotal Value:\033[0m $" + df.format(this.getCurrentValue()));
         System.out.println("\033[1;33mTotal Gain/Loss:\033[0m " +
                 (this.getGainLoss() >= 0 ? "+" : "") + "$" + df.format(this.getGainLoss()));
+        System.out.println("\033[1;33mRealized Gain/Loss:\033[0m " +
+                (this.getRealizedGain() >= 0 ? "+" : "") + "$" + df.format(this.getRealizedGain()) +
+                " (" + getOpenLots().size() + " open lots)");
     }
 
 }
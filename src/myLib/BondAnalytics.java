@@ -0,0 +1,325 @@
+package myLib;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Yield to maturity, duration and convexity for bonds paying annual coupons on the anniversaries of
+// their maturity date. The current price is taken as the full price of one bond (accrued interest
+// included) and cash flows are discounted with annual compounding over actual/365 year fractions.
+public final class BondAnalytics {
+    private static final double DAYS_PER_YEAR = 365.0;
+    private static final int MAX_NEWTON_ITERATIONS = 50;
+    private static final int MAX_BISECTION_ITERATIONS = 200;
+    private static final double YIELD_TOLERANCE = 1e-12;
+    // Yields are solved on (-100%, MAX_YIELD]; deep discounts can legitimately sit far above 100%
+    private static final double MIN_YIELD = -0.999999;
+    private static final double MAX_YIELD = 1e9;
+    private static final int BATCH_CHUNK_SIZE = 256;
+
+    private BondAnalytics() {
+    }
+
+    public static class Result {
+        private final long priceCents;
+        private final LocalDate valuationDate;
+        private final long daysToMaturity;
+        private final double yieldToMaturity;
+        private final double macaulayDuration;
+        private final double modifiedDuration;
+        private final double convexity;
+
+        Result(long priceCents, LocalDate valuationDate, long daysToMaturity, double yieldToMaturity,
+               double macaulayDuration, double modifiedDuration, double convexity) {
+            this.priceCents = priceCents;
+            this.valuationDate = valuationDate;
+            this.daysToMaturity = daysToMaturity;
+            this.yieldToMaturity = yieldToMaturity;
+            this.macaulayDuration = macaulayDuration;
+            this.modifiedDuration = modifiedDuration;
+            this.convexity = convexity;
+        }
+
+        public long getPriceCents() {
+            return priceCents;
+        }
+
+        public LocalDate getValuationDate() {
+            return valuationDate;
+        }
+
+        public long getDaysToMaturity() {
+            return daysToMaturity;
+        }
+
+        public boolean isMatured() {
+            return daysToMaturity <= 0;
+        }
+
+        // NaN when the bond has matured or has no positive price
+        public double getYieldToMaturity() {
+            return yieldToMaturity;
+        }
+
+        // In years
+        public double getMacaulayDuration() {
+            return macaulayDuration;
+        }
+
+        public double getModifiedDuration() {
+            return modifiedDuration;
+        }
+
+        public double getConvexity() {
+            return convexity;
+        }
+
+        // Price change of one bond, in cents, for a one basis point rise in yield
+        public double getDv01Cents() {
+            return modifiedDuration * priceCents * 0.0001;
+        }
+    }
+
+    public static class BookRisk {
+        private final Result[] results;
+        private final long marketValueCents;
+        private final double dv01Cents;
+        private final double modifiedDuration;
+        private final long elapsedNanos;
+
+        BookRisk(Result[] results, long marketValueCents, double dv01Cents, long elapsedNanos) {
+            this.results = results;
+            this.marketValueCents = marketValueCents;
+            this.dv01Cents = dv01Cents;
+            this.modifiedDuration = marketValueCents == 0 ? 0.0 : dv01Cents / (marketValueCents * 0.0001);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        // In the order the bonds were given
+        public Result getResult(int index) {
+            return results[index];
+        }
+
+        public int size() {
+            return results.length;
+        }
+
+        // Of the bonds not yet matured
+        public long getMarketValueCents() {
+            return marketValueCents;
+        }
+
+        public double getDv01Cents() {
+            return dv01Cents;
+        }
+
+        // Market-value weighted
+        public double getModifiedDuration() {
+            return modifiedDuration;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    // Returns the bond's analytics at its current price, reusing the last result for the same price and date
+    public static Result analyze(Bond bond, LocalDate valuationDate) {
+        long priceCents = bond.getCurrentPriceCents();
+        Result cached = bond.cachedAnalytics;
+        if (cached != null && cached.priceCents == priceCents && cached.valuationDate.equals(valuationDate)) {
+            return cached;
+        }
+        Result result = analyze(bond.getFaceValueCents(), bond.getCouponRate(), bond.getMaturityDate(),
+                priceCents, valuationDate);
+        bond.cachedAnalytics = result;
+        return result;
+    }
+
+    public static Result analyze(long faceValueCents, double couponRate, LocalDate maturityDate,
+                                 long priceCents, LocalDate valuationDate) {
+        long daysToMaturity = ChronoUnit.DAYS.between(valuationDate, maturityDate);
+        if (daysToMaturity <= 0 || priceCents <= 0) {
+            return new Result(priceCents, valuationDate, daysToMaturity, Double.NaN, 0.0, 0.0, 0.0);
+        }
+
+        double price = priceCents;
+        double coupon = faceValueCents * couponRate;
+        int couponCount = (int) ChronoUnit.YEARS.between(valuationDate, maturityDate.minusDays(1)) + 1;
+        if (couponCount == 1) {
+            // In the final period compounding would annualize a few days' return into an absurd yield,
+            // so the yield is quoted as simple interest: price = amount / (1 + y * t)
+            double years = daysToMaturity / DAYS_PER_YEAR;
+            double yield = ((faceValueCents + coupon) / price - 1.0) / years;
+            double growth = 1.0 + yield * years;
+            return new Result(priceCents, valuationDate, daysToMaturity, yield,
+                    years, years / growth, 2.0 * years * years / (growth * growth));
+        }
+
+        // Cash flows from the first coupon after the valuation date to maturity
+        int[] days = new int[couponCount];
+        double[] amounts = new double[couponCount];
+        for (int k = 0; k < couponCount; k++) {
+            LocalDate paymentDate = maturityDate.minusYears(couponCount - 1 - k);
+            days[k] = (int) ChronoUnit.DAYS.between(valuationDate, paymentDate);
+            amounts[k] = coupon;
+        }
+        amounts[couponCount - 1] += faceValueCents;
+
+        double yield = solveYield(days, amounts, price, faceValueCents, coupon, daysToMaturity / DAYS_PER_YEAR);
+        if (Double.isNaN(yield)) {
+            return new Result(priceCents, valuationDate, daysToMaturity, Double.NaN, 0.0, 0.0, 0.0);
+        }
+
+        double[] moments = new double[3];
+        presentValue(days, amounts, yield, moments);
+        double macaulay = moments[1] / moments[0];
+        double modified = macaulay / (1.0 + yield);
+        double convexity = moments[2] / (moments[0] * (1.0 + yield) * (1.0 + yield));
+        return new Result(priceCents, valuationDate, daysToMaturity, yield, macaulay, modified, convexity);
+    }
+
+    // Fills {sum PV, sum t * PV, sum t * (t + 1) * PV}. Discount factors are stepped from one coupon
+    // to the next, so only the first flow and unusual gaps need an exp() rather than every flow.
+    private static void presentValue(int[] days, double[] amounts, double yield, double[] moments) {
+        double logGrowth = Math.log1p(yield) / DAYS_PER_YEAR;
+        double yearStep = Math.exp(-365 * logGrowth);
+        double leapYearStep = Math.exp(-366 * logGrowth);
+
+        double discount = Math.exp(-days[0] * logGrowth);
+        double value = 0.0;
+        double weightedTime = 0.0;
+        double weightedConvexity = 0.0;
+        for (int k = 0; k < days.length; k++) {
+            if (k > 0) {
+                int gap = days[k] - days[k - 1];
+                discount *= gap == 365 ? yearStep : gap == 366 ? leapYearStep : Math.exp(-gap * logGrowth);
+            }
+            double t = days[k] / DAYS_PER_YEAR;
+            double discounted = amounts[k] * discount;
+            value += discounted;
+            weightedTime += t * discounted;
+            weightedConvexity += t * (t + 1.0) * discounted;
+        }
+        moments[0] = value;
+        moments[1] = weightedTime;
+        moments[2] = weightedConvexity;
+    }
+
+    // Newton-Raphson from the textbook approximation, falling back to bisection if it leaves the domain
+    private static double solveYield(int[] days, double[] amounts, double price,
+                                     long faceValueCents, double coupon, double years) {
+        double yield = (coupon + (faceValueCents - price) / years) / ((faceValueCents + price) / 2.0);
+        if (!(yield > MIN_YIELD) || yield > MAX_YIELD) {
+            yield = 0.05;
+        }
+
+        double[] moments = new double[3];
+        for (int i = 0; i < MAX_NEWTON_ITERATIONS; i++) {
+            presentValue(days, amounts, yield, moments);
+            double value = moments[0] - price;
+            double slope = -moments[1] / (1.0 + yield);
+            if (slope == 0.0 || !Double.isFinite(value)) {
+                break;
+            }
+            double next = yield - value / slope;
+            if (!(next > MIN_YIELD) || next > MAX_YIELD) {
+                break;
+            }
+            if (Math.abs(next - yield) <= YIELD_TOLERANCE * Math.max(1.0, Math.abs(next))) {
+                return next;
+            }
+            yield = next;
+        }
+        return bisectYield(days, amounts, price, moments);
+    }
+
+    // The price falls as the yield rises, so the root is bracketed by where the error changes sign
+    private static double bisectYield(int[] days, double[] amounts, double price, double[] moments) {
+        double low = MIN_YIELD;
+        double high = 1.0;
+        if (priceError(days, amounts, price, low, moments) < 0) {
+            return Double.NaN;
+        }
+        while (priceError(days, amounts, price, high, moments) > 0) {
+            low = high;
+            high *= 2.0;
+            if (high > MAX_YIELD) {
+                return Double.NaN;
+            }
+        }
+        for (int i = 0; i < MAX_BISECTION_ITERATIONS; i++) {
+            double middle = (low + high) / 2.0;
+            if (priceError(days, amounts, price, middle, moments) > 0) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+            if (high - low <= YIELD_TOLERANCE * Math.max(1.0, Math.abs(middle))) {
+                break;
+            }
+        }
+        return (low + high) / 2.0;
+    }
+
+    private static double priceError(int[] days, double[] amounts, double price, double yield, double[] moments) {
+        presentValue(days, amounts, yield, moments);
+        return moments[0] - price;
+    }
+
+    // Analyzes every bond across the pool and totals position-level value and DV01
+    public static BookRisk analyzeAll(Collection<Bond> bonds, LocalDate valuationDate, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        Bond[] book = bonds.toArray(new Bond[0]);
+        Result[] results = new Result[book.length];
+        double[] totals = pool.invoke(new BatchTask(book, results, valuationDate, 0, book.length));
+        return new BookRisk(results, (long) totals[0], totals[1], System.nanoTime() - start);
+    }
+
+    private static class BatchTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Bond[] book;
+        private final Result[] results;
+        private final LocalDate valuationDate;
+        private final int from;
+        private final int to;
+
+        BatchTask(Bond[] book, Result[] results, LocalDate valuationDate, int from, int to) {
+            this.book = book;
+            this.results = results;
+            this.valuationDate = valuationDate;
+            this.from = from;
+            this.to = to;
+        }
+
+        // Returns {market value, DV01} of the range, both in cents
+        @Override
+        protected double[] compute() {
+            if (to - from <= BATCH_CHUNK_SIZE) {
+                double marketValue = 0.0;
+                double dv01 = 0.0;
+                for (int i = from; i < to; i++) {
+                    Result result = analyze(book[i], valuationDate);
+                    results[i] = result;
+                    if (!result.isMatured() && !Double.isNaN(result.getYieldToMaturity())) {
+                        int quantity = book[i].getQuantity();
+                        marketValue += (double) result.getPriceCents() * quantity;
+                        dv01 += result.getDv01Cents() * quantity;
+                    }
+                }
+                return new double[]{marketValue, dv01};
+            }
+            int middle = (from + to) >>> 1;
+            BatchTask left = new BatchTask(book, results, valuationDate, from, middle);
+            left.fork();
+            double[] right = new BatchTask(book, results, valuationDate, middle, to).compute();
+            double[] sums = left.join();
+            sums[0] += right[0];
+            sums[1] += right[1];
+            return sums;
+        }
+    }
+}
@@ -1,88 +1,121 @@
 package myLib;
 
 public class CheckingAccount extends Account {
-    private double overdraftLimit;
-    private double overdraftFee;
+    private long overdraftLimitCents;
+    private long overdraftFeeCents;
     
-    private static final double DEFAULT_OVERDRAFT_FEE = 35.0;
+    private static final long DEFAULT_OVERDRAFT_FEE_CENTS = 3500L;
 
     public CheckingAccount(String accountNumber, String userId, double overdraftLimit, String passwordHash) {
         super(userId, accountNumber, passwordHash);
-        this.overdraftLimit = overdraftLimit;
-        this.overdraftFee = DEFAULT_OVERDRAFT_FEE;
+        this.overdraftLimitCents = Money.toCents(overdraftLimit);
+        this.overdraftFeeCents = DEFAULT_OVERDRAFT_FEE_CENTS;
     }
 
     @Override
-    public void withdraw(double amount, String transactionId) {
-        if (amount <= 0) {
+    public void withdrawCents(long amountCents, String transactionId) {
+        if (amountCents <= 0) {
             System.out.println("Invalid withdrawal amount. Amount must be positive.");
             return;
         }
 
-        double availableBalance = this.balance + this.overdraftLimit;
+        long feeCents = 0L;
+        lock.lock();
+        try {
+            long availableCents = availableCents();
 
-        if (amount > availableBalance) {
-            System.out.println("Withdrawal exceeds available balance including overdraft limit. Available: $" + availableBalance);
-            return;
-        }
+            if (amountCents > availableCents) {
+                System.out.println("Withdrawal exceeds available balance including overdraft limit. Available: $" + Money.toDouble(availableCents));
+                return;
+            }
 
-        this.balance -= amount;
-        Transaction transaction = new Transaction.Builder(
-                transactionId,
-                this.accountId,
-                amount,
-                TransactionType.WITHDRAWAL,
-                "Withdrawal from checking account"
-        ).build();
-        addTransaction(transaction);
-
-        if (this.balance < 0) {
-            Transaction overdraftTransaction = new Transaction.Builder(
+            post(-amountCents, Transaction.Builder.ofCents(
                     transactionId,
                     this.accountId,
-                    this.overdraftFee,
-                    TransactionType.FEE,
-                    "Overdraft fee"
-            ).build();
-            addTransaction(overdraftTransaction);
-            this.balance -= this.overdraftFee;
-            System.out.println("Withdrawal successful. Amount: $" + amount + " (Overdraft fee of $" + this.overdraftFee + " applied)");
+                    amountCents,
+                    TransactionType.WITHDRAWAL,
+                    withdrawalDescription()
+            ).build());
+            feeCents = afterDebit(transactionId);
+        } finally {
+            lock.unlock();
+        }
+        commitPostings();
+
+        if (feeCents > 0) {
+            System.out.println("Withdrawal successful. Amount: $" + Money.toDouble(amountCents) + " (Overdraft fee of $" + Money.toDouble(feeCents) + " applied)");
         } else {
-            System.out.println("Withdrawal successful. Amount: $" + amount);
+            System.out.println("Withdrawal successful. Amount: $" + Money.toDouble(amountCents));
         }
     }
 
+    @Override
+    protected String withdrawalDescription() {
+        return "Withdrawal from checking account";
+    }
+
+    @Override
+    protected long availableCents() {
+        return this.balanceCents + this.overdraftLimitCents;
+    }
+
+    // Any debit that leaves the account overdrawn is charged the overdraft fee
+    @Override
+    protected long afterDebit(String transactionId) {
+        if (this.balanceCents >= 0) {
+            return 0L;
+        }
+
+        long feeCents = this.overdraftFeeCents;
+        post(-feeCents, Transaction.Builder.ofCents(
+                transactionId,
+                this.accountId,
+                feeCents,
+                TransactionType.FEE,
+                "Overdraft fee"
+        ).build());
+        return feeCents;
+    }
+
     public boolean checkOverdraft() {
-        return this.balance < 0;
+        return this.balanceCents < 0;
     }
 
     @Override
-    public double calculateFees() {
+    public long calculateFeesCents() {
         if (checkOverdraft()) {
-            return this.overdraftFee;
+            return this.overdraftFeeCents;
         }
-        return 0.0;
+        return 0L;
     }
 
     @Override
     public String getAccountSummary() {
         return String.format("Checking Account [ID: %s] - Balance: $%.2f, Overdraft Limit: $%.2f, Overdraft Fee: $%.2f, In Overdraft: %s",
-                this.accountId, this.balance, this.overdraftLimit, this.overdraftFee, checkOverdraft() ? "Yes" : "No");
+                this.accountId, getBalance(), getOverdraftLimit(), getOverdraftFee(), checkOverdraft() ? "Yes" : "No");
     }
 
     public double getOverdraftLimit() {
-        return overdraftLimit;
+        return Money.toDouble(overdraftLimitCents);
+    }
+
+    public long getOverdraftLimitCents() {
+        return overdraftLimitCents;
     }
 
     public void setOverdraftLimit(double overdraftLimit) {
-        this.overdraftLimit = overdraftLimit;
+        this.overdraftLimitCents = Money.toCents(overdraftLimit);
     }
 
     public double getOverdraftFee() {
-        return overdraftFee;
+        return Money.toDouble(overdraftFeeCents);
+    }
+
+    public long getOverdraftFeeCents() {
+        return overdraftFeeCents;
     }
 
     public void setOverdraftFee(double overdraftFee) {
-        this.overdraftFee = overdraftFee;
+        this.overdraftFeeCents = Money.toCents(overdraftFee);
     }
 }
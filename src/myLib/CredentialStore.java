@@ -0,0 +1,451 @@
+package myLib;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+// Username -> encoded credential, kept on disk so millions of users cost no heap.
+// credentials.dat is an append-only log of put/remove records; credentials.idx is a memory-mapped
+// open-addressing table of (64-bit username hash, record offset) slots. A lookup probes the table
+// and reads one record. The index is rebuilt from the log if the store was not closed cleanly.
+public class CredentialStore implements AutoCloseable {
+    private static final String DATA_FILE = "credentials.dat";
+    private static final String INDEX_FILE = "credentials.idx";
+
+    private static final int INDEX_MAGIC = 0x43524458;
+    private static final int INDEX_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CLEAN_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int SIZE_OFFSET = 24;
+    private static final int USED_OFFSET = 32;
+    private static final int DATA_LENGTH_OFFSET = 40;
+
+    private static final int SLOT_SIZE = 16;
+    // Slots are mapped in 1GB regions since one mapping cannot exceed 2GB
+    private static final long REGION_SIZE = 1L << 30;
+    private static final long INITIAL_CAPACITY = 1L << 16;
+    private static final double MAX_LOAD = 0.7;
+    private static final long EMPTY = 0L;
+    private static final long REMOVED = -1L;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int RECORD_HEADER = 8;
+    private static final int READ_AHEAD = 512;
+
+    private final Path directory;
+    private final FileChannel data;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<ByteBuffer> readBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(READ_AHEAD));
+
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] regions;
+    private long capacity;
+    private long size;
+    private long used;
+    private long dataLength;
+
+    private static class Record {
+        private final byte op;
+        private final String username;
+        private final String credential;
+        private final int length;
+
+        Record(byte op, String username, String credential, int length) {
+            this.op = op;
+            this.username = username;
+            this.credential = credential;
+            this.length = length;
+        }
+    }
+
+    public CredentialStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            this.data = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (!openIndex()) {
+                rebuildIndex();
+            }
+            // Marked dirty while open; close() marks it clean again
+            header.putInt(CLEAN_OFFSET, 0);
+            header.force();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open credential store in " + directory, e);
+        }
+    }
+
+    public String get(String username) {
+        lock.readLock().lock();
+        try {
+            long slot = find(username, hash(username));
+            return slot < 0 ? null : readRecord(slotOffset(slot)).credential;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read credential for " + username, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String username) {
+        return get(username) != null;
+    }
+
+    // Stores the credential only if the username is not taken; the check and the write are atomic
+    public boolean putIfAbsent(String username, String credential) {
+        lock.writeLock().lock();
+        try {
+            long hash = hash(username);
+            if (find(username, hash) >= 0) {
+                return false;
+            }
+            long offset = append(PUT, username, credential);
+            ensureCapacity();
+            insert(hash, offset);
+            size++;
+            writeCounts();
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to store credential for " + username, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Swaps the credential only if it is still the expected one, as after a rehash on login
+    public boolean replace(String username, String expected, String credential) {
+        lock.writeLock().lock();
+        try {
+            long slot = find(username, hash(username));
+            if (slot < 0 || !readRecord(slotOffset(slot)).credential.equals(expected)) {
+                return false;
+            }
+            setSlotOffset(slot, append(PUT, username, credential));
+            writeCounts();
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to replace credential for " + username, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(String username) {
+        lock.writeLock().lock();
+        try {
+            long slot = find(username, hash(username));
+            if (slot < 0) {
+                return false;
+            }
+            append(REMOVE, username, "");
+            setSlotOffset(slot, REMOVED);
+            size--;
+            writeCounts();
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to remove credential for " + username, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (MappedByteBuffer region : regions) {
+                region.force();
+            }
+            header.putInt(CLEAN_OFFSET, 1);
+            header.force();
+            data.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to close credential store in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Maps an existing index; returns false if it is missing, foreign or may be stale
+    private boolean openIndex() throws IOException {
+        Path file = directory.resolve(INDEX_FILE);
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mappedHeader = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            long mappedCapacity = mappedHeader.getLong(CAPACITY_OFFSET);
+            if (mappedHeader.getInt(MAGIC_OFFSET) != INDEX_MAGIC
+                    || mappedHeader.getInt(VERSION_OFFSET) != INDEX_VERSION
+                    || mappedHeader.getInt(CLEAN_OFFSET) != 1
+                    || mappedHeader.getLong(DATA_LENGTH_OFFSET) != data.size()
+                    || Long.bitCount(mappedCapacity) != 1
+                    || channel.size() != HEADER_SIZE + mappedCapacity * SLOT_SIZE) {
+                return false;
+            }
+            header = mappedHeader;
+            regions = mapSlots(channel, mappedCapacity);
+            capacity = mappedCapacity;
+            size = header.getLong(SIZE_OFFSET);
+            used = header.getLong(USED_OFFSET);
+            dataLength = header.getLong(DATA_LENGTH_OFFSET);
+            return true;
+        }
+    }
+
+    // Replays the record log into a fresh index, dropping any torn record at the tail
+    private void rebuildIndex() throws IOException {
+        createIndex(INITIAL_CAPACITY);
+        size = 0L;
+        used = 0L;
+        dataLength = 0L;
+
+        long end = data.size();
+        long offset = 0L;
+        while (offset < end) {
+            Record record = readRecord(offset);
+            if (record == null) {
+                break;
+            }
+            long hash = hash(record.username);
+            long slot = find(record.username, hash);
+            if (record.op == PUT) {
+                if (slot >= 0) {
+                    setSlotOffset(slot, offset);
+                } else {
+                    ensureCapacity();
+                    insert(hash, offset);
+                    size++;
+                }
+            } else if (slot >= 0) {
+                setSlotOffset(slot, REMOVED);
+                size--;
+            }
+            offset += RECORD_HEADER + record.length;
+        }
+
+        if (offset < end) {
+            data.truncate(offset);
+        }
+        dataLength = offset;
+        writeCounts();
+    }
+
+    private void ensureCapacity() throws IOException {
+        if (used + 1 <= capacity * MAX_LOAD) {
+            return;
+        }
+        // Rehashing needs only the stored hashes; removed slots are dropped
+        MappedByteBuffer[] oldRegions = regions;
+        long oldCapacity = capacity;
+        createIndex(oldCapacity * 2);
+        used = 0L;
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            long hash = slotHash(oldRegions, slot);
+            long offset = slotOffset(oldRegions, slot);
+            if (hash != EMPTY && offset != REMOVED) {
+                insert(hash, offset);
+            }
+        }
+    }
+
+    // Builds an empty index beside the current one and atomically moves it into place
+    private void createIndex(long newCapacity) throws IOException {
+        Path file = directory.resolve(INDEX_FILE);
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        Files.deleteIfExists(temp);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.truncate(HEADER_SIZE + newCapacity * SLOT_SIZE);
+            channel.write(ByteBuffer.wrap(new byte[]{0}), HEADER_SIZE + newCapacity * SLOT_SIZE - 1);
+            MappedByteBuffer newHeader = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            newHeader.putInt(MAGIC_OFFSET, INDEX_MAGIC);
+            newHeader.putInt(VERSION_OFFSET, INDEX_VERSION);
+            newHeader.putInt(CLEAN_OFFSET, 0);
+            newHeader.putLong(CAPACITY_OFFSET, newCapacity);
+            regions = mapSlots(channel, newCapacity);
+            header = newHeader;
+            capacity = newCapacity;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MappedByteBuffer[] mapSlots(FileChannel channel, long capacity) throws IOException {
+        long bytes = capacity * SLOT_SIZE;
+        int count = (int) ((bytes + REGION_SIZE - 1) / REGION_SIZE);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * REGION_SIZE;
+            mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + start, Math.min(REGION_SIZE, bytes - start));
+        }
+        return mapped;
+    }
+
+    // Returns the slot holding the username, or -1
+    private long find(String username, long hash) throws IOException {
+        long mask = capacity - 1;
+        long slot = hash & mask;
+        while (true) {
+            long slotHash = slotHash(regions, slot);
+            if (slotHash == EMPTY) {
+                return -1L;
+            }
+            if (slotHash == hash) {
+                long offset = slotOffset(regions, slot);
+                if (offset != REMOVED && readRecord(offset).username.equals(username)) {
+                    return slot;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void insert(long hash, long offset) {
+        long mask = capacity - 1;
+        long slot = hash & mask;
+        while (slotHash(regions, slot) != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        setSlotOffset(slot, offset);
+        region(regions, slot).putLong(position(slot), hash);
+        used++;
+    }
+
+    private long append(byte op, String username, String credential) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_HEADER + 2 * username.length() + credential.length() + 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeByte(op);
+        out.writeUTF(username);
+        out.writeUTF(credential);
+
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int length = record.capacity() - RECORD_HEADER;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+
+        long offset = dataLength;
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += data.write(record, position);
+        }
+        // Registration and rehash are rare next to the KDF; make each one durable
+        data.force(false);
+        dataLength = position;
+        return offset;
+    }
+
+    // Reads the record at offset; returns null if it is torn or corrupt
+    private Record readRecord(long offset) throws IOException {
+        ByteBuffer buffer = readBuffers.get();
+        buffer.clear();
+        readFully(buffer, offset);
+        buffer.flip();
+        if (buffer.remaining() < RECORD_HEADER) {
+            return null;
+        }
+        int length = buffer.getInt(0);
+        int checksum = buffer.getInt(4);
+        if (length <= 0 || offset + RECORD_HEADER + length > data.size()) {
+            return null;
+        }
+
+        byte[] body = new byte[length];
+        if (RECORD_HEADER + length <= buffer.limit()) {
+            buffer.get(RECORD_HEADER, body);
+        } else {
+            ByteBuffer large = ByteBuffer.wrap(body);
+            readFully(large, offset + RECORD_HEADER);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        return new Record(in.readByte(), in.readUTF(), in.readUTF(), length);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = data.read(buffer, position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    private void writeCounts() {
+        header.putLong(SIZE_OFFSET, size);
+        header.putLong(USED_OFFSET, used);
+        header.putLong(DATA_LENGTH_OFFSET, dataLength);
+    }
+
+    private long slotOffset(long slot) {
+        return slotOffset(regions, slot);
+    }
+
+    private void setSlotOffset(long slot, long offset) {
+        region(regions, slot).putLong(position(slot) + 8, offset);
+    }
+
+    private static long slotHash(MappedByteBuffer[] regions, long slot) {
+        return region(regions, slot).getLong(position(slot));
+    }
+
+    private static long slotOffset(MappedByteBuffer[] regions, long slot) {
+        return region(regions, slot).getLong(position(slot) + 8);
+    }
+
+    private static MappedByteBuffer region(MappedByteBuffer[] regions, long slot) {
+        return regions[(int) (slot * SLOT_SIZE / REGION_SIZE)];
+    }
+
+    private static int position(long slot) {
+        return (int) (slot * SLOT_SIZE % REGION_SIZE);
+    }
+
+    // FNV-1a over the characters followed by a 64-bit finaliser; zero marks an empty slot
+    private static long hash(String username) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            hash ^= username.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+}
@@ -0,0 +1,396 @@
+package myLib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Closes a business date across all accounts: daily interest accrual and fee assessment.
+// Accounts are sorted by id and cut into fixed-size partitions so a restarted run sees the
+// same partitions; finished partitions are recorded in a checkpoint file and skipped. The last
+// fully closed date is kept in its own file so catchUp() can resume and fill in missed dates.
+public class EndOfDayClose {
+    public static final int DEFAULT_PARTITION_SIZE = 512;
+
+    static final char INTEREST_KIND = 'I';
+    static final char FEE_KIND = 'F';
+
+    private static final String TRANSACTION_PREFIX = "EOD-";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final int CHECKPOINT_MAGIC = 0x454F4443;
+    private static final int HEADER_SIZE = 12;
+    private static final String LAST_CLOSED_FILE = "last-closed";
+    private static final String CHECKPOINT_PREFIX = "eod-";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    private final Path checkpointDirectory;
+    private final int partitionSize;
+    private final int threads;
+
+    // Summary of one close() run
+    public static class Result {
+        private final LocalDate businessDate;
+        private final int partitions;
+        private final int skippedPartitions;
+        private final long accountsClosed;
+        private final long interestPostings;
+        private final long interestCents;
+        private final long feePostings;
+        private final long feeCents;
+        private final long elapsedNanos;
+
+        Result(LocalDate businessDate, int partitions, int skippedPartitions, long accountsClosed,
+               long interestPostings, long interestCents, long feePostings, long feeCents, long elapsedNanos) {
+            this.businessDate = businessDate;
+            this.partitions = partitions;
+            this.skippedPartitions = skippedPartitions;
+            this.accountsClosed = accountsClosed;
+            this.interestPostings = interestPostings;
+            this.interestCents = interestCents;
+            this.feePostings = feePostings;
+            this.feeCents = feeCents;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public LocalDate getBusinessDate() {
+            return businessDate;
+        }
+
+        public int getPartitions() {
+            return partitions;
+        }
+
+        // Partitions already finished by an earlier, interrupted run
+        public int getSkippedPartitions() {
+            return skippedPartitions;
+        }
+
+        public long getAccountsClosed() {
+            return accountsClosed;
+        }
+
+        public long getInterestPostings() {
+            return interestPostings;
+        }
+
+        public long getInterestCents() {
+            return interestCents;
+        }
+
+        public long getFeePostings() {
+            return feePostings;
+        }
+
+        public long getFeeCents() {
+            return feeCents;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getAccountsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : accountsClosed * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+
+    // Append-only list of finished partition numbers behind a header identifying the run
+    private static class Checkpoint implements AutoCloseable {
+        private final FileChannel channel;
+        private final BitSet completed;
+        private final ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES);
+
+        Checkpoint(Path file, int accountCount, int partitionSize) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.completed = new BitSet();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0L);
+            header.flip();
+            boolean matches = header.remaining() == HEADER_SIZE
+                    && header.getInt() == CHECKPOINT_MAGIC
+                    && header.getInt() == accountCount
+                    && header.getInt() == partitionSize;
+
+            if (matches) {
+                ByteBuffer body = ByteBuffer.allocate((int) (channel.size() - HEADER_SIZE));
+                channel.read(body, HEADER_SIZE);
+                body.flip();
+                while (body.remaining() >= Integer.BYTES) {
+                    completed.set(body.getInt());
+                }
+                channel.position(HEADER_SIZE + (long) completed.cardinality() * Integer.BYTES);
+            } else {
+                // A different account set means different partitions; the per-account
+                // closed-day marker still keeps accounts from being closed twice
+                channel.truncate(0L);
+                header.clear();
+                header.putInt(CHECKPOINT_MAGIC).putInt(accountCount).putInt(partitionSize).flip();
+                channel.write(header, 0L);
+                channel.position(HEADER_SIZE);
+                channel.force(true);
+            }
+        }
+
+        boolean isCompleted(int partition) {
+            return completed.get(partition);
+        }
+
+        int completedCount() {
+            return completed.cardinality();
+        }
+
+        synchronized void markCompleted(int partition) throws IOException {
+            entry.clear();
+            entry.putInt(partition).flip();
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+            channel.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public EndOfDayClose(Path checkpointDirectory, int threads) {
+        this(checkpointDirectory, threads, DEFAULT_PARTITION_SIZE);
+    }
+
+    public EndOfDayClose(Path checkpointDirectory, int threads, int partitionSize) {
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("Partition size must be positive");
+        }
+        this.checkpointDirectory = checkpointDirectory;
+        this.threads = threads;
+        this.partitionSize = partitionSize;
+    }
+
+    // Closes businessDate against the balances accounts hold now
+    public Result close(Collection<Account> accounts, LocalDate businessDate) {
+        return close(accounts, businessDate, true);
+    }
+
+    // Without assess, accounts are only marked closed for the date; nothing is posted
+    private Result close(Collection<Account> accounts, LocalDate businessDate, boolean assess) {
+        long start = System.nanoTime();
+        Account[] sorted = accounts.toArray(new Account[0]);
+        Arrays.sort(sorted, Comparator.comparing(Account::getAccountId));
+        int partitions = (sorted.length + partitionSize - 1) / partitionSize;
+
+        LongAdder accountsClosed = new LongAdder();
+        LongAdder interestPostings = new LongAdder();
+        LongAdder interestCents = new LongAdder();
+        LongAdder feePostings = new LongAdder();
+        LongAdder feeCents = new LongAdder();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Files.createDirectories(checkpointDirectory);
+            try (Checkpoint checkpoint = new Checkpoint(checkpointFile(businessDate), sorted.length, partitionSize)) {
+                int skipped = checkpoint.completedCount();
+
+                pool.invoke(new PartitionTask(0, partitions, (partition) -> {
+                    if (checkpoint.isCompleted(partition)) {
+                        return;
+                    }
+
+                    int from = partition * partitionSize;
+                    int to = Math.min(from + partitionSize, sorted.length);
+                    PostingLog postingLog = null;
+                    long lastLsn = 0L;
+
+                    for (int i = from; i < to; i++) {
+                        Account account = sorted[i];
+                        long[] amounts = account.closeDay(businessDate, assess);
+                        if (amounts == null) {
+                            continue;
+                        }
+
+                        accountsClosed.increment();
+                        if (amounts[0] > 0) {
+                            interestPostings.increment();
+                            interestCents.add(amounts[0]);
+                        }
+                        if (amounts[1] > 0) {
+                            feePostings.increment();
+                            feeCents.add(amounts[1]);
+                        }
+                        if (account.postingLog != null) {
+                            postingLog = account.postingLog;
+                            lastLsn = Math.max(lastLsn, account.getLastPostingLsn());
+                        }
+                    }
+
+                    // The partition's postings are durable before it is checkpointed
+                    if (postingLog != null) {
+                        postingLog.sync(lastLsn);
+                    }
+                    checkpoint.markCompleted(partition);
+                }));
+                markClosed(businessDate);
+
+                return new Result(businessDate, partitions, skipped, accountsClosed.sum(),
+                        interestPostings.sum(), interestCents.sum(), feePostings.sum(), feeCents.sum(),
+                        System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to close business date " + businessDate, e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Resumes an interrupted close and closes every business date missed since the last completed one,
+    // up to and including through. With no close on record, only through is closed. The balances held
+    // now say nothing about a missed date, so one that was never started is marked closed without
+    // interest or fees; through and an interrupted date are closed as usual.
+    public List<Result> catchUp(Collection<Account> accounts, LocalDate through) {
+        LocalDate next;
+        LocalDate lastClosed = getLastClosedDate();
+        if (lastClosed != null) {
+            next = lastClosed.plusDays(1);
+        } else {
+            TreeMap<LocalDate, Path> pending = listCheckpoints();
+            next = pending.isEmpty() ? through : pending.firstKey();
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (LocalDate day = next; !day.isAfter(through); day = day.plusDays(1)) {
+            boolean assess = day.equals(through) || Files.exists(checkpointFile(day));
+            results.add(close(accounts, day, assess));
+        }
+        return results;
+    }
+
+    // Last business date whose close finished on every partition, or null if none has
+    public LocalDate getLastClosedDate() {
+        Path file = checkpointDirectory.resolve(LAST_CLOSED_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return LocalDate.ofEpochDay(ByteBuffer.wrap(Files.readAllBytes(file)).getLong());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read last closed business date", e);
+        }
+    }
+
+    // Written beside the file and renamed over it, so a crash leaves the old date or the new one
+    private void markClosed(LocalDate businessDate) throws IOException {
+        LocalDate lastClosed = getLastClosedDate();
+        if (lastClosed != null && !businessDate.isAfter(lastClosed)) {
+            return;
+        }
+        Path file = checkpointDirectory.resolve(LAST_CLOSED_FILE);
+        Path temp = checkpointDirectory.resolve(LAST_CLOSED_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(Long.BYTES);
+            value.putLong(businessDate.toEpochDay()).flip();
+            while (value.hasRemaining()) {
+                channel.write(value);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Removes checkpoint files for business dates before the given one
+    public void pruneCheckpoints(LocalDate before) {
+        try {
+            for (Path file : listCheckpoints().headMap(before).values()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to prune end-of-day checkpoints", e);
+        }
+    }
+
+    private TreeMap<LocalDate, Path> listCheckpoints() {
+        TreeMap<LocalDate, Path> checkpoints = new TreeMap<>();
+        if (!Files.isDirectory(checkpointDirectory)) {
+            return checkpoints;
+        }
+        try (Stream<Path> files = Files.list(checkpointDirectory)) {
+            files.forEach((file) -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(CHECKPOINT_PREFIX) && name.endsWith(CHECKPOINT_SUFFIX)) {
+                    try {
+                        checkpoints.put(LocalDate.parse(name.substring(CHECKPOINT_PREFIX.length(),
+                                name.length() - CHECKPOINT_SUFFIX.length())), file);
+                    } catch (DateTimeParseException e) {
+                        // Not one of ours
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to list end-of-day checkpoints", e);
+        }
+        return checkpoints;
+    }
+
+    private Path checkpointFile(LocalDate businessDate) {
+        return checkpointDirectory.resolve(CHECKPOINT_PREFIX + businessDate + CHECKPOINT_SUFFIX);
+    }
+
+    // Deterministic ids make an account's end-of-day postings recognisable in its history
+    static String transactionId(LocalDate businessDate, char kind, String accountId) {
+        return TRANSACTION_PREFIX + businessDate.format(DAY_FORMAT) + "-" + kind + "-" + accountId;
+    }
+
+    private interface PartitionWork {
+        void run(int partition) throws IOException;
+    }
+
+    // Splits the partition range in halves until a single partition remains
+    private static class PartitionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final PartitionWork work;
+
+        PartitionTask(int from, int to, PartitionWork work) {
+            this.from = from;
+            this.to = to;
+            this.work = work;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    try {
+                        work.run(from);
+                    } catch (IOException e) {
+                        throw new RuntimeException("End-of-day partition " + from + " failed", e);
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PartitionTask(from, middle, work), new PartitionTask(middle, to, work));
+        }
+    }
+}
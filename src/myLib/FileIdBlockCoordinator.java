@@ -0,0 +1,70 @@
+package myLib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps the high-water mark in a small file shared by every node. An exclusive file lock
+// serializes reservations between processes; file locks are held per process, so a monitor
+// shared by every coordinator on the same path serializes them within one.
+public class FileIdBlockCoordinator implements IdBlockCoordinator {
+    private static final Map<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final Object monitor;
+
+    public FileIdBlockCoordinator(Path file) {
+        this.file = file;
+        this.monitor = MONITORS.computeIfAbsent(file.toAbsolutePath().normalize(), (path) -> new Object());
+    }
+
+    @Override
+    public long reserve(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+
+        synchronized (monitor) {
+            return reserveLocked(blockSize);
+        }
+    }
+
+    private long reserveLocked(int blockSize) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+                    long highWaterMark = 1L;
+                    if (channel.read(buffer, 0L) == Long.BYTES) {
+                        buffer.flip();
+                        highWaterMark = buffer.getLong();
+                    }
+
+                    // The new mark is durable before any id from the block is handed out
+                    buffer.clear();
+                    buffer.putLong(Math.addExact(highWaterMark, blockSize)).flip();
+                    channel.write(buffer, 0L);
+                    channel.force(false);
+                    return highWaterMark;
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to reserve an id block from " + file, e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package myLib;
+
+import java.util.List;
+
+// Result of a HistoryQuery; pass getNextCursor() back to fetch the following page
+public class HistoryPage {
+    private final List<Transaction> transactions;
+    private final int nextCursor;
+
+    public HistoryPage(List<Transaction> transactions, int nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    public int getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != HistoryQuery.NO_CURSOR;
+    }
+}
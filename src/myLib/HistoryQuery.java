@@ -0,0 +1,101 @@
+package myLib;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Describes one page of an account history lookup
+public class HistoryQuery {
+    public static final int NO_CURSOR = -1;
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final long fromMillis;
+    private final long toMillis;
+    private final Set<TransactionType> types;
+    private final int limit;
+    private final int cursor;
+    private final boolean newestFirst;
+
+    public HistoryQuery(Builder builder) {
+        this.fromMillis = builder.fromMillis;
+        this.toMillis = builder.toMillis;
+        this.types = builder.types;
+        this.limit = builder.limit;
+        this.cursor = builder.cursor;
+        this.newestFirst = builder.newestFirst;
+    }
+
+    // Builder Method allows for Optional Fields
+    public static class Builder {
+        private long fromMillis = Long.MIN_VALUE;
+        private long toMillis = Long.MAX_VALUE;
+        private Set<TransactionType> types = EnumSet.allOf(TransactionType.class);
+        private int limit = DEFAULT_LIMIT;
+        private int cursor = NO_CURSOR;
+        private boolean newestFirst = true;
+
+        // Inclusive lower bound
+        public Builder from(LocalDateTime from) {
+            this.fromMillis = TransactionJournal.toEpochMillis(from);
+            return this;
+        }
+
+        // Exclusive upper bound
+        public Builder to(LocalDateTime to) {
+            this.toMillis = TransactionJournal.toEpochMillis(to);
+            return this;
+        }
+
+        public Builder types(TransactionType first, TransactionType... rest) {
+            this.types = EnumSet.of(first, rest);
+            return this;
+        }
+
+        public Builder limit(int limit) {
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Limit must be positive");
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        // Continue after a previous page, using HistoryPage.getNextCursor()
+        public Builder cursor(int cursor) {
+            this.cursor = cursor;
+            return this;
+        }
+
+        public Builder oldestFirst() {
+            this.newestFirst = false;
+            return this;
+        }
+
+        public HistoryQuery build() {
+            return new HistoryQuery(this);
+        }
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    public boolean includes(TransactionType type) {
+        return types.contains(type);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getCursor() {
+        return cursor;
+    }
+
+    public boolean isNewestFirst() {
+        return newestFirst;
+    }
+}
@@ -1,55 +1,129 @@
 package myLib;
 
-import java.security.SecureRandom;
-import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
-public class IDGenerator {
-    private final AtomicLong transactionCounter = new AtomicLong(1);
-    private final AtomicLong accountCounter = new AtomicLong(1);
-    private final AtomicLong investmentCounter = new AtomicLong(1);
-    private final AtomicLong userCounter = new AtomicLong(1);
-    private final SecureRandom secureRandom = new SecureRandom();
-
-    // Shared format for consistency
-    private static final String ID_FORMAT = "%s-%d-%04d-%04d";
-    private static final int MAX_COUNTER_VALUE = 10000;
-    private static final int MAX_RANDOM_VALUE = 10000;
-
-    public String generateTransactionId() {
-        return String.format(ID_FORMAT,
-                "TXN",
-                Instant.now().toEpochMilli(),
-                transactionCounter.getAndIncrement() % MAX_COUNTER_VALUE,
-                secureRandom.nextInt(MAX_RANDOM_VALUE)
-        );
-    }
-
-    public String generateAccountId() {
-        return String.format(ID_FORMAT,
-                "ACC",
-                System.nanoTime(),
-                accountCounter.getAndIncrement() % MAX_COUNTER_VALUE,
-                secureRandom.nextInt(MAX_RANDOM_VALUE)
-        );
-    }
-
-    public String generateInvestmentId() {
-        return String.format(ID_FORMAT,
-                "INV",
-                Instant.now().toEpochMilli(),
-                investmentCounter.getAndIncrement() % MAX_COUNTER_VALUE,
-                secureRandom.nextInt(MAX_RANDOM_VALUE)
-        );
-    }
-
-    public String generateUserId() {
-        return String.format(ID_FORMAT,
-                "USR",
-                System.currentTimeMillis(),
-                userCounter.getAndIncrement() % MAX_COUNTER_VALUE,
-                secureRandom.nextInt(MAX_RANDOM_VALUE)
-        );
+// Snowflake-style ids: 41 bits of milliseconds since EPOCH_MILLIS, 10 bits of node id and a
+// 12 bit sequence, packed into a positive long. Threads reserve blocks of sequence numbers
+// with a single CAS and then hand out ids from their block without touching shared state.
+public class IDGenerator implements IdSource {
+    public static final String NODE_ID_PROPERTY = "mcash.nodeId";
+
+    // 2024-01-01T00:00:00Z
+    static final long EPOCH_MILLIS = 1704067200000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // Enough for Long.MAX_VALUE, so every id renders at the same width
+    private static final int RENDERED_DIGITS = 19;
+
+    private static final int DEFAULT_BLOCK_SIZE = 64;
+    // How far ahead of the wall clock a burst may borrow sequence space before callers wait
+    private static final long DEFAULT_MAX_DRIFT_MILLIS = 100L;
+
+    private final int nodeId;
+    private final int blockSize;
+    private final long maxDriftMillis;
+
+    // Next unreserved tick: (milliseconds since EPOCH_MILLIS << SEQUENCE_BITS) | sequence
+    private final AtomicLong nextTick;
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    private static class Block {
+        private long next;
+        private long end;
+    }
+
+    public IDGenerator() {
+        this(Integer.getInteger(NODE_ID_PROPERTY, 0));
+    }
+
+    public IDGenerator(int nodeId) {
+        this(nodeId, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_DRIFT_MILLIS);
+    }
+
+    public IDGenerator(int nodeId, int blockSize, long maxDriftMillis) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        if (blockSize <= 0 || blockSize > SEQUENCE_MASK + 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.nodeId = nodeId;
+        this.blockSize = blockSize;
+        this.maxDriftMillis = maxDriftMillis;
+        // A previous run of this node never issued ids more than maxDriftMillis ahead of its clock,
+        // so starting that far ahead of ours keeps ids unique across restarts without waiting
+        this.nextTick = new AtomicLong(toTick(System.currentTimeMillis() + maxDriftMillis));
+    }
+
+    // Returns the next id; unique per node and increasing within each thread
+    @Override
+    public long nextId() {
+        Block block = blocks.get();
+        if (block.next == block.end) {
+            reserve(block);
+        }
+        long tick = block.next++;
+        return (tick >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)
+                | (long) nodeId << SEQUENCE_BITS
+                | (tick & SEQUENCE_MASK);
     }
-}
 
+    private void reserve(Block block) {
+        while (true) {
+            long now = System.currentTimeMillis();
+            long current = nextTick.get();
+            // The clock may have stepped back; ticks never do
+            long start = Math.max(current, toTick(now));
+            long aheadMillis = (start >>> SEQUENCE_BITS) + EPOCH_MILLIS - now;
+            if (aheadMillis > maxDriftMillis) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(aheadMillis - maxDriftMillis));
+                continue;
+            }
+            long end = start + blockSize;
+            if (nextTick.compareAndSet(current, end)) {
+                block.next = start;
+                block.end = end;
+                return;
+            }
+        }
+    }
+
+    private static long toTick(long epochMillis) {
+        return (epochMillis - EPOCH_MILLIS) << SEQUENCE_BITS;
+    }
+
+    // Formats an id for display or storage as the prefix, a dash and 19 zero-padded digits,
+    // e.g. TXN-0000012345678901234
+    public static String render(String prefix, long id) {
+        char[] chars = new char[prefix.length() + 1 + RENDERED_DIGITS];
+        prefix.getChars(0, prefix.length(), chars, 0);
+        chars[prefix.length()] = '-';
+        // Fixed width keeps string order the same as numeric order
+        for (int i = chars.length - 1; i > prefix.length(); i--) {
+            chars[i] = (char) ('0' + id % 10);
+            id /= 10;
+        }
+        return new String(chars);
+    }
+
+    public static long timestampMillis(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public static int nodeId(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+
+    public static int sequence(long id) {
+        return (int) (id & SEQUENCE_MASK);
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,7 @@
+package myLib;
+
+// Hands out disjoint ranges of ids to the nodes of a cluster
+public interface IdBlockCoordinator {
+    // Reserves blockSize ids and returns the first; the block is [first, first + blockSize)
+    long reserve(int blockSize);
+}
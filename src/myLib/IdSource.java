@@ -0,0 +1,22 @@
+package myLib;
+
+// Anything that hands out unique positive ids, e.g. a time-based IDGenerator or a LeasedIDGenerator
+public interface IdSource {
+    long nextId();
+
+    default String generateTransactionId() {
+        return IDGenerator.render("TXN", nextId());
+    }
+
+    default String generateAccountId() {
+        return IDGenerator.render("ACC", nextId());
+    }
+
+    default String generateInvestmentId() {
+        return IDGenerator.render("INV", nextId());
+    }
+
+    default String generateUserId() {
+        return IDGenerator.render("USR", nextId());
+    }
+}
@@ -1,26 +1,36 @@
 package myLib;
 
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.List;
 
 public abstract class Investment {
     protected String investmentId;
     protected String name;
-    protected double purchasePrice;
-    protected double currentPrice;
+    protected long purchasePriceCents;
+    // Written by the price feed dispatcher, read by everyone else
+    protected volatile long currentPriceCents;
     protected int quantity;
     protected LocalDateTime purchaseDate;
     protected String userId;
+    protected volatile ValuationListener valuationListener;
+    // purchasePriceCents is kept as the average unit cost of the open lots
+    protected final TaxLotLedger lots = new TaxLotLedger();
+    protected LotReliefMethod reliefMethod = LotReliefMethod.FIFO;
 
     public Investment(String investmentId, String name, double purchasePrice,
                       double currentPrice, int quantity, LocalDateTime purchaseDate, String userId) {
 
         this.investmentId = investmentId;
         this.name = name;
-        this.purchasePrice = purchasePrice;
-        this.currentPrice = currentPrice;
+        this.purchasePriceCents = Money.toCents(purchasePrice);
+        this.currentPriceCents = Money.toCents(currentPrice);
         this.quantity = quantity;
         this.purchaseDate = purchaseDate;
         this.userId = userId;
+        if (quantity > 0) {
+            lots.buy(quantity, purchasePriceCents, purchaseDate);
+        }
     }
 
     public String getInvestmentId() {
@@ -32,11 +42,19 @@ public abstract class Investment {
     }
 
     public double getPurchasePrice() {
-        return purchasePrice;
+        return Money.toDouble(purchasePriceCents);
+    }
+
+    public long getPurchasePriceCents() {
+        return purchasePriceCents;
     }
 
     public double getCurrentPrice() {
-        return currentPrice;
+        return Money.toDouble(currentPriceCents);
+    }
+
+    public long getCurrentPriceCents() {
+        return currentPriceCents;
     }
 
     public int getQuantity() {
@@ -52,35 +70,133 @@ public abstract class Investment {
     }
 
     public void updateCurrentPrice(double currentPrice) {
-        this.currentPrice = currentPrice;
+        updateCurrentPriceCents(Money.toCents(currentPrice));
+    }
+
+    // Price and quantity changes are synchronized so each listener delta matches the change it reports
+    public synchronized void updateCurrentPriceCents(long currentPriceCents) {
+        long marketValueDelta = (currentPriceCents - this.currentPriceCents) * quantity;
+        this.currentPriceCents = currentPriceCents;
+        notifyValuation(marketValueDelta, 0L);
     }
 
 
     public double getCurrentValue() {
-        return currentPrice * quantity;
+        return Money.toDouble(getCurrentValueCents());
+    }
+
+    public long getCurrentValueCents() {
+        return currentPriceCents * quantity;
     }
 
     public double getGainLoss() {
-        return (currentPrice - purchasePrice) * quantity;
+        return Money.toDouble(getGainLossCents());
     }
 
-    public void sellInvestment(int quantity) {
-        this.quantity -= quantity;
+    // Unrealized gain/loss against the exact cost of the open lots
+    public long getGainLossCents() {
+        return getCurrentValueCents() - getCostBasisCents();
+    }
+
+    // Sells at the current price using the holding's relief method; returns the realized gain in cents
+    public long sellInvestment(int quantity) {
+        return sellInvestment(quantity, reliefMethod);
+    }
+
+    public synchronized long sellInvestment(int quantity, LotReliefMethod method) {
+        return applySale(lots.sell(quantity, currentPriceCents, method));
+    }
+
+    public synchronized long sellLot(long lotId, int quantity) {
+        return applySale(lots.sellLot(lotId, quantity, currentPriceCents));
+    }
+
+    private long applySale(TaxLotLedger.Sale sale) {
+        this.quantity -= sale.getQuantity();
+        if (this.quantity > 0) {
+            this.purchasePriceCents = Money.divide(lots.getOpenCostCents(), this.quantity, RoundingMode.HALF_EVEN);
+        }
+        notifyValuation(-currentPriceCents * sale.getQuantity(), -sale.getCostBasisCents());
+        return sale.getRealizedGainCents();
     }
 
     // PurchaseInvestment Automatically calculates new Average Purchase Price
     public void purchaseInvestment(int quantity, double newPurchasePrice) {
-        double updatedPurchasePrice;
-
-        updatedPurchasePrice = ((this.purchasePrice * this.quantity) + (newPurchasePrice * quantity)) /
-                (quantity + this.quantity);
+        purchaseInvestmentCents(quantity, Money.toCents(newPurchasePrice));
+    }
 
-        this.purchasePrice = updatedPurchasePrice;
+    // Each purchase opens its own tax lot
+    public synchronized void purchaseInvestmentCents(int quantity, long newPurchasePriceCents) {
+        lots.buy(quantity, newPurchasePriceCents, LocalDateTime.now());
         this.quantity += quantity;
+        this.purchasePriceCents = Money.divide(lots.getOpenCostCents(), this.quantity, RoundingMode.HALF_EVEN);
+        notifyValuation(currentPriceCents * quantity, newPurchasePriceCents * quantity);
+    }
+
+    public synchronized long getCostBasisCents() {
+        return lots.getOpenCostCents();
+    }
+
+    public synchronized long getRealizedGainCents() {
+        return lots.getRealizedGainCents();
+    }
+
+    public double getRealizedGain() {
+        return Money.toDouble(getRealizedGainCents());
+    }
+
+    public synchronized List<TaxLot> getOpenLots() {
+        return lots.getOpenLots();
+    }
+
+    public synchronized LotReliefMethod getReliefMethod() {
+        return reliefMethod;
+    }
+
+    public synchronized void setReliefMethod(LotReliefMethod reliefMethod) {
+        if (reliefMethod == LotReliefMethod.SPECIFIC_LOT) {
+            throw new IllegalArgumentException("Specific-lot relief is chosen per sale");
+        }
+        this.reliefMethod = reliefMethod;
+    }
+
+    // Snapshot restore: replaces the single lot the constructor opened with the saved lots
+    synchronized void restoreLots(LotReliefMethod reliefMethod, long nextLotId, long realizedGainCents, List<TaxLot> openLots) {
+        this.reliefMethod = reliefMethod;
+        lots.restore(nextLotId, realizedGainCents, openLots);
+        this.quantity = (int) lots.getOpenQuantity();
+        if (this.quantity > 0) {
+            this.purchasePriceCents = Money.divide(lots.getOpenCostCents(), this.quantity, RoundingMode.HALF_EVEN);
+        }
+    }
+
+    synchronized long getNextLotId() {
+        return lots.getNextLotId();
+    }
+
+    // Installs the listener and returns {market value, cost basis} it starts from
+    public synchronized long[] attachValuationListener(ValuationListener listener) {
+        this.valuationListener = listener;
+        return new long[]{getCurrentValueCents(), getCostBasisCents()};
+    }
+
+    public synchronized long[] detachValuationListener() {
+        this.valuationListener = null;
+        return new long[]{getCurrentValueCents(), getCostBasisCents()};
+    }
+
+    private void notifyValuation(long marketValueDeltaCents, long costBasisDeltaCents) {
+        ValuationListener listener = this.valuationListener;
+        if (listener != null && (marketValueDeltaCents != 0 || costBasisDeltaCents != 0)) {
+            listener.onHoldingChanged(this, marketValueDeltaCents, costBasisDeltaCents);
+        }
+    }
 
+    public double calculateDividends() {
+        return Money.toDouble(calculateDividendsCents());
     }
 
-    public abstract double calculateDividends();
+    public abstract long calculateDividendsCents();
 
     public abstract void getInvestmentSummary();
 
@@ -0,0 +1,104 @@
+package myLib;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Issues ids from blocks leased through an IdBlockCoordinator. Ids within a block need no
+// coordination; the next block is leased in the background once the current one is partly used.
+public class LeasedIDGenerator implements IdSource, AutoCloseable {
+    public static final int DEFAULT_BLOCK_SIZE = 10000;
+
+    private final IdBlockCoordinator coordinator;
+    private final int blockSize;
+    private final ExecutorService renewer;
+
+    private volatile Lease current;
+    private CompletableFuture<Lease> pending;
+
+    private static class Lease {
+        private final AtomicLong next;
+        private final long end;
+        private final long renewAt;
+
+        Lease(long start, int size) {
+            this.next = new AtomicLong(start);
+            this.end = start + size;
+            // Renew when a quarter of the block is left
+            this.renewAt = end - Math.max(1, size / 4);
+        }
+    }
+
+    public LeasedIDGenerator(IdBlockCoordinator coordinator) {
+        this(coordinator, DEFAULT_BLOCK_SIZE);
+    }
+
+    public LeasedIDGenerator(IdBlockCoordinator coordinator, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.coordinator = coordinator;
+        this.blockSize = blockSize;
+        this.renewer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "id-lease-renewal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.current = lease();
+    }
+
+    @Override
+    public long nextId() {
+        while (true) {
+            Lease lease = current;
+            long id = lease.next.getAndIncrement();
+            if (id < lease.end) {
+                if (id == lease.renewAt) {
+                    renewInBackground();
+                }
+                return id;
+            }
+            advance(lease);
+        }
+    }
+
+    private synchronized void renewInBackground() {
+        if (pending == null) {
+            pending = CompletableFuture.supplyAsync(this::lease, renewer);
+        }
+    }
+
+    // Swaps in the next block; only the first thread to find the block exhausted does the work
+    private synchronized void advance(Lease exhausted) {
+        if (current != exhausted) {
+            return;
+        }
+        Lease next = null;
+        if (pending != null) {
+            try {
+                next = pending.join();
+            } catch (RuntimeException e) {
+                // Fall through and lease synchronously
+            }
+            pending = null;
+        }
+        current = next != null ? next : lease();
+    }
+
+    private Lease lease() {
+        return new Lease(coordinator.reserve(blockSize), blockSize);
+    }
+
+    // Waits out a renewal already in flight, so the coordinator is not touched once close returns
+    @Override
+    public void close() {
+        renewer.shutdown();
+        try {
+            renewer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
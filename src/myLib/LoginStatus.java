@@ -0,0 +1,11 @@
+package myLib;
+
+// Outcome of a throttled login; ADMITTED is only an intermediate state inside PasswordManager
+public enum LoginStatus {
+    AUTHENTICATED,
+    INVALID_CREDENTIALS,
+    ADMITTED,
+    RATE_LIMITED,
+    LOCKED_OUT,
+    BUSY
+}
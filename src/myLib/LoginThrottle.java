@@ -0,0 +1,166 @@
+package myLib;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decides whether a login attempt may spend a KDF computation. Usernames and sources each map to
+// a stripe of lock-free GCRA token buckets; consecutive failures lock a username stripe out for
+// exponentially growing periods; a semaphore caps the KDF work in flight across all users.
+// Stripes are shared by colliding keys, so the stripe count should comfortably exceed active users.
+public class LoginThrottle {
+    private static final int DEFAULT_STRIPES = 1 << 14;
+
+    // Per username: bursts of 5, then one attempt every 12 seconds
+    private static final int USER_BURST = 5;
+    private static final long USER_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(12);
+    // Per source: bursts of 50, then ten attempts a second
+    private static final int SOURCE_BURST = 50;
+    private static final long SOURCE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int LOCKOUT_THRESHOLD = 5;
+    private static final long BASE_LOCKOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_LOCKOUT_NANOS = TimeUnit.MINUTES.toNanos(15);
+
+    private final int mask;
+    // Theoretical arrival times of the GCRA buckets, in System.nanoTime() units
+    private final AtomicLongArray userArrivals;
+    private final AtomicLongArray sourceArrivals;
+    private final AtomicIntegerArray failures;
+    private final AtomicLongArray lockedUntil;
+    private final Semaphore kdfPermits;
+    private final long origin;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder lockedOut = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public LoginThrottle(int maxConcurrentKdf) {
+        this(maxConcurrentKdf, DEFAULT_STRIPES);
+    }
+
+    public LoginThrottle(int maxConcurrentKdf, int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two: " + stripes);
+        }
+        this.mask = stripes - 1;
+        this.userArrivals = new AtomicLongArray(stripes);
+        this.sourceArrivals = new AtomicLongArray(stripes);
+        this.failures = new AtomicIntegerArray(stripes);
+        this.lockedUntil = new AtomicLongArray(stripes);
+        this.kdfPermits = new Semaphore(maxConcurrentKdf);
+        // Times are stored relative to construction so zero means "never"
+        this.origin = System.nanoTime();
+    }
+
+    // Returns ADMITTED if the attempt may hash; the caller must then call complete()
+    public LoginStatus admit(String username, String source) {
+        long now = System.nanoTime() - origin;
+        int userStripe = stripe(username);
+
+        if (now < lockedUntil.get(userStripe)) {
+            lockedOut.increment();
+            return LoginStatus.LOCKED_OUT;
+        }
+        // The username's allowance is spent last, so an attempt refused for its source or for lack
+        // of KDF capacity cannot use up someone else's allowance and lock them out cheaply
+        if (!tryTake(sourceArrivals, stripe(source), now, SOURCE_INTERVAL_NANOS, SOURCE_BURST)) {
+            rateLimited.increment();
+            return LoginStatus.RATE_LIMITED;
+        }
+        if (!kdfPermits.tryAcquire()) {
+            busy.increment();
+            return LoginStatus.BUSY;
+        }
+        if (!tryTake(userArrivals, userStripe, now, USER_INTERVAL_NANOS, USER_BURST)) {
+            kdfPermits.release();
+            rateLimited.increment();
+            return LoginStatus.RATE_LIMITED;
+        }
+        admitted.increment();
+        return LoginStatus.ADMITTED;
+    }
+
+    // Releases the KDF permit taken by admit() and records the outcome
+    public void complete(String username, boolean success) {
+        kdfPermits.release();
+        recordResult(username, success);
+    }
+
+    // Releases the KDF permit of an admitted attempt that never ran
+    public void release() {
+        kdfPermits.release();
+    }
+
+    // Records an outcome decided without hashing, such as an unknown username
+    public void recordResult(String username, boolean success) {
+        int stripe = stripe(username);
+        if (success) {
+            failures.set(stripe, 0);
+            lockedUntil.set(stripe, 0L);
+            return;
+        }
+
+        failed.increment();
+        int count = failures.incrementAndGet(stripe);
+        if (count >= LOCKOUT_THRESHOLD) {
+            int doublings = Math.min(count - LOCKOUT_THRESHOLD, 30);
+            long lockout = Math.min(MAX_LOCKOUT_NANOS, BASE_LOCKOUT_NANOS << doublings);
+            long until = System.nanoTime() - origin + lockout;
+            lockedUntil.accumulateAndGet(stripe, until, Math::max);
+        }
+    }
+
+    // GCRA: admit if the bucket's theoretical arrival time is no more than the burst allowance ahead
+    private static boolean tryTake(AtomicLongArray arrivals, int stripe, long now, long interval, int burst) {
+        long tolerance = interval * (burst - 1);
+        while (true) {
+            long arrival = arrivals.get(stripe);
+            long next = Math.max(arrival, now) + interval;
+            if (next - now > tolerance + interval) {
+                return false;
+            }
+            if (arrivals.compareAndSet(stripe, arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    private int stripe(String key) {
+        int hash = key == null ? 0 : key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash & mask;
+    }
+
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    public long getLockedOutCount() {
+        return lockedOut.sum();
+    }
+
+    public long getBusyCount() {
+        return busy.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public int getAvailableKdfPermits() {
+        return kdfPermits.availablePermits();
+    }
+}
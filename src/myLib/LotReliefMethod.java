@@ -0,0 +1,9 @@
+package myLib;
+
+// Which open lots a sale draws down first
+public enum LotReliefMethod {
+    FIFO,
+    LIFO,
+    HIGHEST_COST,
+    SPECIFIC_LOT
+}
@@ -0,0 +1,109 @@
+package myLib;
+
+import java.math.RoundingMode;
+
+// Fixed-point money helpers: every amount is a long count of cents
+public final class Money {
+    public static final long CENTS_PER_UNIT = 100L;
+
+    private Money() {
+    }
+
+    public static long toCents(double amount) {
+        return round(amount * CENTS_PER_UNIT, RoundingMode.HALF_EVEN);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    // Appends e.g. "-1234.05" without creating intermediate strings
+    public static StringBuilder appendTo(StringBuilder target, long cents) {
+        if (cents < 0) {
+            target.append('-');
+        }
+        long absolute = Math.abs(cents);
+        long fraction = absolute % CENTS_PER_UNIT;
+        target.append(absolute / CENTS_PER_UNIT).append('.');
+        if (fraction < 10) {
+            target.append('0');
+        }
+        return target.append(fraction);
+    }
+
+    // Scales an amount by a rate (interest, yield, fee percentage) and rounds back to cents
+    public static long multiply(long cents, double factor, RoundingMode mode) {
+        return round(cents * factor, mode);
+    }
+
+    // Exact integer division with an explicit rounding mode, e.g. for average prices
+    public static long divide(long value, long divisor, RoundingMode mode) {
+        if (divisor == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+
+        long quotient = value / divisor;
+        long remainder = value % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+
+        int sign = (value < 0) == (divisor < 0) ? 1 : -1;
+        long twiceRemainder = Math.abs(remainder) * 2;
+        long absDivisor = Math.abs(divisor);
+        boolean awayFromZero;
+
+        switch (mode) {
+            case UP:
+                awayFromZero = true;
+                break;
+            case DOWN:
+                awayFromZero = false;
+                break;
+            case CEILING:
+                awayFromZero = sign > 0;
+                break;
+            case FLOOR:
+                awayFromZero = sign < 0;
+                break;
+            case HALF_UP:
+                awayFromZero = twiceRemainder >= absDivisor;
+                break;
+            case HALF_DOWN:
+                awayFromZero = twiceRemainder > absDivisor;
+                break;
+            case HALF_EVEN:
+                awayFromZero = twiceRemainder > absDivisor
+                        || (twiceRemainder == absDivisor && (quotient & 1) != 0);
+                break;
+            default:
+                throw new ArithmeticException("Rounding necessary for " + value + " / " + divisor);
+        }
+
+        return awayFromZero ? quotient + sign : quotient;
+    }
+
+    public static long round(double value, RoundingMode mode) {
+        switch (mode) {
+            case UP:
+                return (long) (value >= 0 ? Math.ceil(value) : Math.floor(value));
+            case DOWN:
+                return (long) value;
+            case CEILING:
+                return (long) Math.ceil(value);
+            case FLOOR:
+                return (long) Math.floor(value);
+            case HALF_UP:
+                return (long) (value >= 0 ? Math.floor(value + 0.5) : Math.ceil(value - 0.5));
+            case HALF_DOWN:
+                return (long) (value >= 0 ? Math.ceil(value - 0.5) : Math.floor(value + 0.5));
+            case HALF_EVEN:
+                return (long) Math.rint(value);
+            default:
+                if (value != Math.rint(value)) {
+                    throw new ArithmeticException("Rounding necessary for " + value);
+                }
+                return (long) value;
+        }
+    }
+}
@@ -1,46 +1,126 @@
 package myLib;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 
 public class PasswordManager {
     private static final int SALT_LENGTH = 32;
-    private static final int ITERATIONS = 1000000;
     private static final int KEY_LENGTH = 256;
+    private static final int QUEUED_HASHES_PER_THREAD = 16;
+
+    // Iterations are calibrated at startup so one hash takes about this long on this machine,
+    // but never drop below the fixed count every credential used before calibration existed
+    private static final long DEFAULT_HASH_BUDGET_MILLIS = 250L;
+    private static final int MIN_ITERATIONS = 1000000;
+    private static final int MAX_ITERATIONS = 10000000;
+    private static final int CALIBRATION_ITERATIONS = 20000;
+    private static final int CALIBRATION_ROUNDS = 3;
+
+    // Credentials are only ever rehashed upwards, and only once they fall short of the current count
+    // by more than this fraction, so small differences between calibrations don't rewrite every one
+    private static final double REHASH_TOLERANCE = 0.25;
+
+    // Source charged for logins made through the overloads that don't name one
+    public static final String LOCAL_SOURCE = "local";
+
+    public static final Path DEFAULT_STORE_DIRECTORY = Paths.get("data", "credentials");
+
+    private static final String JCA_PREFIX = "PBKDF2WithHmac";
+    private static final String PHC_PREFIX = "pbkdf2-";
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
 
     private final SecureRandom secureRandom;
-    private final SecretKeyFactory keyFactory;
+    private final ThreadLocal<Map<String, SecretKeyFactory>> keyFactories;
     private final String algorithm;
-    private final Map<String, UserCredentials> userDatabase;
+    private final int iterations;
+    private final CredentialStore credentialStore;
+    // Set when the store was opened here rather than passed in, so shutdown() closes it
+    private boolean ownsStore;
+
+    // Hashing runs here so a burst of logins queues behind the cores instead of occupying
+    // every caller thread; when the queue is full new requests are rejected immediately
+    private final ThreadPoolExecutor hashingExecutor;
+    private final LoginThrottle loginThrottle;
 
-    // Storage of User Credentials using an Inner Function
+    // A self-describing credential, stored as $pbkdf2-sha512$i=<iterations>,l=<key bits>$<salt>$<hash>
     private static class UserCredentials {
+        private final String algorithm;
+        private final int iterations;
+        private final int keyLength;
         private final byte[] salt;
-        private final String passwordHash;
+        private final byte[] hash;
 
-        public UserCredentials(byte[] salt, String passwordHash) {
+        UserCredentials(String algorithm, int iterations, int keyLength, byte[] salt, byte[] hash) {
+            this.algorithm = algorithm;
+            this.iterations = iterations;
+            this.keyLength = keyLength;
             this.salt = salt;
-            this.passwordHash = passwordHash;
+            this.hash = hash;
         }
 
-        public byte[] getSalt() {
-            return salt;
+        String encode() {
+            return "$" + PHC_PREFIX + algorithm.substring(JCA_PREFIX.length()).toLowerCase()
+                    + "$i=" + iterations + ",l=" + keyLength
+                    + "$" + ENCODER.encodeToString(salt)
+                    + "$" + ENCODER.encodeToString(hash);
         }
 
-        public String getPasswordHash() {
-            return passwordHash;
+        static UserCredentials parse(String encoded) {
+            String[] parts = encoded.split("\\$");
+            if (parts.length != 5 || !parts[0].isEmpty() || !parts[1].startsWith(PHC_PREFIX)) {
+                throw new IllegalArgumentException("Unrecognised credential format");
+            }
+
+            int iterations = -1;
+            int keyLength = -1;
+            for (String parameter : parts[2].split(",")) {
+                if (parameter.startsWith("i=")) {
+                    iterations = Integer.parseInt(parameter.substring(2));
+                } else if (parameter.startsWith("l=")) {
+                    keyLength = Integer.parseInt(parameter.substring(2));
+                }
+            }
+            if (iterations <= 0 || keyLength <= 0) {
+                throw new IllegalArgumentException("Credential is missing its iteration count or key length");
+            }
+
+            String algorithm = JCA_PREFIX + parts[1].substring(PHC_PREFIX.length()).toUpperCase();
+            return new UserCredentials(algorithm, iterations, keyLength, DECODER.decode(parts[3]), DECODER.decode(parts[4]));
         }
     }
 
+    // Keeps credentials in the default store under data/credentials
     public PasswordManager() {
+        this(new CredentialStore(DEFAULT_STORE_DIRECTORY));
+        this.ownsStore = true;
+    }
+
+    public PasswordManager(CredentialStore credentialStore) {
+        this(credentialStore, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * QUEUED_HASHES_PER_THREAD,
+                DEFAULT_HASH_BUDGET_MILLIS);
+    }
+
+    public PasswordManager(CredentialStore credentialStore, int hashingThreads, int queueCapacity, long hashBudgetMillis) {
         this.secureRandom = new SecureRandom();
-        this.userDatabase = new HashMap<>();
+        this.credentialStore = credentialStore;
 
         String[] algorithmsList = {
                 "PBKDF2WithHmacSHA512",
@@ -49,12 +129,11 @@ public class PasswordManager {
                 "PBKDF2WithHmacSHA1"
         };
 
-        SecretKeyFactory factory = null;
         String selectedAlgorithm = null;
 
         for (String algo : algorithmsList) {
             try {
-                factory = SecretKeyFactory.getInstance(algo);
+                SecretKeyFactory.getInstance(algo);
                 selectedAlgorithm = algo;
                 break;
             } catch (NoSuchAlgorithmException e) {
@@ -62,40 +141,187 @@ public class PasswordManager {
             }
         }
 
-        if (factory == null) {
+        if (selectedAlgorithm == null) {
             throw new RuntimeException(
                     "No PBKDF2 algorithm found. Please update Java!!!"
             );
         }
 
-        this.keyFactory = factory;
-        this.algorithm = selectedAlgorithm ;
+        this.algorithm = selectedAlgorithm;
+        // SecretKeyFactory instances are not documented as thread-safe; each thread keeps its own,
+        // one per algorithm since older credentials may use a different one
+        this.keyFactories = ThreadLocal.withInitial(HashMap::new);
+        this.iterations = calibrate(hashBudgetMillis);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.hashingExecutor = new ThreadPoolExecutor(hashingThreads, hashingThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        // Logins may keep every hashing thread busy with one more queued behind each
+        this.loginThrottle = new LoginThrottle(hashingThreads * 2);
+    }
+
+    // Times a short hash and scales the iteration count to the budget
+    private int calibrate(long hashBudgetMillis) {
+        byte[] salt = generateSalt();
+        derive("calibration", salt, algorithm, CALIBRATION_ITERATIONS, KEY_LENGTH);
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long start = System.nanoTime();
+            derive("calibration", salt, algorithm, CALIBRATION_ITERATIONS, KEY_LENGTH);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        double scaled = (double) CALIBRATION_ITERATIONS * TimeUnit.MILLISECONDS.toNanos(hashBudgetMillis) / Math.max(best, 1L);
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, scaled));
     }
 
     public String getAlgorithm() {
         return this.algorithm;
     }
 
+    public int getIterations() {
+        return this.iterations;
+    }
+
     public boolean registerUser(String username, String password) {
-        if (userDatabase.containsKey(username)) {
+        if (credentialStore.contains(username)) {
             return false; // Username already exists
         }
 
-        byte[] salt = generateSalt();
-        String hashedPassword = hashPassword(password, salt);
+        // Two concurrent registrations of the same name may both hash; only one is stored
+        return credentialStore.putIfAbsent(username, createCredentials(password).encode());
+    }
 
-        userDatabase.put(username, new UserCredentials(salt, hashedPassword));
-        return true;
+    // Completes exceptionally with RejectedExecutionException when the hashing queue is full
+    public CompletableFuture<Boolean> registerUserAsync(String username, String password) {
+        if (credentialStore.contains(username)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return submit(() -> registerUser(username, password));
+    }
+
+    // Throttled like the overload taking a source; a refused attempt completes with false
+    public CompletableFuture<Boolean> authenticateUserAsync(String username, String password) {
+        return authenticateUserAsync(username, password, LOCAL_SOURCE)
+                .thenApply(status -> status == LoginStatus.AUTHENTICATED);
+    }
+
+    // Throttled login: rate limits, lockouts and the KDF cap are checked before any hashing
+    public LoginStatus authenticateUser(String username, String password, String source) {
+        LoginStatus admission = loginThrottle.admit(username, source);
+        if (admission != LoginStatus.ADMITTED) {
+            return admission;
+        }
+
+        boolean success = false;
+        try {
+            success = checkPassword(username, password);
+        } finally {
+            loginThrottle.complete(username, success);
+        }
+        return success ? LoginStatus.AUTHENTICATED : LoginStatus.INVALID_CREDENTIALS;
+    }
+
+    // Throttled and asynchronous; never completes exceptionally because the pool is full
+    public CompletableFuture<LoginStatus> authenticateUserAsync(String username, String password, String source) {
+        LoginStatus admission = loginThrottle.admit(username, source);
+        if (admission != LoginStatus.ADMITTED) {
+            return CompletableFuture.completedFuture(admission);
+        }
+        if (!credentialStore.contains(username)) {
+            loginThrottle.complete(username, false);
+            return CompletableFuture.completedFuture(LoginStatus.INVALID_CREDENTIALS);
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                boolean success = false;
+                try {
+                    success = checkPassword(username, password);
+                } finally {
+                    loginThrottle.complete(username, success);
+                }
+                return success ? LoginStatus.AUTHENTICATED : LoginStatus.INVALID_CREDENTIALS;
+            }, hashingExecutor);
+        } catch (RejectedExecutionException e) {
+            loginThrottle.release();
+            return CompletableFuture.completedFuture(LoginStatus.BUSY);
+        }
+    }
+
+    public LoginThrottle getLoginThrottle() {
+        return loginThrottle;
     }
 
+    private CompletableFuture<Boolean> submit(Supplier<Boolean> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, hashingExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Hashes waiting for a thread; callers may use this to shed load before submitting
+    public int getQueuedHashCount() {
+        return hashingExecutor.getQueue().size();
+    }
+
+    public void shutdown() {
+        hashingExecutor.shutdown();
+        if (ownsStore) {
+            credentialStore.close();
+        }
+    }
+
+    // Throttled like the overload taking a source; a refused attempt returns false
     public boolean authenticateUser(String username, String password) {
-        UserCredentials credentials = userDatabase.get(username);
-        if (credentials == null) {
+        return authenticateUser(username, password, LOCAL_SOURCE) == LoginStatus.AUTHENTICATED;
+    }
+
+    // Verifies without consulting the throttle, so only admitted attempts may call it
+    private boolean checkPassword(String username, String password) {
+        String stored = credentialStore.get(username);
+        if (stored == null) {
             return false; // User doesn't exist
         }
 
-        String attemptHash = hashPassword(password, credentials.getSalt());
-        return attemptHash.equals(credentials.getPasswordHash());
+        UserCredentials credentials = UserCredentials.parse(stored);
+        if (!verify(password, credentials)) {
+            return false;
+        }
+
+        // The plain password is only available here, so upgrade outdated parameters now
+        if (needsRehash(credentials)) {
+            credentialStore.replace(username, stored, createCredentials(password).encode());
+        }
+        return true;
+    }
+
+    private boolean needsRehash(UserCredentials credentials) {
+        if (!credentials.algorithm.equals(algorithm) || credentials.keyLength != KEY_LENGTH) {
+            return true;
+        }
+        return credentials.iterations < iterations
+                && iterations - credentials.iterations > iterations * REHASH_TOLERANCE;
+    }
+
+    private UserCredentials createCredentials(String password) {
+        byte[] salt = generateSalt();
+        return new UserCredentials(algorithm, iterations, KEY_LENGTH, salt,
+                derive(password, salt, algorithm, iterations, KEY_LENGTH));
+    }
+
+    private boolean verify(String password, UserCredentials credentials) {
+        byte[] attempt = derive(password, credentials.salt, credentials.algorithm,
+                credentials.iterations, credentials.keyLength);
+        return MessageDigest.isEqual(attempt, credentials.hash);
     }
 
     private byte[] generateSalt() {
@@ -104,46 +330,66 @@ public class PasswordManager {
         return salt;
     }
 
-    private String hashPassword(String password, byte[] salt) {
+    private byte[] derive(String password, byte[] salt, String algorithm, int iterations, int keyLength) {
+        PBEKeySpec spec = new PBEKeySpec(
+                password.toCharArray(),
+                salt,
+                iterations,
+                keyLength
+        );
         try {
-            PBEKeySpec spec = new PBEKeySpec(
-                    password.toCharArray(),
-                    salt,
-                    ITERATIONS,
-                    KEY_LENGTH
-            );
-
-            byte[] hash = keyFactory.generateSecret(spec).getEncoded();
-            return Base64.getEncoder().encodeToString(hash);
+            return keyFactory(algorithm).generateSecret(spec).getEncoded();
         } catch (InvalidKeySpecException e) {
             throw new RuntimeException("Error while hashing password", e);
+        } finally {
+            spec.clearPassword();
         }
     }
 
+    private SecretKeyFactory keyFactory(String algorithm) {
+        return keyFactories.get().computeIfAbsent(algorithm, (name) -> {
+            try {
+                return SecretKeyFactory.getInstance(name);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("Algorithm " + name + " not found", e);
+            }
+        });
+    }
+
     public boolean userExists(String username) {
-        return userDatabase.containsKey(username);
+        return credentialStore.contains(username);
     }
 
     public boolean removeUser(String username) {
-        return userDatabase.remove(username) != null;
+        return credentialStore.remove(username);
     }
 
     public int getUserCount() {
-        return userDatabase.size();
+        return Math.toIntExact(credentialStore.size());
     }
 
-    // Public methods for general-purpose password hashing
+    // Public methods for general-purpose password hashing; the result embeds its salt and parameters
     public String hashPasswordForAccount(String password) {
-        byte[] salt = generateSalt();
-        return hashPassword(password, salt);
+        return createCredentials(password).encode();
+    }
+
+    public boolean verifyAccountPassword(String password, String storedHash) {
+        if (storedHash == null) {
+            return false;
+        }
+        try {
+            return verify(password, UserCredentials.parse(storedHash));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
-    
+
     public byte[] generateSaltForAccount() {
         return generateSalt();
     }
-    
+
+    // Legacy format without parameters, so the cost stays at the fixed count the stored hashes were made with
     public String hashPasswordWithSalt(String password, byte[] salt) {
-        return hashPassword(password, salt);
+        return Base64.getEncoder().encodeToString(derive(password, salt, algorithm, MIN_ITERATIONS, KEY_LENGTH));
     }
 }
-
@@ -0,0 +1,147 @@
+package myLib;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps market value, cost basis and cash per account and per user, updated by the deltas that
+// accounts and holdings report, so reading a valuation costs the same for one position or thousands.
+public class PortfolioValuation implements ValuationListener {
+    private final Map<String, Valuation> byAccount = new ConcurrentHashMap<>();
+    private final Map<String, Valuation> byUser = new ConcurrentHashMap<>();
+    // Investment id -> the account valuation it counts towards
+    private final Map<String, Valuation> byInvestment = new ConcurrentHashMap<>();
+
+    // Running totals; fields are updated independently so a read may straddle a concurrent change
+    public static class Valuation {
+        private final Valuation parent;
+        private final AtomicLong marketValueCents = new AtomicLong();
+        private final AtomicLong costBasisCents = new AtomicLong();
+        private final AtomicLong cashCents = new AtomicLong();
+        private final AtomicLong positions = new AtomicLong();
+
+        Valuation(Valuation parent) {
+            this.parent = parent;
+        }
+
+        void addHolding(long marketValueDelta, long costBasisDelta) {
+            marketValueCents.addAndGet(marketValueDelta);
+            costBasisCents.addAndGet(costBasisDelta);
+            if (parent != null) {
+                parent.addHolding(marketValueDelta, costBasisDelta);
+            }
+        }
+
+        void addCash(long delta) {
+            cashCents.addAndGet(delta);
+            if (parent != null) {
+                parent.addCash(delta);
+            }
+        }
+
+        void addPositions(long delta) {
+            positions.addAndGet(delta);
+            if (parent != null) {
+                parent.addPositions(delta);
+            }
+        }
+
+        public long getMarketValueCents() {
+            return marketValueCents.get();
+        }
+
+        public long getCostBasisCents() {
+            return costBasisCents.get();
+        }
+
+        public long getUnrealizedGainLossCents() {
+            return marketValueCents.get() - costBasisCents.get();
+        }
+
+        public long getCashCents() {
+            return cashCents.get();
+        }
+
+        public long getNetWorthCents() {
+            return cashCents.get() + marketValueCents.get();
+        }
+
+        public long getPositionCount() {
+            return positions.get();
+        }
+    }
+
+    // Starts tracking an account and the holdings it already has
+    public void attach(Account account) {
+        Valuation userValuation = byUser.computeIfAbsent(account.getUserId(), (userId) -> new Valuation(null));
+        Valuation accountValuation = new Valuation(userValuation);
+        if (byAccount.putIfAbsent(account.getAccountId(), accountValuation) != null) {
+            return;
+        }
+
+        accountValuation.addCash(account.attachValuationListener(this));
+        for (Investment investment : account.getInvestments()) {
+            attachHolding(accountValuation, investment);
+        }
+    }
+
+    // Stops tracking an account and removes its contribution from the owner's totals
+    public void detach(Account account) {
+        Valuation accountValuation = byAccount.remove(account.getAccountId());
+        if (accountValuation == null) {
+            return;
+        }
+
+        accountValuation.addCash(-account.detachValuationListener());
+        for (Investment investment : account.getInvestments()) {
+            if (byInvestment.remove(investment.getInvestmentId(), accountValuation)) {
+                long[] values = investment.detachValuationListener();
+                accountValuation.addHolding(-values[0], -values[1]);
+                accountValuation.addPositions(-1);
+            }
+        }
+    }
+
+    private void attachHolding(Valuation accountValuation, Investment investment) {
+        if (byInvestment.putIfAbsent(investment.getInvestmentId(), accountValuation) != null) {
+            return;
+        }
+        long[] values = investment.attachValuationListener(this);
+        accountValuation.addHolding(values[0], values[1]);
+        accountValuation.addPositions(1);
+    }
+
+    @Override
+    public void onBalanceChanged(Account account, long deltaCents) {
+        Valuation valuation = byAccount.get(account.getAccountId());
+        if (valuation != null) {
+            valuation.addCash(deltaCents);
+        }
+    }
+
+    @Override
+    public void onHoldingAdded(Account account, Investment investment) {
+        Valuation valuation = byAccount.get(account.getAccountId());
+        if (valuation != null) {
+            attachHolding(valuation, investment);
+        }
+    }
+
+    @Override
+    public void onHoldingChanged(Investment investment, long marketValueDeltaCents, long costBasisDeltaCents) {
+        Valuation valuation = byInvestment.get(investment.getInvestmentId());
+        if (valuation != null) {
+            valuation.addHolding(marketValueDeltaCents, costBasisDeltaCents);
+        }
+    }
+
+    // Returns null for an account that is not tracked
+    public Valuation getAccountValuation(String accountId) {
+        return byAccount.get(accountId);
+    }
+
+    // Returns null for a user with no tracked accounts
+    public Valuation getUserValuation(String userId) {
+        return byUser.get(userId);
+    }
+}
@@ -0,0 +1,608 @@
+package myLib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead log of postings, stored in memory-mapped segment files
+public class PostingLog implements AutoCloseable {
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long DEFAULT_INTERVAL_MILLIS = 50L;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final byte KIND_POSTING = 1;
+    private static final byte KIND_ACCOUNT_OPEN = 2;
+    private static final byte KIND_HOLDING = 3;
+    private static final byte KIND_PREFERENCE = 4;
+    private static final byte KIND_TRANSFER = 5;
+    private static final byte KIND_DAY_CLOSE = 6;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    // length, kind, lsn, crc
+    private static final int FIXED_RECORD_BYTES = 4 + 1 + 8 + 4;
+    // timestamp, type, amount, balance after
+    private static final int FIXED_LEG_BYTES = 8 + 1 + 8 + 8;
+    // length, kind, lsn, payload length, crc
+    private static final int MIN_RECORD_BYTES = 4 + 1 + 8 + 4 + 4;
+
+    // Receives log records in LSN order during replay
+    public interface ReplayHandler {
+        void onAccountOpened(long lsn, Account account);
+
+        void onPosting(PostingRecord record);
+
+        // The holding's full state after a change; replaces any earlier state of the same investment
+        void onHolding(long lsn, String accountId, Investment investment);
+
+        void onPreference(long lsn, String userId, notificationType preference);
+
+        // An account's end-of-day postings (possibly none) and the business day they close, all or nothing
+        void onDayClosed(long lsn, String accountId, long businessDay, List<PostingRecord> postings);
+    }
+
+    private final Path directory;
+    private final long segmentSize;
+    private final SyncPolicy syncPolicy;
+    private final int batchSize;
+    private final ReentrantLock appendLock;
+    private final Object syncMonitor;
+    private final CRC32 crc;
+    private final ScheduledExecutorService syncScheduler;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int segmentNumber;
+    private long writtenLsn;
+    private volatile long syncedLsn;
+
+    public PostingLog(Path directory, SyncPolicy syncPolicy) {
+        this(directory, syncPolicy, DEFAULT_SEGMENT_SIZE, DEFAULT_BATCH_SIZE, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public PostingLog(Path directory, SyncPolicy syncPolicy, long segmentSize, int batchSize, long intervalMillis) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        this.batchSize = batchSize;
+        this.appendLock = new ReentrantLock();
+        this.syncMonitor = new Object();
+        this.crc = new CRC32();
+
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open posting log in " + directory, e);
+        }
+
+        // BATCHED also syncs on the timer, so a quiet log never holds records longer than the interval
+        if (syncPolicy == SyncPolicy.INTERVAL || syncPolicy == SyncPolicy.BATCHED) {
+            this.syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "posting-log-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.syncScheduler.scheduleWithFixedDelay(this::syncAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncScheduler = null;
+        }
+    }
+
+    // One balance change, encoded ahead of taking the append lock
+    static class Leg {
+        private final long timestampMillis;
+        private final byte type;
+        private final long signedCents;
+        private final long balanceAfterCents;
+        private final byte[] accountBytes;
+        private final byte[] transactionBytes;
+        private final byte[] firstBytes;
+        private final byte[] secondBytes;
+        private final byte[] descriptionBytes;
+
+        Leg(String accountId, Transaction transaction, long signedCents, long balanceAfterCents) {
+            this.timestampMillis = TransactionJournal.toEpochMillis(transaction.getTimestamp());
+            this.type = (byte) transaction.getType().ordinal();
+            this.signedCents = signedCents;
+            this.balanceAfterCents = balanceAfterCents;
+            this.accountBytes = encode(accountId);
+            this.transactionBytes = encode(transaction.getTransactionId());
+            this.firstBytes = encode(transaction.getAccountId1());
+            this.secondBytes = encode(transaction.getAccountId2());
+            this.descriptionBytes = encode(transaction.getDescription());
+        }
+
+        int length() {
+            return FIXED_LEG_BYTES + stringBytes(accountBytes) + stringBytes(transactionBytes)
+                    + stringBytes(firstBytes) + stringBytes(secondBytes) + stringBytes(descriptionBytes);
+        }
+    }
+
+    // Writes the posting into the mapped segment and returns its LSN; durability is decided by commit()
+    public long append(String accountId, Transaction transaction, long signedCents, long balanceAfterCents) {
+        Leg leg = new Leg(accountId, transaction, signedCents, balanceAfterCents);
+        return appendLegs(KIND_POSTING, null, leg);
+    }
+
+    // Writes both legs of a transfer as one record under one LSN, so a torn write loses both or neither
+    public long appendTransfer(String fromAccountId, Transaction debit, long debitCents, long fromBalanceAfterCents,
+                               String toAccountId, Transaction credit, long creditCents, long toBalanceAfterCents) {
+        Leg first = new Leg(fromAccountId, debit, debitCents, fromBalanceAfterCents);
+        Leg second = new Leg(toAccountId, credit, creditCents, toBalanceAfterCents);
+        return appendLegs(KIND_TRANSFER, null, first, second);
+    }
+
+    // Writes an account's end-of-day postings together with the business day they close, so replay
+    // restores the closed day exactly when it restores the postings
+    long appendDayClose(String accountId, long businessDay, List<Leg> legs) {
+        byte[] accountBytes = encode(accountId);
+        ByteBuffer prefix = ByteBuffer.allocate(stringBytes(accountBytes) + 8 + 1);
+        putString(prefix, accountBytes);
+        prefix.putLong(businessDay);
+        prefix.put((byte) legs.size());
+        return appendLegs(KIND_DAY_CLOSE, prefix.array(), legs.toArray(new Leg[0]));
+    }
+
+    private long appendLegs(byte kind, byte[] prefix, Leg... legs) {
+        int length = FIXED_RECORD_BYTES + (prefix == null ? 0 : prefix.length);
+        for (Leg leg : legs) {
+            length += leg.length();
+        }
+
+        appendLock.lock();
+        try {
+            if (buffer.remaining() < length + 4) {
+                rotate();
+            }
+
+            long lsn = writtenLsn + 1;
+            int start = buffer.position();
+            buffer.putInt(length);
+            buffer.put(kind);
+            buffer.putLong(lsn);
+            if (prefix != null) {
+                buffer.put(prefix);
+            }
+            for (Leg leg : legs) {
+                putLeg(leg);
+            }
+            buffer.putInt(checksum(buffer, start + 4, buffer.position()));
+            markEnd();
+
+            writtenLsn = lsn;
+            return lsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void putLeg(Leg leg) {
+        buffer.putLong(leg.timestampMillis);
+        buffer.put(leg.type);
+        buffer.putLong(leg.signedCents);
+        buffer.putLong(leg.balanceAfterCents);
+        putString(buffer, leg.accountBytes);
+        putString(buffer, leg.transactionBytes);
+        putString(buffer, leg.firstBytes);
+        putString(buffer, leg.secondBytes);
+        putString(buffer, leg.descriptionBytes);
+    }
+
+    // Records a new account so it can be rebuilt by replay if it is not yet in a snapshot
+    public long appendAccountOpen(Account account) {
+        return appendPayload(KIND_ACCOUNT_OPEN, BankSnapshot.encodeAccount(account));
+    }
+
+    // Records a holding's state (quantity, lots, price) after it was bought, sold or repriced
+    public long appendHolding(String accountId, Investment investment) {
+        return appendPayload(KIND_HOLDING, BankSnapshot.encodeHolding(accountId, investment));
+    }
+
+    public long appendPreference(String userId, notificationType preference) {
+        return appendPayload(KIND_PREFERENCE, BankSnapshot.encodePreference(userId, preference));
+    }
+
+    private long appendPayload(byte kind, byte[] payload) {
+        int length = MIN_RECORD_BYTES + payload.length;
+
+        appendLock.lock();
+        try {
+            if (buffer.remaining() < length + 4) {
+                rotate();
+            }
+
+            long lsn = writtenLsn + 1;
+            int start = buffer.position();
+            buffer.putInt(length);
+            buffer.put(kind);
+            buffer.putLong(lsn);
+            buffer.putInt(payload.length);
+            buffer.put(payload);
+            buffer.putInt(checksum(buffer, start + 4, buffer.position()));
+            markEnd();
+
+            writtenLsn = lsn;
+            return lsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Makes the given LSN durable according to the configured policy
+    public void commit(long lsn) {
+        switch (syncPolicy) {
+            case PER_OP:
+                sync(lsn);
+                break;
+            case BATCHED:
+                // A partial batch is left to the sync timer
+                if (lsn - syncedLsn >= batchSize) {
+                    sync(lsn);
+                }
+                break;
+            case INTERVAL:
+            default:
+                break;
+        }
+    }
+
+    // Group commit: one force() covers every record written before it started
+    public void sync(long lsn) {
+        if (syncedLsn >= lsn) {
+            return;
+        }
+
+        synchronized (syncMonitor) {
+            if (syncedLsn >= lsn) {
+                return;
+            }
+
+            long target;
+            MappedByteBuffer current;
+            appendLock.lock();
+            try {
+                target = writtenLsn;
+                current = buffer;
+            } finally {
+                appendLock.unlock();
+            }
+
+            current.force();
+            syncedLsn = target;
+        }
+    }
+
+    public void syncAll() {
+        sync(getLastLsn());
+    }
+
+    public long getLastLsn() {
+        appendLock.lock();
+        try {
+            return writtenLsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long getSyncedLsn() {
+        return syncedLsn;
+    }
+
+    // Streams every intact record with an LSN greater than afterLsn, oldest first. Segments wholly at
+    // or below afterLsn are skipped without being read.
+    public void replay(long afterLsn, ReplayHandler handler) {
+        syncAll();
+        try {
+            List<Path> segments = listSegments();
+            int first = firstSegmentAfter(segments, afterLsn);
+            long expectedLsn = afterLsn + 1;
+            for (int i = first; i < segments.size(); i++) {
+                try (FileChannel readChannel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                    MappedByteBuffer readBuffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                    long lsn;
+                    long previousLsn = 0L;
+                    // Records at or below one already replayed are not passed on; they are reported below
+                    while ((lsn = readRecord(readBuffer, previousLsn, Math.max(afterLsn, expectedLsn - 1), handler)) > 0) {
+                        if (lsn > expectedLsn) {
+                            throw new IllegalStateException("Posting log is missing records " + expectedLsn + " to " + (lsn - 1));
+                        }
+                        if (lsn > afterLsn && lsn < expectedLsn) {
+                            throw new IllegalStateException("Posting log repeats record " + lsn);
+                        }
+                        previousLsn = lsn;
+                        expectedLsn = Math.max(expectedLsn, lsn + 1);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to replay posting log in " + directory, e);
+        }
+    }
+
+    // Deletes the segments whose records all have an LSN at or below lsn, once a durable snapshot covers
+    // them. The segment holding the last record is always kept so LSNs carry on from it after a restart.
+    public int discardThrough(long lsn) {
+        int current;
+        appendLock.lock();
+        try {
+            current = segmentNumber;
+        } finally {
+            appendLock.unlock();
+        }
+
+        try {
+            List<Path> segments = listSegments();
+            int first = firstSegmentAfter(segments, lsn);
+            int deleted = 0;
+            for (int i = 0; i < first; i++) {
+                if (parseSegmentNumber(segments.get(i)) < current) {
+                    Files.delete(segments.get(i));
+                    deleted++;
+                }
+            }
+            return deleted;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to discard posting log segments in " + directory, e);
+        }
+    }
+
+    // Index of the first segment that may hold an LSN above lsn: a segment can be skipped once the
+    // next one starts at or below lsn + 1, since LSNs run on without gaps across segments
+    private int firstSegmentAfter(List<Path> segments, long lsn) throws IOException {
+        int first = 0;
+        while (first < segments.size() - 1) {
+            long nextFirstLsn = firstLsn(segments.get(first + 1));
+            if (nextFirstLsn == 0L || nextFirstLsn > lsn + 1) {
+                break;
+            }
+            first++;
+        }
+        return first;
+    }
+
+    // LSN of the segment's first record, or 0 if it has no intact record yet
+    private long firstLsn(Path segment) throws IOException {
+        try (FileChannel readChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            if (readChannel.read(header, 0) < 4) {
+                return 0L;
+            }
+            int length = header.getInt(0);
+            if (length < MIN_RECORD_BYTES || length > readChannel.size()) {
+                return 0L;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            while (record.hasRemaining() && readChannel.read(record, record.position()) > 0) {
+                // keep reading until the whole record is in
+            }
+            record.flip();
+            return readRecord(record, 0L, Long.MAX_VALUE, null);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (syncScheduler != null) {
+            syncScheduler.shutdown();
+        }
+        syncAll();
+
+        appendLock.lock();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to close posting log", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Finds the last intact record so appends continue after it. Only the newest segment that has any
+    // record needs scanning; earlier ones may already have been discarded.
+    private void recover() throws IOException {
+        List<Path> segments = listSegments();
+        long lastLsn = 0L;
+        int lastPosition = 0;
+
+        if (segments.isEmpty()) {
+            segmentNumber = 1;
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            segmentNumber = parseSegmentNumber(last);
+            int from = segments.size() - 1;
+            while (from > 0 && firstLsn(segments.get(from)) == 0L) {
+                from--;
+            }
+            for (int i = from; i < segments.size(); i++) {
+                Path segment = segments.get(i);
+                try (FileChannel readChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                    MappedByteBuffer readBuffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                    long lsn;
+                    while ((lsn = readRecord(readBuffer, lastLsn, Long.MAX_VALUE, null)) > 0) {
+                        lastLsn = lsn;
+                    }
+                    if (segment.equals(last)) {
+                        lastPosition = readBuffer.position();
+                    }
+                }
+            }
+        }
+
+        openSegment(segmentNumber);
+        buffer.position(lastPosition);
+        // Clear any torn tail so a later scan stops at the right place
+        markEnd();
+        writtenLsn = lastLsn;
+        syncedLsn = lastLsn;
+    }
+
+    // A zero length right after the newest record ends every scan there, so bytes left over from
+    // before a torn write can never be read as records following it
+    private void markEnd() {
+        if (buffer.remaining() >= 4) {
+            buffer.putInt(buffer.position(), 0);
+        }
+    }
+
+    private void rotate() {
+        markEnd();
+        buffer.force();
+        try {
+            channel.close();
+            openSegment(segmentNumber + 1);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to rotate posting log segment", e);
+        }
+    }
+
+    private void openSegment(int number) throws IOException {
+        Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentNumber = number;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static int parseSegmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Returns the record's LSN, or 0 at the end of the segment, at the first damaged record or at a
+    // record that does not directly follow previousLsn (0 accepts any). Only records after afterLsn
+    // are decoded and passed to the handler.
+    private long readRecord(ByteBuffer source, long previousLsn, long afterLsn, ReplayHandler handler) {
+        if (source.remaining() < 4) {
+            return 0L;
+        }
+
+        int start = source.position();
+        int length = source.getInt(start);
+        if (length < MIN_RECORD_BYTES || length > source.remaining()) {
+            return 0L;
+        }
+
+        int crcOffset = start + length - 4;
+        if (checksum(source, start + 4, crcOffset) != source.getInt(crcOffset)) {
+            return 0L;
+        }
+
+        byte kind = source.get(start + 4);
+        long lsn = source.getLong(start + 5);
+        if (previousLsn != 0L && lsn != previousLsn + 1) {
+            return 0L;
+        }
+        source.position(start + 13);
+
+        if (handler != null && lsn > afterLsn) {
+            if (kind == KIND_POSTING) {
+                handler.onPosting(readLeg(source, lsn));
+            } else if (kind == KIND_TRANSFER) {
+                PostingRecord debit = readLeg(source, lsn);
+                PostingRecord credit = readLeg(source, lsn);
+                handler.onPosting(debit);
+                handler.onPosting(credit);
+            } else if (kind == KIND_DAY_CLOSE) {
+                String accountId = getString(source);
+                long businessDay = source.getLong();
+                int count = source.get();
+                List<PostingRecord> postings = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    postings.add(readLeg(source, lsn));
+                }
+                handler.onDayClosed(lsn, accountId, businessDay, postings);
+            } else {
+                byte[] payload = new byte[source.getInt()];
+                source.get(payload);
+                if (kind == KIND_ACCOUNT_OPEN) {
+                    handler.onAccountOpened(lsn, BankSnapshot.decodeAccount(payload));
+                } else if (kind == KIND_HOLDING) {
+                    BankSnapshot.decodeHolding(payload, lsn, handler);
+                } else if (kind == KIND_PREFERENCE) {
+                    BankSnapshot.decodePreference(payload, lsn, handler);
+                }
+            }
+        }
+
+        source.position(start + length);
+        return lsn;
+    }
+
+    private static PostingRecord readLeg(ByteBuffer source, long lsn) {
+        long timestampMillis = source.getLong();
+        TransactionType type = TYPES[source.get()];
+        long amountCents = source.getLong();
+        long balanceAfterCents = source.getLong();
+        String accountId = getString(source);
+        String transactionId = getString(source);
+        String firstAccountId = getString(source);
+        String secondAccountId = getString(source);
+        String description = getString(source);
+        return new PostingRecord(lsn, timestampMillis, type, amountCents, balanceAfterCents,
+                accountId, transactionId, firstAccountId, secondAccountId, description);
+    }
+
+    private int checksum(ByteBuffer source, int from, int to) {
+        synchronized (crc) {
+            crc.reset();
+            ByteBuffer slice = source.duplicate();
+            slice.position(from);
+            slice.limit(to);
+            crc.update(slice);
+            return (int) crc.getValue();
+        }
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringBytes(byte[] bytes) {
+        return 2 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer target, byte[] bytes) {
+        if (bytes == null) {
+            target.putShort((short) -1);
+        } else {
+            target.putShort((short) bytes.length);
+            target.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer source) {
+        short length = source.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
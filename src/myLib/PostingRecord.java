@@ -0,0 +1,80 @@
+package myLib;
+
+// One balance change as written to the posting log
+public class PostingRecord {
+    private final long lsn;
+    private final long timestampMillis;
+    private final TransactionType type;
+    private final long amountCents;
+    private final long balanceAfterCents;
+    private final String accountId;
+    private final String transactionId;
+    private final String firstAccountId;
+    private final String secondAccountId;
+    private final String description;
+
+    public PostingRecord(long lsn, long timestampMillis, TransactionType type, long amountCents,
+                         long balanceAfterCents, String accountId, String transactionId,
+                         String firstAccountId, String secondAccountId, String description) {
+        this.lsn = lsn;
+        this.timestampMillis = timestampMillis;
+        this.type = type;
+        this.amountCents = amountCents;
+        this.balanceAfterCents = balanceAfterCents;
+        this.accountId = accountId;
+        this.transactionId = transactionId;
+        this.firstAccountId = firstAccountId;
+        this.secondAccountId = secondAccountId;
+        this.description = description;
+    }
+
+    public long getLsn() {
+        return lsn;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    // Signed change applied to the balance
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public long getBalanceAfterCents() {
+        return balanceAfterCents;
+    }
+
+    // Account whose balance changed
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    // Accounts as recorded on the transaction; for transfers these are the source and destination
+    public String getFirstAccountId() {
+        return firstAccountId;
+    }
+
+    public String getSecondAccountId() {
+        return secondAccountId;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Transaction toTransaction() {
+        return Transaction.Builder.ofCents(transactionId, firstAccountId, Math.abs(amountCents), type, description)
+                .secondAccount(secondAccountId)
+                .timestamp(TransactionJournal.toLocalDateTime(timestampMillis))
+                .build();
+    }
+}
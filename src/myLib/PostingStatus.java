@@ -0,0 +1,9 @@
+package myLib;
+
+public enum PostingStatus {
+    POSTED,
+    INVALID_AMOUNT,
+    INSUFFICIENT_FUNDS,
+    UNKNOWN_ACCOUNT,
+    SAME_ACCOUNT
+}
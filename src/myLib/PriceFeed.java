@@ -0,0 +1,356 @@
+package myLib;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Reprices stock holdings from a stream of "TICKER,price" ticks. Each ticker has one slot holding
+// its latest price; a tick overwrites the slot and queues it only if it is not already queued, so
+// memory stays bounded by the number of tickers however fast ticks arrive. A dispatcher thread
+// blocks on the queue and applies each slot's latest price to every holding of that ticker, and
+// records it in the price history if one is attached. Only the dispatcher applies prices, so an
+// older price can never overwrite a newer one; importers wait for it with awaitApplied().
+public class PriceFeed implements AutoCloseable {
+    private static final long NO_PRICE = -1L;
+
+    private final Map<String, TickerSlot> slots = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<TickerSlot> dirty = new LinkedBlockingQueue<>();
+    private final List<ServerSocket> servers = new CopyOnWriteArrayList<>();
+    private final PriceHistory history;
+    private volatile boolean running;
+    private Thread dispatcher;
+
+    private final LongAdder ticksReceived = new LongAdder();
+    private final LongAdder ticksUnknown = new LongAdder();
+    private final LongAdder ticksMalformed = new LongAdder();
+    private final LongAdder pricesApplied = new LongAdder();
+    private final LongAdder holdingsRepriced = new LongAdder();
+
+    private static class TickerSlot {
+        private final String ticker;
+        private final List<Investment> holdings = new CopyOnWriteArrayList<>();
+        private final AtomicLong latestPriceCents = new AtomicLong(NO_PRICE);
+        private final AtomicBoolean queued = new AtomicBoolean();
+        // Set only on markers, which carry no price and are released when the dispatcher reaches them
+        private final CountDownLatch reached;
+
+        TickerSlot(String ticker) {
+            this.ticker = ticker;
+            this.reached = null;
+        }
+
+        TickerSlot(CountDownLatch reached) {
+            this.ticker = null;
+            this.reached = reached;
+        }
+    }
+
+    // Wakes the dispatcher on close; nothing waits on it
+    private static final TickerSlot WAKE_UP = new TickerSlot(new CountDownLatch(0));
+
+    public PriceFeed() {
+        this(null);
+    }
+
+    // Applied prices are also recorded in the given history
+    public PriceFeed(PriceHistory history) {
+        this.history = history;
+    }
+
+    // Holdings without a ticker (bonds) are ignored
+    public void register(Investment investment) {
+        if (investment instanceof Stock) {
+            String ticker = ((Stock) investment).getTicker();
+            slots.computeIfAbsent(normalize(ticker), TickerSlot::new).holdings.add(investment);
+        }
+    }
+
+    public void unregister(Investment investment) {
+        if (investment instanceof Stock) {
+            TickerSlot slot = slots.get(normalize(((Stock) investment).getTicker()));
+            if (slot != null) {
+                slot.holdings.remove(investment);
+            }
+        }
+    }
+
+    // Accepts one tick; never blocks and never allocates for known tickers
+    public void onTick(String ticker, long priceCents) {
+        ticksReceived.increment();
+        TickerSlot slot = slots.get(ticker);
+        if (slot == null) {
+            slot = slots.get(normalize(ticker));
+        }
+        if (slot == null) {
+            // Unknown tickers are dropped rather than remembered, keeping memory bounded
+            ticksUnknown.increment();
+            return;
+        }
+        slot.latestPriceCents.set(priceCents);
+        if (slot.queued.compareAndSet(false, true)) {
+            dirty.offer(slot);
+        }
+    }
+
+    // Starts the dispatcher that applies conflated prices to holdings
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (dispatcher != null) {
+            // The previous dispatcher outlived close(); let it finish before replacing it
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        running = true;
+        dispatcher = startWorker("price-dispatcher", this::dispatch);
+    }
+
+    // Blocks until every tick this thread handed over before the call has been applied, so an
+    // import can report on prices that are already in place. Returns false if interrupted.
+    public boolean awaitApplied() {
+        CountDownLatch reached = new CountDownLatch(1);
+        synchronized (this) {
+            if (dispatcher == null) {
+                // No dispatcher to race with, so apply on the caller
+                applyPending();
+                return true;
+            }
+            dirty.offer(new TickerSlot(reached));
+        }
+        try {
+            reached.await();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void dispatch() {
+        try {
+            while (running) {
+                apply(dirty.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        applyPending();
+    }
+
+    private void applyPending() {
+        TickerSlot slot;
+        while ((slot = dirty.poll()) != null) {
+            apply(slot);
+        }
+    }
+
+    private void apply(TickerSlot slot) {
+        if (slot.reached != null) {
+            // Everything queued ahead of the marker has been applied
+            slot.reached.countDown();
+            return;
+        }
+        // Clear the flag before reading so a tick arriving now queues the slot again
+        slot.queued.set(false);
+        long priceCents = slot.latestPriceCents.get();
+        for (Investment investment : slot.holdings) {
+            investment.updateCurrentPriceCents(priceCents);
+        }
+        if (history != null) {
+            history.record(slot.ticker, System.currentTimeMillis(), priceCents);
+        }
+        holdingsRepriced.add(slot.holdings.size());
+        pricesApplied.increment();
+    }
+
+    // Reads ticks from a file on the calling thread; returns the number of lines read
+    public long ingest(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return ingest(reader);
+        }
+    }
+
+    public long ingest(Reader source) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        long lines = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines++;
+            parseTick(line);
+        }
+        return lines;
+    }
+
+    // Accepts tick streams from local clients on the loopback interface only
+    public synchronized int listen(int port) throws IOException {
+        ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        servers.add(server);
+        startWorker("price-feed-accept-" + server.getLocalPort(), () -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    startWorker("price-feed-" + socket.getRemoteSocketAddress(), () -> {
+                        try (Socket client = socket;
+                             Reader reader = new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8)) {
+                            ingest(reader);
+                        } catch (IOException e) {
+                            System.out.println("Price feed connection closed: " + e.getMessage());
+                        }
+                    });
+                } catch (IOException e) {
+                    if (!server.isClosed()) {
+                        System.out.println("Price feed accept failed: " + e.getMessage());
+                    }
+                }
+            }
+        });
+        return server.getLocalPort();
+    }
+
+    private static Thread startWorker(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    // "TICKER,price" with the price in dollars; blank lines and # comments are skipped
+    private void parseTick(String line) {
+        int comma = line.indexOf(',');
+        if (comma <= 0) {
+            if (!line.isBlank() && line.charAt(0) != '#') {
+                ticksMalformed.increment();
+            }
+            return;
+        }
+        long priceCents = parseCents(line, comma + 1, line.length());
+        if (priceCents < 0) {
+            ticksMalformed.increment();
+            return;
+        }
+        onTick(line.substring(0, comma).trim(), priceCents);
+    }
+
+    // Parses a non-negative decimal amount into cents, rounding half up; returns -1 if malformed
+    static long parseCents(CharSequence text, int from, int to) {
+        while (from < to && text.charAt(from) == ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) == ' ') {
+            to--;
+        }
+        if (from == to) {
+            return -1L;
+        }
+
+        long cents = 0L;
+        int fractionDigits = -1;
+        boolean roundUp = false;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (fractionDigits < 0) {
+                    cents = cents * 10 + (c - '0');
+                    if (cents > Long.MAX_VALUE / 1000) {
+                        return -1L;
+                    }
+                } else if (fractionDigits < 2) {
+                    cents = cents * 10 + (c - '0');
+                    fractionDigits++;
+                } else if (fractionDigits == 2) {
+                    roundUp = c >= '5';
+                    fractionDigits++;
+                }
+            } else {
+                return -1L;
+            }
+        }
+
+        int missing = 2 - Math.max(fractionDigits, 0);
+        for (int i = 0; i < missing; i++) {
+            cents *= 10;
+        }
+        return roundUp ? cents + 1 : cents;
+    }
+
+    private static String normalize(String ticker) {
+        return ticker.trim().toUpperCase();
+    }
+
+    public int getTickerCount() {
+        return slots.size();
+    }
+
+    public long getTicksReceived() {
+        return ticksReceived.sum();
+    }
+
+    public long getTicksUnknown() {
+        return ticksUnknown.sum();
+    }
+
+    public long getTicksMalformed() {
+        return ticksMalformed.sum();
+    }
+
+    // Ticks overwritten by a newer price before the dispatcher got to them, plus any still pending
+    public long getTicksConflated() {
+        return ticksReceived.sum() - ticksUnknown.sum() - pricesApplied.sum();
+    }
+
+    public long getPricesApplied() {
+        return pricesApplied.sum();
+    }
+
+    public long getHoldingsRepriced() {
+        return holdingsRepriced.sum();
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        dirty.offer(WAKE_UP);
+        for (ServerSocket server : servers) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.out.println("Unable to close price feed listener: " + e.getMessage());
+            }
+        }
+        if (dispatcher != null) {
+            try {
+                dispatcher.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // A dispatcher still finishing keeps the role, so callers never apply alongside it
+            if (!dispatcher.isAlive()) {
+                dispatcher = null;
+            }
+        }
+    }
+}
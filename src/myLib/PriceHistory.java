@@ -0,0 +1,454 @@
+package myLib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Compressed in-memory price history per ticker. Ticks are packed into blocks of up to 1024 points
+// using Gorilla-style encoding: timestamps as delta-of-deltas in variable-length buckets, prices as
+// the XOR of consecutive cent values with leading/trailing zero windows. Regular ticks with small
+// moves cost a few bits each. Every block keeps its time range, first/last and min/max price in an
+// uncompressed header, so range scans skip whole blocks and OHLC queries reuse headers when a
+// block falls inside one bar.
+public class PriceHistory {
+    private static final int BLOCK_POINTS = 1024;
+    private static final int INITIAL_BLOCK_WORDS = 16;
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final LongAdder pointsRecorded = new LongAdder();
+    private final LongAdder pointsRejected = new LongAdder();
+
+    // Receives the points of a range scan in time order
+    public interface TickVisitor {
+        void visit(long timeMillis, long priceCents);
+    }
+
+    public static class Bar {
+        private final long startMillis;
+        private final long openCents;
+        private final long highCents;
+        private final long lowCents;
+        private final long closeCents;
+        private final long ticks;
+
+        Bar(long startMillis, long openCents, long highCents, long lowCents, long closeCents, long ticks) {
+            this.startMillis = startMillis;
+            this.openCents = openCents;
+            this.highCents = highCents;
+            this.lowCents = lowCents;
+            this.closeCents = closeCents;
+            this.ticks = ticks;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getOpenCents() {
+            return openCents;
+        }
+
+        public long getHighCents() {
+            return highCents;
+        }
+
+        public long getLowCents() {
+            return lowCents;
+        }
+
+        public long getCloseCents() {
+            return closeCents;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+    }
+
+    // Appends a tick; returns false if it is older than the ticker's last recorded tick
+    public boolean record(String ticker, long timeMillis, long priceCents) {
+        Series target = series.computeIfAbsent(normalize(ticker), (key) -> new Series());
+        if (!target.append(timeMillis, priceCents)) {
+            pointsRejected.increment();
+            return false;
+        }
+        pointsRecorded.increment();
+        return true;
+    }
+
+    // Visits ticks with fromMillis <= time < toMillis; returns the number visited
+    public long scan(String ticker, long fromMillis, long toMillis, TickVisitor visitor) {
+        Series target = series.get(normalize(ticker));
+        if (target == null || fromMillis >= toMillis) {
+            return 0L;
+        }
+
+        long visited = 0L;
+        for (Block block : target.blocksOverlapping(fromMillis, toMillis)) {
+            BlockReader reader = new BlockReader(block);
+            while (reader.next()) {
+                if (reader.timeMillis >= toMillis) {
+                    break;
+                }
+                if (reader.timeMillis >= fromMillis) {
+                    visitor.visit(reader.timeMillis, reader.priceCents);
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    }
+
+    // Downsamples [fromMillis, toMillis) into bars aligned to multiples of intervalMillis; empty bars are omitted
+    public List<Bar> ohlc(String ticker, long fromMillis, long toMillis, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalMillis);
+        }
+        List<Bar> bars = new ArrayList<>();
+        Series target = series.get(normalize(ticker));
+        if (target == null || fromMillis >= toMillis) {
+            return bars;
+        }
+
+        BarBuilder builder = new BarBuilder(bars, intervalMillis);
+        for (Block block : target.blocksOverlapping(fromMillis, toMillis)) {
+            boolean inside = block.firstTime >= fromMillis && block.lastTime < toMillis;
+            if (inside && builder.bucketOf(block.firstTime) == builder.bucketOf(block.lastTime)) {
+                // The whole block lands in one bar; its header already holds the aggregate
+                builder.merge(block.firstTime, block.firstPrice, block.maxPrice, block.minPrice,
+                        block.lastPrice, block.count);
+                continue;
+            }
+            BlockReader reader = new BlockReader(block);
+            while (reader.next()) {
+                if (reader.timeMillis >= toMillis) {
+                    break;
+                }
+                if (reader.timeMillis >= fromMillis) {
+                    builder.merge(reader.timeMillis, reader.priceCents, reader.priceCents, reader.priceCents,
+                            reader.priceCents, 1);
+                }
+            }
+        }
+        builder.finish();
+        return bars;
+    }
+
+    // Latest recorded price, or -1 if the ticker has no history
+    public long getLatestPriceCents(String ticker) {
+        Series target = series.get(normalize(ticker));
+        return target == null ? -1L : target.latestPrice();
+    }
+
+    public int getTickerCount() {
+        return series.size();
+    }
+
+    public long getPointsRecorded() {
+        return pointsRecorded.sum();
+    }
+
+    public long getPointsRejected() {
+        return pointsRejected.sum();
+    }
+
+    // Bytes held by the compressed blocks, excluding per-object overhead
+    public long getCompressedBytes() {
+        long bytes = 0L;
+        for (Series target : series.values()) {
+            bytes += target.compressedBytes();
+        }
+        return bytes;
+    }
+
+    private static String normalize(String ticker) {
+        return ticker.trim().toUpperCase();
+    }
+
+    private static class BarBuilder {
+        private final List<Bar> bars;
+        private final long interval;
+        private long bucket = Long.MIN_VALUE;
+        private long open;
+        private long high;
+        private long low;
+        private long close;
+        private long ticks;
+
+        BarBuilder(List<Bar> bars, long interval) {
+            this.bars = bars;
+            this.interval = interval;
+        }
+
+        long bucketOf(long timeMillis) {
+            return Math.floorDiv(timeMillis, interval);
+        }
+
+        // Points arrive in time order, so a new bucket closes the previous bar
+        void merge(long timeMillis, long first, long max, long min, long last, long count) {
+            long target = bucketOf(timeMillis);
+            if (target != bucket) {
+                finish();
+                bucket = target;
+                open = first;
+                high = max;
+                low = min;
+                ticks = 0L;
+            } else {
+                high = Math.max(high, max);
+                low = Math.min(low, min);
+            }
+            close = last;
+            ticks += count;
+        }
+
+        void finish() {
+            if (ticks > 0) {
+                bars.add(new Bar(bucket * interval, open, high, low, close, ticks));
+                ticks = 0L;
+            }
+        }
+    }
+
+    // Sealed blocks never change; the active block is copied under the series lock before reading
+    private static class Series {
+        private final List<Block> sealed = new ArrayList<>();
+        private Block active;
+
+        synchronized boolean append(long timeMillis, long priceCents) {
+            if (active != null && timeMillis < active.lastTime) {
+                return false;
+            }
+            if (active == null) {
+                active = new Block(timeMillis, priceCents);
+                return true;
+            }
+            if (active.count == BLOCK_POINTS) {
+                active.trim();
+                sealed.add(active);
+                active = new Block(timeMillis, priceCents);
+                return true;
+            }
+            active.append(timeMillis, priceCents);
+            return true;
+        }
+
+        synchronized List<Block> blocksOverlapping(long fromMillis, long toMillis) {
+            List<Block> blocks = new ArrayList<>();
+            // First sealed block whose last tick is at or after fromMillis
+            int low = 0;
+            int high = sealed.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (sealed.get(middle).lastTime < fromMillis) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int i = low; i < sealed.size() && sealed.get(i).firstTime < toMillis; i++) {
+                blocks.add(sealed.get(i));
+            }
+            if (active != null && active.lastTime >= fromMillis && active.firstTime < toMillis) {
+                blocks.add(active.copy());
+            }
+            return blocks;
+        }
+
+        synchronized long latestPrice() {
+            return active == null ? -1L : active.lastPrice;
+        }
+
+        synchronized long compressedBytes() {
+            long bytes = active == null ? 0L : active.words.length * 8L;
+            for (Block block : sealed) {
+                bytes += block.words.length * 8L;
+            }
+            return bytes;
+        }
+    }
+
+    // The first point lives in the header; later points are bit-packed into words, most significant bit first
+    private static class Block {
+        private final long firstTime;
+        private final long firstPrice;
+        private long lastTime;
+        private long lastPrice;
+        private long minPrice;
+        private long maxPrice;
+        private int count;
+
+        private long[] words;
+        private long bitPosition;
+        private long lastDelta;
+        private int leadingZeros = Integer.MAX_VALUE;
+        private int trailingZeros;
+
+        Block(long firstTime, long firstPrice) {
+            this.firstTime = firstTime;
+            this.firstPrice = firstPrice;
+            this.lastTime = firstTime;
+            this.lastPrice = firstPrice;
+            this.minPrice = firstPrice;
+            this.maxPrice = firstPrice;
+            this.count = 1;
+            this.words = new long[INITIAL_BLOCK_WORDS];
+        }
+
+        private Block(Block source) {
+            this.firstTime = source.firstTime;
+            this.firstPrice = source.firstPrice;
+            this.lastTime = source.lastTime;
+            this.lastPrice = source.lastPrice;
+            this.minPrice = source.minPrice;
+            this.maxPrice = source.maxPrice;
+            this.count = source.count;
+            this.words = Arrays.copyOf(source.words, (int) ((source.bitPosition + 63) >>> 6));
+            this.bitPosition = source.bitPosition;
+        }
+
+        Block copy() {
+            return new Block(this);
+        }
+
+        void trim() {
+            words = Arrays.copyOf(words, (int) ((bitPosition + 63) >>> 6));
+        }
+
+        void append(long timeMillis, long priceCents) {
+            long delta = timeMillis - lastTime;
+            long deltaOfDelta = delta - lastDelta;
+            if (deltaOfDelta == 0) {
+                writeBits(0b0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                writeBits(0b10, 2);
+                writeBits(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                writeBits(0b110, 3);
+                writeBits(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                writeBits(0b1110, 4);
+                writeBits(deltaOfDelta + 2047, 12);
+            } else {
+                writeBits(0b1111, 4);
+                writeBits(deltaOfDelta, 64);
+            }
+
+            long xor = priceCents ^ lastPrice;
+            if (xor == 0) {
+                writeBits(0b0, 1);
+            } else {
+                int leading = Long.numberOfLeadingZeros(xor);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (leading >= leadingZeros && trailing >= trailingZeros) {
+                    // Fits the previous window of meaningful bits
+                    writeBits(0b10, 2);
+                    writeBits(xor >>> trailingZeros, 64 - leadingZeros - trailingZeros);
+                } else {
+                    int meaningful = 64 - leading - trailing;
+                    writeBits(0b11, 2);
+                    writeBits(leading, 6);
+                    writeBits(meaningful - 1, 6);
+                    writeBits(xor >>> trailing, meaningful);
+                    leadingZeros = leading;
+                    trailingZeros = trailing;
+                }
+            }
+
+            lastDelta = delta;
+            lastTime = timeMillis;
+            lastPrice = priceCents;
+            minPrice = Math.min(minPrice, priceCents);
+            maxPrice = Math.max(maxPrice, priceCents);
+            count++;
+        }
+
+        // Writes the low bitCount bits of value
+        private void writeBits(long value, int bitCount) {
+            int word = (int) (bitPosition >>> 6);
+            if (word + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            int offset = (int) (bitPosition & 63);
+            long bits = bitCount == 64 ? value : value & ((1L << bitCount) - 1);
+            int free = 64 - offset;
+            if (bitCount <= free) {
+                words[word] |= bits << (free - bitCount);
+            } else {
+                words[word] |= bits >>> (bitCount - free);
+                words[word + 1] |= bits << (64 - (bitCount - free));
+            }
+            bitPosition += bitCount;
+        }
+    }
+
+    private static class BlockReader {
+        private final Block block;
+        private long bitPosition;
+        private int index;
+        private long delta;
+        private int leadingZeros;
+        private int trailingZeros;
+        long timeMillis;
+        long priceCents;
+
+        BlockReader(Block block) {
+            this.block = block;
+        }
+
+        boolean next() {
+            if (index == block.count) {
+                return false;
+            }
+            if (index++ == 0) {
+                timeMillis = block.firstTime;
+                priceCents = block.firstPrice;
+                return true;
+            }
+
+            long deltaOfDelta;
+            if (readBits(1) == 0) {
+                deltaOfDelta = 0;
+            } else if (readBits(1) == 0) {
+                deltaOfDelta = readBits(7) - 63;
+            } else if (readBits(1) == 0) {
+                deltaOfDelta = readBits(9) - 255;
+            } else if (readBits(1) == 0) {
+                deltaOfDelta = readBits(12) - 2047;
+            } else {
+                deltaOfDelta = readBits(64);
+            }
+            delta += deltaOfDelta;
+            timeMillis += delta;
+
+            if (readBits(1) == 1) {
+                if (readBits(1) == 1) {
+                    leadingZeros = (int) readBits(6);
+                    int meaningful = (int) readBits(6) + 1;
+                    trailingZeros = 64 - leadingZeros - meaningful;
+                }
+                priceCents ^= readBits(64 - leadingZeros - trailingZeros) << trailingZeros;
+            }
+            return true;
+        }
+
+        private long readBits(int bitCount) {
+            long[] words = block.words;
+            int word = (int) (bitPosition >>> 6);
+            int offset = (int) (bitPosition & 63);
+            int available = 64 - offset;
+            long value;
+            if (bitCount <= available) {
+                value = words[word] << offset >>> (64 - bitCount);
+            } else {
+                int rest = bitCount - available;
+                value = (words[word] << offset >>> offset << rest) | (words[word + 1] >>> (64 - rest));
+            }
+            bitPosition += bitCount;
+            return value;
+        }
+    }
+}
@@ -1,66 +1,109 @@
 package myLib;
 
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
 public class SavingsAccount extends Account {
-    private Double interestRate;
-    private Double minimumBalance;
+    private double interestRate;
+    private long minimumBalanceCents;
     
-    private static final double DEFAULT_MINIMUM_BALANCE = 100.0;
-    private static final double LOW_BALANCE_FEE = 5.0;
+    private static final long DEFAULT_MINIMUM_BALANCE_CENTS = 10000L;
+    private static final long LOW_BALANCE_FEE_CENTS = 500L;
     private static final double PERCENTAGE_MULTIPLIER = 100.0;
 
-    public SavingsAccount(String accountNumber, String userId, Double interestRate, String passwordHash) {
+    public SavingsAccount(String accountNumber, String userId, double interestRate, String passwordHash) {
         super(userId, accountNumber, passwordHash);
         this.interestRate = interestRate;
-        this.minimumBalance = DEFAULT_MINIMUM_BALANCE;
+        this.minimumBalanceCents = DEFAULT_MINIMUM_BALANCE_CENTS;
+    }
+
+    public double calculateInterest() {
+        return Money.toDouble(calculateInterestCents());
     }
 
-    public Double calculateInterest() {
-        return this.balance * (this.interestRate / PERCENTAGE_MULTIPLIER);
+    public long calculateInterestCents() {
+        return Money.multiply(this.balanceCents, this.interestRate / PERCENTAGE_MULTIPLIER, RoundingMode.HALF_EVEN);
     }
 
     public void applyInterest(String transactionId) {
-        Double interest = calculateInterest();
-        if (interest > 0) {
-            this.balance += interest;
-            Transaction transaction = new Transaction.Builder(
+        long interestCents;
+        lock.lock();
+        try {
+            interestCents = calculateInterestCents();
+            if (interestCents <= 0) {
+                return;
+            }
+            post(interestCents, Transaction.Builder.ofCents(
                     transactionId,
                     this.accountId,
-                    interest,
+                    interestCents,
                     TransactionType.INTEREST,
                     "Interest applied to savings account"
-            ).build();
-            addTransaction(transaction);
-            System.out.println("Interest applied: $" + interest);
+            ).build());
+        } finally {
+            lock.unlock();
+        }
+        commitPostings();
+        System.out.println("Interest applied: $" + Money.toDouble(interestCents));
+    }
+
+    // The annual rate accrued for a single day of the business year
+    @Override
+    protected long dailyInterestCents(LocalDate businessDate) {
+        double dailyRate = this.interestRate / PERCENTAGE_MULTIPLIER / businessDate.lengthOfYear();
+        return Money.multiply(this.balanceCents, dailyRate, RoundingMode.HALF_EVEN);
+    }
+
+    // Charged once a month while below the minimum, and never more than the balance left
+    @Override
+    protected long periodicFeeCents(LocalDate businessDate) {
+        if (this.balanceCents >= this.minimumBalanceCents) {
+            return 0L;
         }
+        if (this.lastFeeDay != Long.MIN_VALUE
+                && YearMonth.from(LocalDate.ofEpochDay(this.lastFeeDay)).equals(YearMonth.from(businessDate))) {
+            return 0L;
+        }
+        return Math.min(LOW_BALANCE_FEE_CENTS, Math.max(this.balanceCents, 0L));
+    }
+
+    @Override
+    protected String feeDescription() {
+        return "Low balance fee";
     }
 
     @Override
-    public double calculateFees() {
-        if (this.balance < this.minimumBalance) {
-            return LOW_BALANCE_FEE;
+    public long calculateFeesCents() {
+        if (this.balanceCents < this.minimumBalanceCents) {
+            return LOW_BALANCE_FEE_CENTS;
         }
-        return 0.0;
+        return 0L;
     }
 
     @Override
     public String getAccountSummary() {
         return String.format("Savings Account [ID: %s] - Balance: $%.2f, Interest Rate: %.2f%%, Minimum Balance: $%.2f, Fees: $%.2f",
-                this.accountId, this.balance, this.interestRate, this.minimumBalance, calculateFees());
+                this.accountId, getBalance(), this.interestRate, getMinimumBalance(), calculateFees());
     }
 
-    public Double getInterestRate() {
+    public double getInterestRate() {
         return interestRate;
     }
 
-    public void setInterestRate(Double interestRate) {
+    public void setInterestRate(double interestRate) {
         this.interestRate = interestRate;
     }
 
-    public Double getMinimumBalance() {
-        return minimumBalance;
+    public double getMinimumBalance() {
+        return Money.toDouble(minimumBalanceCents);
+    }
+
+    public long getMinimumBalanceCents() {
+        return minimumBalanceCents;
     }
 
-    public void setMinimumBalance(Double minimumBalance) {
-        this.minimumBalance = minimumBalance;
+    public void setMinimumBalance(double minimumBalance) {
+        this.minimumBalanceCents = Money.toCents(minimumBalance);
     }
 }
@@ -0,0 +1,195 @@
+package myLib;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Issues signed session tokens after one password check so later requests are verified with an
+// HMAC instead of the KDF. A token is "payload.signature", both base64url, where the payload is
+// "sessionId|issuedAtMillis|expiresAtMillis|userId". Nothing is stored per session except revocations.
+public class SessionManager {
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long DEFAULT_MAX_LIFETIME_MILLIS = TimeUnit.HOURS.toMillis(8);
+    private static final int PURGE_THRESHOLD = 1024;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+    private final SecureRandom secureRandom;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+
+    // Revoked session id -> the latest time a token for it could still be valid
+    private final Map<Long, Long> revoked;
+
+    // The verified contents of a token
+    public static class Session {
+        private final long sessionId;
+        private final String userId;
+        private final long issuedAtMillis;
+        private final long expiresAtMillis;
+
+        Session(long sessionId, String userId, long issuedAtMillis, long expiresAtMillis) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.issuedAtMillis = issuedAtMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public long getSessionId() {
+            return sessionId;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public long getIssuedAtMillis() {
+            return issuedAtMillis;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+
+    public SessionManager() {
+        this(newKey(), DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_MAX_LIFETIME_MILLIS);
+    }
+
+    // Nodes sharing a key accept each other's tokens
+    public SessionManager(byte[] key, long idleTimeoutMillis, long maxLifetimeMillis) {
+        if (key.length < KEY_LENGTH) {
+            throw new IllegalArgumentException("Session key must be at least " + KEY_LENGTH + " bytes");
+        }
+        this.key = new SecretKeySpec(key.clone(), MAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.secureRandom = new SecureRandom();
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.revoked = new ConcurrentHashMap<>();
+    }
+
+    private static byte[] newKey() {
+        byte[] key = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new RuntimeException("Unable to initialise " + MAC_ALGORITHM, e);
+        }
+    }
+
+    // Call only after the user's password has been verified
+    public String createSession(String userId) {
+        long now = System.currentTimeMillis();
+        return sign(secureRandom.nextLong(), userId, now, now + idleTimeoutMillis);
+    }
+
+    // Returns the session for a genuine, unexpired and unrevoked token, or null
+    public Session validate(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(signature, macs.get().doFinal(payload))) {
+            return null;
+        }
+
+        // The user id comes last so it may itself contain '|'
+        String[] fields = new String(payload, StandardCharsets.UTF_8).split("\\|", 4);
+        if (fields.length != 4) {
+            return null;
+        }
+        Session session = new Session(Long.parseLong(fields[0]), fields[3],
+                Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+
+        if (System.currentTimeMillis() >= session.getExpiresAtMillis() || revoked.containsKey(session.getSessionId())) {
+            return null;
+        }
+        return session;
+    }
+
+    // Sliding expiry: once half the idle timeout has passed, returns a token for the same session
+    // with a fresh expiry, capped at the maximum lifetime. Returns the token unchanged if it is
+    // still fresh and null if it is no longer valid.
+    public String refresh(String token) {
+        Session session = validate(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.getExpiresAtMillis() - now > idleTimeoutMillis / 2) {
+            return token;
+        }
+        long expiresAt = Math.min(now + idleTimeoutMillis, session.getIssuedAtMillis() + maxLifetimeMillis);
+        if (expiresAt <= session.getExpiresAtMillis()) {
+            return token;
+        }
+        return sign(session.getSessionId(), session.getUserId(), session.getIssuedAtMillis(), expiresAt);
+    }
+
+    // Invalidates every token of the session, including refreshed ones
+    public void revoke(String token) {
+        Session session = validate(token);
+        if (session == null) {
+            return;
+        }
+        revoked.put(session.getSessionId(), session.getIssuedAtMillis() + maxLifetimeMillis);
+        if (revoked.size() > PURGE_THRESHOLD) {
+            purgeRevocations();
+        }
+    }
+
+    // Revocations are only needed until the session would have reached its maximum lifetime
+    public void purgeRevocations() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Long, Long>> entries = revoked.entrySet().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().getValue() <= now) {
+                entries.remove();
+            }
+        }
+    }
+
+    public int getRevokedCount() {
+        return revoked.size();
+    }
+
+    private String sign(long sessionId, String userId, long issuedAtMillis, long expiresAtMillis) {
+        byte[] payload = (sessionId + "|" + issuedAtMillis + "|" + expiresAtMillis + "|" + userId)
+                .getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(macs.get().doFinal(payload));
+    }
+}
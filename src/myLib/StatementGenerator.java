@@ -0,0 +1,262 @@
+package myLib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+// Renders monthly statements straight to files, one reusable buffer set per worker thread
+public class StatementGenerator {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LINE_CAPACITY = 256;
+    private static final String RULE = "--------------------------------------------------------------------------------\n";
+
+    private final Path outputDirectory;
+    private final int threads;
+    private final ThreadLocal<Output> outputs;
+
+    // Summary of one generate() run
+    public static class Report {
+        private final int statements;
+        private final long transactions;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        Report(int statements, long transactions, long bytes, long elapsedNanos) {
+            this.statements = statements;
+            this.transactions = transactions;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public long getTransactions() {
+            return transactions;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getStatementsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : statements * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+
+    // Per-thread line builder, encoder and direct byte buffer, reused for every statement
+    private static class Output {
+        private final StringBuilder line = new StringBuilder(LINE_CAPACITY);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private FileChannel channel;
+        private long written;
+
+        void open(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            bytes.clear();
+            written = 0L;
+        }
+
+        // Encodes the pending line into the byte buffer, draining to the channel whenever it fills
+        void flushLine() throws IOException {
+            CharBuffer chars = CharBuffer.wrap(line);
+            encoder.reset();
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, true);
+                if (result.isOverflow()) {
+                    drain();
+                } else {
+                    break;
+                }
+            }
+            line.setLength(0);
+        }
+
+        void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                written += channel.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        long close() throws IOException {
+            drain();
+            channel.close();
+            channel = null;
+            return written;
+        }
+    }
+
+    public StatementGenerator(Path outputDirectory, int threads) {
+        this.outputDirectory = outputDirectory;
+        this.threads = threads;
+        this.outputs = ThreadLocal.withInitial(Output::new);
+    }
+
+    // Writes one statement per account for the period, in parallel
+    public Report generate(Collection<Account> accounts, YearMonth period) {
+        long start = System.nanoTime();
+        LongAdder transactionCount = new LongAdder();
+        LongAdder byteCount = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            Files.createDirectories(outputDirectory.resolve(period.toString()));
+            List<Future<?>> futures = new ArrayList<>(accounts.size());
+            for (Account account : accounts) {
+                futures.add(executor.submit(() -> {
+                    long[] counts = write(account, period);
+                    transactionCount.add(counts[0]);
+                    byteCount.add(counts[1]);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (IOException | ExecutionException e) {
+            throw new RuntimeException("Unable to generate statements for " + period, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Statement generation interrupted", e);
+        } finally {
+            executor.shutdown();
+        }
+
+        return new Report(accounts.size(), transactionCount.sum(), byteCount.sum(), System.nanoTime() - start);
+    }
+
+    public Path generate(Account account, YearMonth period) {
+        try {
+            Files.createDirectories(outputDirectory.resolve(period.toString()));
+            write(account, period);
+            return statementPath(account, period);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to generate statement for " + account.getAccountId(), e);
+        }
+    }
+
+    // Returns {transactions written, bytes written}
+    private long[] write(Account account, YearMonth period) throws IOException {
+        Output output = outputs.get();
+        StringBuilder line = output.line;
+        String accountId = account.getAccountId();
+        LocalDate firstDay = period.atDay(1);
+        LocalDate nextPeriodStart = period.plusMonths(1).atDay(1);
+
+        // The frozen journal is read without holding the account lock
+        TransactionJournal journal = account.getJournalSnapshot();
+        AccountAggregates aggregates = account.getAggregates();
+        int from = journal.lowerBound(TransactionJournal.toEpochMillis(firstDay.atStartOfDay()));
+        int to = journal.lowerBound(TransactionJournal.toEpochMillis(nextPeriodStart.atStartOfDay()));
+        long balanceCents = aggregates.getClosingBalanceCents(firstDay.minusDays(1));
+
+        long bytes;
+        output.open(statementPath(account, period));
+        try {
+            line.append("MCASH BANKING - MONTHLY STATEMENT\n");
+            output.flushLine();
+            line.append("Account: ").append(accountId).append("    Owner: ").append(account.getUserId()).append('\n');
+            output.flushLine();
+            line.append("Period: ").append(period).append('\n');
+            output.flushLine();
+            line.append("Opening balance: $");
+            Money.appendTo(line, balanceCents).append('\n');
+            output.flushLine();
+            line.append(RULE).append("Date                 Type                 Amount        Balance  Description\n").append(RULE);
+            output.flushLine();
+
+            for (int i = from; i < to; i++) {
+                long signedCents = journal.getSignedCents(i, accountId);
+                balanceCents += signedCents;
+
+                LocalDateTime timestamp = TransactionJournal.toLocalDateTime(journal.getTimestampMillis(i));
+                line.append(timestamp.toLocalDate()).append(' ');
+                appendPadded(line, timestamp.getHour());
+                line.append(':');
+                appendPadded(line, timestamp.getMinute());
+                line.append("     ");
+                appendColumn(line, journal.getType(i).name(), 16);
+                appendAmountColumn(line, signedCents);
+                appendAmountColumn(line, balanceCents);
+                line.append("  ").append(journal.getDescription(i))
+                        .append(" [").append(journal.getTransactionId(i)).append("]\n");
+                output.flushLine();
+            }
+
+            line.append(RULE);
+            output.flushLine();
+            appendTotal(line, "Deposits", aggregates.getMonthlyTotalCents(TransactionType.DEPOSIT, period));
+            appendTotal(line, "Withdrawals", aggregates.getMonthlyTotalCents(TransactionType.WITHDRAWAL, period));
+            appendTotal(line, "Transfers in", aggregates.getMonthlyCreditsCents(TransactionType.TRANSFER, period));
+            appendTotal(line, "Transfers out", aggregates.getMonthlyDebitsCents(TransactionType.TRANSFER, period));
+            appendTotal(line, "Interest", aggregates.getMonthlyTotalCents(TransactionType.INTEREST, period));
+            appendTotal(line, "Fees", aggregates.getMonthlyTotalCents(TransactionType.FEE, period));
+            appendTotal(line, "Average daily balance", aggregates.getAverageDailyBalanceCents(period));
+            appendTotal(line, "Closing balance", balanceCents);
+            output.flushLine();
+        } finally {
+            bytes = output.close();
+        }
+        return new long[]{to - from, bytes};
+    }
+
+    private Path statementPath(Account account, YearMonth period) {
+        return outputDirectory.resolve(period.toString()).resolve(account.getAccountId() + ".txt");
+    }
+
+    private static void appendPadded(StringBuilder line, int value) {
+        if (value < 10) {
+            line.append('0');
+        }
+        line.append(value);
+    }
+
+    private static void appendColumn(StringBuilder line, String value, int width) {
+        line.append(value);
+        for (int i = value.length(); i < width; i++) {
+            line.append(' ');
+        }
+    }
+
+    // Right-aligns an amount in a 15 character column
+    private static void appendAmountColumn(StringBuilder line, long cents) {
+        int start = line.length();
+        Money.appendTo(line, cents);
+        int padding = 15 - (line.length() - start);
+        for (int i = 0; i < padding; i++) {
+            line.insert(start, ' ');
+        }
+    }
+
+    private static void appendTotal(StringBuilder line, String label, long cents) {
+        line.append(label).append(": $");
+        Money.appendTo(line, cents).append('\n');
+    }
+}
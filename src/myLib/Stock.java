@@ -1,11 +1,12 @@
 package myLib;
 
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.time.LocalDateTime;
 
 public class Stock extends Investment {
     private final String ticker;
-    private Double dividendYield;
+    private double dividendYield;
     
     private static final String DECIMAL_FORMAT = "#,##0.00";
     private static final double PERCENTAGE_MULTIPLIER = 100.0;
@@ -19,7 +20,7 @@ public class Stock extends Investment {
             LocalDateTime purchaseDate,
             String userId,
             String ticker,
-            Double dividendYield
+            double dividendYield
     ) {
         super(
                 investmentId,
@@ -34,13 +35,21 @@ public class Stock extends Investment {
         this.dividendYield = dividendYield;
     }
 
-    public void setDividendYield(Double dividendYield) {
+    public String getTicker() {
+        return ticker;
+    }
+
+    public double getDividendYield() {
+        return dividendYield;
+    }
+
+    public void setDividendYield(double dividendYield) {
         this.dividendYield = dividendYield;
     }
 
     @Override
-    public double calculateDividends() {
-        return currentPrice * dividendYield * quantity;
+    public long calculateDividendsCents() {
+        return Money.multiply(getCurrentValueCents(), dividendYield, RoundingMode.HALF_EVEN);
     }
 
     @Override
@@ -51,12 +60,15 @@ public class Stock extends Investment {
         System.out.println("\033[1;33mStock:\033[0m " + name + " (" + ticker + ")");
         System.out.println("\033[1;33mInvestment ID:\033[0m " + investmentId);
         System.out.println("\033[1;33mQuantity:\033[0m " + quantity + " shares");
-        System.out.println("\033[1;33mAvg Purchase Price:\033[0m $" + df.format(purchasePrice));
-        System.out.println("\033[1;33mCurrent Price:\033[0m $" + df.format(currentPrice));
+        System.out.println("\033[1;33mAvg Purchase Price:\033[0m $" + df.format(getPurchasePrice()));
+        System.out.println("\033[1;33mCurrent Price:\033[0m $" + df.format(getCurrentPrice()));
         System.out.println("\033[1;33mTotal Value:\033[0m $" + df.format(getCurrentValue()));
         System.out.println("\033[1;33mTotal Gain/Loss:\033[0m " +
                 (this.getGainLoss() >= 0 ? "+" : "") + "$" + df.format(this.getGainLoss()) +
-                " (" + df.format((currentPrice/purchasePrice - 1)*PERCENTAGE_MULTIPLIER) + "%)");
+                " (" + df.format(((double) currentPriceCents / purchasePriceCents - 1)*PERCENTAGE_MULTIPLIER) + "%)");
+        System.out.println("\033[1;33mRealized Gain/Loss:\033[0m " +
+                (this.getRealizedGain() >= 0 ? "+" : "") + "$" + df.format(this.getRealizedGain()) +
+                " (" + getOpenLots().size() + " open lots)");
         System.out.println("\033[1;33mDividend Yield:\033[0m " + df.format(dividendYield*PERCENTAGE_MULTIPLIER) + "%");
         System.out.println("\033[1;33mAnnual Dividends:\033[0m $" + df.format(this.calculateDividends()));
     }
@@ -0,0 +1,7 @@
+package myLib;
+
+public enum SyncPolicy {
+    PER_OP,
+    BATCHED,
+    INTERVAL
+}
@@ -0,0 +1,46 @@
+package myLib;
+
+import java.time.LocalDateTime;
+
+// One purchase of a holding; its quantity shrinks as sales relieve it and reaches zero when closed
+public class TaxLot {
+    private final long lotId;
+    private final LocalDateTime acquired;
+    private final long unitCostCents;
+    private int quantity;
+
+    TaxLot(long lotId, LocalDateTime acquired, long unitCostCents, int quantity) {
+        this.lotId = lotId;
+        this.acquired = acquired;
+        this.unitCostCents = unitCostCents;
+        this.quantity = quantity;
+    }
+
+    public long getLotId() {
+        return lotId;
+    }
+
+    public LocalDateTime getAcquired() {
+        return acquired;
+    }
+
+    public long getUnitCostCents() {
+        return unitCostCents;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getCostBasisCents() {
+        return unitCostCents * quantity;
+    }
+
+    public boolean isClosed() {
+        return quantity == 0;
+    }
+
+    void relieve(int relievedQuantity) {
+        this.quantity -= relievedQuantity;
+    }
+}
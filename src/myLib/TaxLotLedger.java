@@ -0,0 +1,218 @@
+package myLib;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Open lots of one holding, indexed for every relief method: a deque in acquisition order for FIFO
+// and LIFO, a tree by descending unit cost for HIGHEST_COST and a map by id for SPECIFIC_LOT.
+// Relieving a lot costs O(log n) for the tree; lots closed out of deque order are skipped lazily
+// and purged once they make up half the deque. Not thread-safe: the owning Investment guards it.
+public class TaxLotLedger {
+    private static final Comparator<TaxLot> HIGHEST_COST_FIRST =
+            Comparator.comparingLong(TaxLot::getUnitCostCents).reversed().thenComparingLong(TaxLot::getLotId);
+
+    private final ArrayDeque<TaxLot> byAcquisition = new ArrayDeque<>();
+    private final TreeSet<TaxLot> byCost = new TreeSet<>(HIGHEST_COST_FIRST);
+    private final Map<Long, TaxLot> byId = new HashMap<>();
+    private int closedInDeque;
+
+    private long nextLotId = 1L;
+    private long openQuantity;
+    private long openCostCents;
+    private long realizedGainCents;
+
+    public static class Sale {
+        private final int quantity;
+        private final long costBasisCents;
+        private final long proceedsCents;
+        private final int lotsRelieved;
+
+        Sale(int quantity, long costBasisCents, long proceedsCents, int lotsRelieved) {
+            this.quantity = quantity;
+            this.costBasisCents = costBasisCents;
+            this.proceedsCents = proceedsCents;
+            this.lotsRelieved = lotsRelieved;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public long getCostBasisCents() {
+            return costBasisCents;
+        }
+
+        public long getProceedsCents() {
+            return proceedsCents;
+        }
+
+        public long getRealizedGainCents() {
+            return proceedsCents - costBasisCents;
+        }
+
+        public int getLotsRelieved() {
+            return lotsRelieved;
+        }
+    }
+
+    // Opens a lot and returns its id
+    public long buy(int quantity, long unitCostCents, LocalDateTime acquired) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Lot quantity must be positive: " + quantity);
+        }
+        TaxLot lot = new TaxLot(nextLotId++, acquired, unitCostCents, quantity);
+        open(lot);
+        return lot.getLotId();
+    }
+
+    // Relieves lots in the order the method dictates; SPECIFIC_LOT needs sellLot instead
+    public Sale sell(int quantity, long priceCents, LotReliefMethod method) {
+        if (method == LotReliefMethod.SPECIFIC_LOT) {
+            throw new IllegalArgumentException("Specific-lot sales need a lot id");
+        }
+        checkQuantity(quantity, openQuantity);
+
+        int remaining = quantity;
+        long costBasis = 0L;
+        int lotsRelieved = 0;
+        while (remaining > 0) {
+            TaxLot lot = nextLot(method);
+            int relieved = Math.min(remaining, lot.getQuantity());
+            costBasis += relieve(lot, relieved);
+            remaining -= relieved;
+            lotsRelieved++;
+        }
+        return record(quantity, costBasis, priceCents, lotsRelieved);
+    }
+
+    public Sale sellLot(long lotId, int quantity, long priceCents) {
+        TaxLot lot = byId.get(lotId);
+        if (lot == null) {
+            throw new IllegalArgumentException("No open lot " + lotId);
+        }
+        checkQuantity(quantity, lot.getQuantity());
+        return record(quantity, relieve(lot, quantity), priceCents, 1);
+    }
+
+    private static void checkQuantity(int quantity, long available) {
+        if (quantity <= 0 || quantity > available) {
+            throw new IllegalArgumentException("Cannot sell " + quantity + " of " + available + " held");
+        }
+    }
+
+    private TaxLot nextLot(LotReliefMethod method) {
+        switch (method) {
+            case FIFO:
+                while (byAcquisition.peekFirst().isClosed()) {
+                    byAcquisition.pollFirst();
+                    closedInDeque--;
+                }
+                return byAcquisition.peekFirst();
+            case LIFO:
+                while (byAcquisition.peekLast().isClosed()) {
+                    byAcquisition.pollLast();
+                    closedInDeque--;
+                }
+                return byAcquisition.peekLast();
+            case HIGHEST_COST:
+                return byCost.first();
+            default:
+                throw new IllegalArgumentException("Unsupported relief method " + method);
+        }
+    }
+
+    // Returns the cost basis relieved
+    private long relieve(TaxLot lot, int quantity) {
+        long costBasis = lot.getUnitCostCents() * quantity;
+        lot.relieve(quantity);
+        openQuantity -= quantity;
+        openCostCents -= costBasis;
+        if (lot.isClosed()) {
+            byCost.remove(lot);
+            byId.remove(lot.getLotId());
+            if (byAcquisition.peekFirst() == lot) {
+                byAcquisition.pollFirst();
+            } else if (byAcquisition.peekLast() == lot) {
+                byAcquisition.pollLast();
+            } else if (++closedInDeque > byAcquisition.size() / 2) {
+                byAcquisition.removeIf(TaxLot::isClosed);
+                closedInDeque = 0;
+            }
+        }
+        return costBasis;
+    }
+
+    private Sale record(int quantity, long costBasis, long priceCents, int lotsRelieved) {
+        Sale sale = new Sale(quantity, costBasis, priceCents * quantity, lotsRelieved);
+        realizedGainCents += sale.getRealizedGainCents();
+        return sale;
+    }
+
+    private void open(TaxLot lot) {
+        byAcquisition.addLast(lot);
+        byCost.add(lot);
+        byId.put(lot.getLotId(), lot);
+        openQuantity += lot.getQuantity();
+        openCostCents += lot.getCostBasisCents();
+    }
+
+    // Reinstates lots read back from a snapshot, in acquisition order
+    void restore(long nextLotId, long realizedGainCents, List<TaxLot> lots) {
+        byAcquisition.clear();
+        byCost.clear();
+        byId.clear();
+        closedInDeque = 0;
+        openQuantity = 0L;
+        openCostCents = 0L;
+        for (TaxLot lot : lots) {
+            open(lot);
+        }
+        this.nextLotId = nextLotId;
+        this.realizedGainCents = realizedGainCents;
+    }
+
+    // Open lots in acquisition order
+    public List<TaxLot> getOpenLots() {
+        List<TaxLot> lots = new ArrayList<>(byId.size());
+        for (TaxLot lot : byAcquisition) {
+            if (!lot.isClosed()) {
+                lots.add(lot);
+            }
+        }
+        return lots;
+    }
+
+    public TaxLot getLot(long lotId) {
+        return byId.get(lotId);
+    }
+
+    public int getOpenLotCount() {
+        return byId.size();
+    }
+
+    public long getOpenQuantity() {
+        return openQuantity;
+    }
+
+    public long getOpenCostCents() {
+        return openCostCents;
+    }
+
+    public long getRealizedGainCents() {
+        return realizedGainCents;
+    }
+
+    public long getUnrealizedGainCents(long priceCents) {
+        return priceCents * openQuantity - openCostCents;
+    }
+
+    long getNextLotId() {
+        return nextLotId;
+    }
+}
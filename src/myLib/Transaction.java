@@ -7,7 +7,7 @@ public class Transaction {
     private String transactionId;
     private String accountId1;
     private String accountId2;
-    private double amount;
+    private long amountCents;
     private TransactionType type;
     private String description;
     private LocalDateTime timestamp;
@@ -17,10 +17,10 @@ public class Transaction {
     public Transaction(Builder builder) {
         this.transactionId = builder.transactionId;
         this.accountId1 = builder.accountId1;
-        this.amount = builder.amount;
+        this.amountCents = builder.amountCents;
         this.type = builder.type;
         this.description = builder.description;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = builder.timestamp != null ? builder.timestamp : LocalDateTime.now();
 
         //Optional Fields
         this.investmentId = builder.investmentId;
@@ -31,18 +31,31 @@ public class Transaction {
     public static class Builder {
         private final String transactionId;
         private final String accountId1;
-        private final double amount;
+        private final long amountCents;
         private final TransactionType type;
         private final String description;
         private  String accountId2;
         private String investmentId;
+        private LocalDateTime timestamp;
 
         public Builder(String transactionId, String accountId1,
                        double amount, TransactionType type, String description) {
+            this(transactionId, accountId1, Money.toCents(amount), type, description);
+        }
+
+        // Amount already in cents; a named factory rather than an overload so an int literal
+        // such as 100 keeps meaning dollars
+        public static Builder ofCents(String transactionId, String accountId1,
+                                      long amountCents, TransactionType type, String description) {
+            return new Builder(transactionId, accountId1, amountCents, type, description);
+        }
+
+        private Builder(String transactionId, String accountId1,
+                        long amountCents, TransactionType type, String description) {
 
             this.transactionId = transactionId;
             this.accountId1 = accountId1;
-            this.amount = amount;
+            this.amountCents = amountCents;
             this.type = type;
             this.description = description;
         }
@@ -57,6 +70,12 @@ public class Transaction {
             return this;
         }
 
+        // Used when rebuilding a stored transaction with its original time
+        Builder timestamp(LocalDateTime timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
         public Transaction build() {
             return new Transaction(this);
         }
@@ -83,7 +102,11 @@ public class Transaction {
     }
 
     public double getAmount() {
-        return amount;
+        return Money.toDouble(amountCents);
+    }
+
+    public long getAmountCents() {
+        return amountCents;
     }
 
     public LocalDateTime getTimestamp() {
@@ -97,13 +120,13 @@ public class Transaction {
     public String getTransactionDetails() {
         if (investmentId != null) {
             return String.format("Investment Transaction [ID: %s] - Type: %s, %s $%.2f in investment %s for account %s at %s",
-                    transactionId, type, description, amount, investmentId, accountId1, timestamp);
+                    transactionId, type, description, getAmount(), investmentId, accountId1, timestamp);
         } else if (accountId2 != null) {
             return String.format("Inter-Account Transaction [ID: %s] - Type: %s, %s $%.2f from account %s to account %s at %s",
-                    transactionId, type, description, amount, accountId1, accountId2, timestamp);
+                    transactionId, type, description, getAmount(), accountId1, accountId2, timestamp);
         } else {
             return String.format("Unilateral Transaction [ID: %s] - Type: %s, %s $%.2f for account %s at %s",
-                    transactionId, type, description, amount, accountId1, timestamp);
+                    transactionId, type, description, getAmount(), accountId1, timestamp);
         }
     }
 }
@@ -0,0 +1,276 @@
+package myLib;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Struct-of-arrays transaction history; Transaction objects are only built on read
+public class TransactionJournal {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // Recorded times, exactly as given
+    private long[] timestamps;
+    // Running maximum of timestamps: non-decreasing, so range lookups can binary search even when
+    // a clock step produces an entry older than the one before it
+    private long[] orderKeys;
+    private long[] amounts;
+    private byte[] types;
+    private String[] transactionIds;
+    private String[] accountIds1;
+    private String[] accountIds2;
+    private String[] descriptions;
+    private String[] investmentIds;
+    private int size;
+    private int outOfOrder;
+    // Furthest any entry's time fell behind the running maximum before it
+    private long maxLagMillis;
+    private final boolean readOnly;
+
+    public TransactionJournal() {
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.orderKeys = new long[INITIAL_CAPACITY];
+        this.amounts = new long[INITIAL_CAPACITY];
+        this.types = new byte[INITIAL_CAPACITY];
+        this.transactionIds = new String[INITIAL_CAPACITY];
+        this.accountIds1 = new String[INITIAL_CAPACITY];
+        this.accountIds2 = new String[INITIAL_CAPACITY];
+        this.descriptions = new String[INITIAL_CAPACITY];
+        this.investmentIds = new String[INITIAL_CAPACITY];
+        this.size = 0;
+        this.readOnly = false;
+    }
+
+    // Shares the source arrays; growth copies into new arrays, so captured slots never change
+    private TransactionJournal(TransactionJournal source) {
+        this.timestamps = source.timestamps;
+        this.orderKeys = source.orderKeys;
+        this.amounts = source.amounts;
+        this.types = source.types;
+        this.transactionIds = source.transactionIds;
+        this.accountIds1 = source.accountIds1;
+        this.accountIds2 = source.accountIds2;
+        this.descriptions = source.descriptions;
+        this.investmentIds = source.investmentIds;
+        this.size = source.size;
+        this.outOfOrder = source.outOfOrder;
+        this.maxLagMillis = source.maxLagMillis;
+        this.readOnly = true;
+    }
+
+    // Not thread-safe: the owning account serialises appends with its lock
+    public void append(Transaction transaction) {
+        append(toEpochMillis(transaction.getTimestamp()), transaction.getAmountCents(), transaction.getType(),
+                transaction.getTransactionId(), transaction.getAccountId1(), transaction.getAccountId2(),
+                transaction.getDescription(), transaction.getInvestmentId().orElse(null));
+    }
+
+    void append(long timestampMillis, long amountCents, TransactionType type, String transactionId,
+                String accountId1, String accountId2, String description, String investmentId) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Journal snapshot is read-only");
+        }
+        if (size == timestamps.length) {
+            grow();
+        }
+
+        timestamps[size] = timestampMillis;
+        if (size > 0 && timestampMillis < orderKeys[size - 1]) {
+            orderKeys[size] = orderKeys[size - 1];
+            maxLagMillis = Math.max(maxLagMillis, orderKeys[size - 1] - timestampMillis);
+            outOfOrder++;
+        } else {
+            orderKeys[size] = timestampMillis;
+        }
+        amounts[size] = amountCents;
+        types[size] = (byte) type.ordinal();
+        transactionIds[size] = transactionId;
+        accountIds1[size] = intern(accountId1);
+        accountIds2[size] = intern(accountId2);
+        descriptions[size] = intern(description);
+        investmentIds[size] = investmentId;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        orderKeys = Arrays.copyOf(orderKeys, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        types = Arrays.copyOf(types, capacity);
+        transactionIds = Arrays.copyOf(transactionIds, capacity);
+        accountIds1 = Arrays.copyOf(accountIds1, capacity);
+        accountIds2 = Arrays.copyOf(accountIds2, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        investmentIds = Arrays.copyOf(investmentIds, capacity);
+    }
+
+    private static String intern(String value) {
+        return value == null ? null : value.intern();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTimestampMillis(int index) {
+        return timestamps[index];
+    }
+
+    // Entries recorded with a time earlier than an entry before them; their times are kept as given
+    public int getOutOfOrderCount() {
+        return outOfOrder;
+    }
+
+    public long getAmountCents(int index) {
+        return amounts[index];
+    }
+
+    public TransactionType getType(int index) {
+        return TYPES[types[index]];
+    }
+
+    public String getTransactionId(int index) {
+        return transactionIds[index];
+    }
+
+    public String getAccountId1(int index) {
+        return accountIds1[index];
+    }
+
+    public String getAccountId2(int index) {
+        return accountIds2[index];
+    }
+
+    public String getDescription(int index) {
+        return descriptions[index];
+    }
+
+    public String getInvestmentId(int index) {
+        return investmentIds[index];
+    }
+
+    // Effect of an entry on the balance of ownerAccountId
+    public long getSignedCents(int index, String ownerAccountId) {
+        long amountCents = amounts[index];
+        switch (TYPES[types[index]]) {
+            case WITHDRAWAL:
+            case FEE:
+            case INVESTMENT_PURCHASE:
+                return -amountCents;
+            case TRANSFER:
+                return ownerAccountId.equals(accountIds1[index]) ? -amountCents : amountCents;
+            default:
+                return amountCents;
+        }
+    }
+
+    public Transaction get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return Transaction.Builder.ofCents(
+                transactionIds[index],
+                accountIds1[index],
+                amounts[index],
+                TYPES[types[index]],
+                descriptions[index]
+        ).secondAccount(accountIds2[index])
+                .investmentId(investmentIds[index])
+                .timestamp(toLocalDateTime(timestamps[index]))
+                .build();
+    }
+
+    // First index at or after which every entry was posted no earlier than millis. Entries stay in
+    // posting order, so an out-of-order entry is found by the position it was posted at.
+    public int lowerBound(long millis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (orderKeys[mid] < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Cost is O(log n) plus the entries scanned for the page; only returned entries are materialised.
+    // The binary search only narrows the scan: every entry in it is checked against its recorded time.
+    public HistoryPage query(HistoryQuery query) {
+        long toMillis = query.getToMillis();
+        int low = lowerBound(query.getFromMillis());
+        // An out-of-order entry sits after entries up to maxLagMillis newer than itself
+        int high = lowerBound(toMillis > Long.MAX_VALUE - maxLagMillis ? Long.MAX_VALUE : toMillis + maxLagMillis);
+        int limit = query.getLimit();
+        int cursor = query.getCursor();
+        List<Transaction> page = new ArrayList<>(Math.min(limit, Math.max(high - low, 0)));
+
+        if (query.isNewestFirst()) {
+            int index = cursor == HistoryQuery.NO_CURSOR ? high - 1 : Math.min(cursor, high - 1);
+            for (; index >= low && page.size() < limit; index--) {
+                if (matches(query, index)) {
+                    page.add(get(index));
+                }
+            }
+            return new HistoryPage(page, index >= low ? index : HistoryQuery.NO_CURSOR);
+        }
+
+        int index = cursor == HistoryQuery.NO_CURSOR ? low : Math.max(cursor, low);
+        for (; index < high && page.size() < limit; index++) {
+            if (matches(query, index)) {
+                page.add(get(index));
+            }
+        }
+        return new HistoryPage(page, index < high ? index : HistoryQuery.NO_CURSOR);
+    }
+
+    private boolean matches(HistoryQuery query, int index) {
+        long millis = timestamps[index];
+        return millis >= query.getFromMillis() && millis < query.getToMillis() && query.includes(TYPES[types[index]]);
+    }
+
+    // Read-only copy of the entries present now, without copying them; later appends are not visible in it
+    public TransactionJournal freeze() {
+        return new TransactionJournal(this);
+    }
+
+    public List<Transaction> snapshot() {
+        return new View(freeze());
+    }
+
+    public static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE);
+    }
+
+    // List view over a frozen journal, materialising entries on access
+    private static class View extends AbstractList<Transaction> {
+        private final TransactionJournal journal;
+
+        View(TransactionJournal journal) {
+            this.journal = journal;
+        }
+
+        @Override
+        public Transaction get(int index) {
+            return journal.get(index);
+        }
+
+        @Override
+        public int size() {
+            return journal.size();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package myLib;
+
+import java.util.List;
+
+// Moves money between two accounts as one unit; locks are always taken in account-id order
+public class TransferEngine {
+
+    // One requested movement of money for settle()
+    public static class Transfer {
+        private final Account from;
+        private final Account to;
+        private final long amountCents;
+        private final String transactionId;
+
+        public Transfer(Account from, Account to, long amountCents, String transactionId) {
+            this.from = from;
+            this.to = to;
+            this.amountCents = amountCents;
+            this.transactionId = transactionId;
+        }
+
+        public Account getFrom() {
+            return from;
+        }
+
+        public Account getTo() {
+            return to;
+        }
+
+        public long getAmountCents() {
+            return amountCents;
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+    }
+
+    public PostingStatus transfer(Account from, Account to, double amount, String transactionId) {
+        return transfer(from, to, Money.toCents(amount), transactionId);
+    }
+
+    public PostingStatus transfer(Account from, Account to, long amountCents, String transactionId) {
+        PostingStatus status = execute(from, to, amountCents, transactionId);
+        if (status == PostingStatus.POSTED) {
+            from.commitPostings();
+        }
+        return status;
+    }
+
+    // Settles the transfers in order and commits the posting log once for the whole batch
+    public PostingStatus[] settle(List<Transfer> transfers) {
+        PostingStatus[] statuses = new PostingStatus[transfers.size()];
+        PostingLog postingLog = null;
+        long lastLsn = 0L;
+
+        for (int i = 0; i < statuses.length; i++) {
+            Transfer transfer = transfers.get(i);
+            statuses[i] = execute(transfer.getFrom(), transfer.getTo(), transfer.getAmountCents(), transfer.getTransactionId());
+            Account from = transfer.getFrom();
+            if (statuses[i] == PostingStatus.POSTED && from.postingLog != null) {
+                postingLog = from.postingLog;
+                // An overdraft fee on the debit side is logged after the transfer, so it may hold the higher LSN
+                lastLsn = Math.max(lastLsn, Math.max(from.getLastPostingLsn(), transfer.getTo().getLastPostingLsn()));
+            }
+        }
+
+        if (postingLog != null) {
+            postingLog.commit(lastLsn);
+        }
+        return statuses;
+    }
+
+    private PostingStatus execute(Account from, Account to, long amountCents, String transactionId) {
+        if (from == null || to == null) {
+            return PostingStatus.UNKNOWN_ACCOUNT;
+        }
+        if (amountCents <= 0) {
+            return PostingStatus.INVALID_AMOUNT;
+        }
+
+        int order = from.getAccountId().compareTo(to.getAccountId());
+        if (order == 0) {
+            return PostingStatus.SAME_ACCOUNT;
+        }
+
+        // A global order on account ids means A->B and B->A can never wait on each other
+        Account first = order < 0 ? from : to;
+        Account second = order < 0 ? to : from;
+
+        first.lock.lock();
+        try {
+            second.lock.lock();
+            try {
+                if (amountCents > from.availableCents()) {
+                    return PostingStatus.INSUFFICIENT_FUNDS;
+                }
+
+                Transaction debit = Transaction.Builder.ofCents(
+                        transactionId,
+                        from.getAccountId(),
+                        amountCents,
+                        TransactionType.TRANSFER,
+                        "Transfer to account " + to.getAccountId()
+                ).secondAccount(to.getAccountId()).build();
+                Transaction credit = Transaction.Builder.ofCents(
+                        transactionId,
+                        from.getAccountId(),
+                        amountCents,
+                        TransactionType.TRANSFER,
+                        "Transfer from account " + from.getAccountId()
+                ).secondAccount(to.getAccountId()).build();
+
+                from.apply(-amountCents, debit);
+                to.apply(amountCents, credit);
+                // Both legs go into one log record so replay can never apply one without the other
+                PostingLog postingLog = from.postingLog;
+                if (postingLog != null) {
+                    long lsn = postingLog.appendTransfer(from.getAccountId(), debit, -amountCents, from.balanceCents,
+                            to.getAccountId(), credit, amountCents, to.balanceCents);
+                    from.lastPostingLsn = lsn;
+                    to.lastPostingLsn = lsn;
+                }
+
+                from.afterDebit(transactionId);
+                return PostingStatus.POSTED;
+            } finally {
+                second.lock.unlock();
+            }
+        } finally {
+            first.lock.unlock();
+        }
+    }
+}
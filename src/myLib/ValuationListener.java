@@ -0,0 +1,10 @@
+package myLib;
+
+// Receives every change that moves an account's valuation, as deltas in cents
+public interface ValuationListener {
+    void onBalanceChanged(Account account, long deltaCents);
+
+    void onHoldingAdded(Account account, Investment investment);
+
+    void onHoldingChanged(Investment investment, long marketValueDeltaCents, long costBasisDeltaCents);
+}
@@ -0,0 +1,67 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AccountAggregatesTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 10);
+    private static final YearMonth MONTH = YearMonth.of(2024, 3);
+
+    @Test
+    void keepsTransfersInAndOutApart() {
+        AccountAggregates aggregates = new AccountAggregates();
+        aggregates.record(TransactionType.DEPOSIT, 10_000, DAY, 10_000);
+        aggregates.record(TransactionType.TRANSFER, -2_500, DAY, 7_500);
+        aggregates.record(TransactionType.TRANSFER, 1_000, DAY.plusDays(1), 8_500);
+
+        assertEquals(1_000, aggregates.getMonthlyCreditsCents(TransactionType.TRANSFER, MONTH));
+        assertEquals(2_500, aggregates.getMonthlyDebitsCents(TransactionType.TRANSFER, MONTH));
+        assertEquals(3_500, aggregates.getMonthlyTotalCents(TransactionType.TRANSFER, MONTH));
+        assertEquals(2, aggregates.getMonthlyCount(TransactionType.TRANSFER, MONTH));
+        assertEquals(2_500, aggregates.getDailyTotalCents(TransactionType.TRANSFER, DAY));
+        assertEquals(3_500, aggregates.getTotalCents(TransactionType.TRANSFER, DAY, DAY.plusDays(1)));
+    }
+
+    @Test
+    void withdrawalsAndFeesAreReportedAsPositiveTotals() {
+        AccountAggregates aggregates = new AccountAggregates();
+        aggregates.record(TransactionType.DEPOSIT, 10_000, DAY, 10_000);
+        aggregates.record(TransactionType.WITHDRAWAL, -3_000, DAY, 7_000);
+        aggregates.record(TransactionType.FEE, -500, DAY, 6_500);
+
+        assertEquals(3_000, aggregates.getMonthlyTotalCents(TransactionType.WITHDRAWAL, MONTH));
+        assertEquals(500, aggregates.getMonthlyDebitsCents(TransactionType.FEE, MONTH));
+        assertEquals(1, aggregates.getFeeCount(MONTH));
+    }
+
+    @Test
+    void closingAndAverageBalancesCarryQuietDaysForward() {
+        AccountAggregates aggregates = new AccountAggregates();
+        aggregates.record(TransactionType.DEPOSIT, 1_000, LocalDate.of(2024, 3, 1), 1_000);
+        aggregates.record(TransactionType.DEPOSIT, 2_000, LocalDate.of(2024, 3, 3), 3_000);
+
+        assertEquals(0, aggregates.getClosingBalanceCents(LocalDate.of(2024, 2, 29)));
+        assertEquals(1_000, aggregates.getClosingBalanceCents(LocalDate.of(2024, 3, 2)));
+        assertEquals(3_000, aggregates.getClosingBalanceCents(LocalDate.of(2024, 3, 31)));
+        // 1000 on days 1-2, 3000 on day 3-4
+        assertEquals(2_000, aggregates.getAverageDailyBalanceCents(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 4)));
+    }
+
+    @Test
+    void accountsRecordTheDirectionOfEachTransferLeg() {
+        CheckingAccount from = new CheckingAccount("ACC-1", "user-1", 0.0, null);
+        CheckingAccount to = new CheckingAccount("ACC-2", "user-1", 0.0, null);
+        from.depositCents(10_000, "D1");
+        new TransferEngine().transfer(from, to, 2_500L, "T1");
+
+        YearMonth month = YearMonth.now();
+        assertEquals(0, from.getAggregates().getMonthlyCreditsCents(TransactionType.TRANSFER, month));
+        assertEquals(2_500, from.getAggregates().getMonthlyDebitsCents(TransactionType.TRANSFER, month));
+        assertEquals(2_500, to.getAggregates().getMonthlyCreditsCents(TransactionType.TRANSFER, month));
+        assertEquals(0, to.getAggregates().getMonthlyDebitsCents(TransactionType.TRANSFER, month));
+    }
+}
@@ -0,0 +1,84 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountRegistryTest {
+    private static Set<String> ids(List<Account> accounts) {
+        return accounts.stream().map(Account::getAccountId).collect(Collectors.toSet());
+    }
+
+    @Test
+    void indexesAccountsByOwner() {
+        AccountRegistry registry = new AccountRegistry();
+        CheckingAccount first = new CheckingAccount("ACC-1", "alice", 0.0, null);
+        assertTrue(registry.register(first));
+        assertTrue(registry.register(new CheckingAccount("ACC-2", "alice", 0.0, null)));
+        assertTrue(registry.register(new CheckingAccount("ACC-3", "bob", 0.0, null)));
+        assertFalse(registry.register(new CheckingAccount("ACC-1", "bob", 0.0, null)));
+
+        assertEquals(3, registry.size());
+        assertSame(first, registry.get("ACC-1"));
+        assertEquals("alice", registry.getOwner("ACC-1"));
+        assertEquals(Set.of("ACC-1", "ACC-2"), ids(registry.getAccountsForUser("alice")));
+        assertEquals(Set.of("ACC-3"), ids(registry.getAccountsForUser("bob")));
+        assertTrue(registry.getAccountsForUser("carol").isEmpty());
+
+        assertSame(first, registry.close("ACC-1"));
+        assertNull(registry.close("ACC-1"));
+        assertNull(registry.get("ACC-1"));
+        assertNull(registry.getOwner("ACC-1"));
+        assertEquals(Set.of("ACC-2"), ids(registry.getAccountsForUser("alice")));
+        assertEquals(2, registry.getAll().size());
+    }
+
+    @Test
+    void concurrentRegistrationsAndClosesKeepBothIndexesInStep() throws Exception {
+        AccountRegistry registry = new AccountRegistry();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        String accountId = "ACC-" + thread + "-" + i;
+                        registry.register(new CheckingAccount(accountId, "user-" + (i % 10), 0.0, null));
+                        if (i % 3 == 0) {
+                            registry.close(accountId);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        int indexed = 0;
+        for (int user = 0; user < 10; user++) {
+            for (Account account : registry.getAccountsForUser("user-" + user)) {
+                assertSame(account, registry.get(account.getAccountId()));
+                assertEquals("user-" + user, account.getUserId());
+                indexed++;
+            }
+        }
+        assertEquals(8 * 666, registry.size());
+        assertEquals(registry.size(), indexed);
+    }
+}
@@ -0,0 +1,63 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountTest {
+    private static final int THREADS = 8;
+    private static final int POSTINGS_PER_THREAD = 2_000;
+
+    @Test
+    void concurrentPostingsNeitherLoseUpdatesNorOverdraw() throws Exception {
+        CheckingAccount account = new CheckingAccount("ACC-1", "user-1", 0.0, null);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                        // Half the threads deposit, half try to withdraw more than is usually there
+                        if (thread % 2 == 0) {
+                            account.deposit(3.0, "D" + thread + "-" + i);
+                        } else {
+                            account.withdraw(5.0, "W" + thread + "-" + i);
+                        }
+                        assertTrue(account.getBalance() >= 0.0);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        long deposits = 0L;
+        long withdrawals = 0L;
+        for (Transaction transaction : account.getTransactionHistory()) {
+            if (transaction.getType() == TransactionType.DEPOSIT) {
+                deposits++;
+            } else {
+                withdrawals++;
+            }
+        }
+        assertEquals(THREADS / 2 * POSTINGS_PER_THREAD, deposits);
+        // Whole dollars, so the sum is exact whatever type holds the balance
+        assertEquals(deposits * 3.0 - withdrawals * 5.0, account.getBalance());
+    }
+}
@@ -0,0 +1,141 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BankSnapshotTest {
+    // Small segments so a few hundred postings span several of them
+    private static final long SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path root;
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(root.resolve("wal"))) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void restoresFromLogAloneWithoutSnapshot() {
+        PostingLog log = TestLogs.open(root, SEGMENT_SIZE);
+        CheckingAccount account = TestLogs.checking(log, "ACC-1");
+        for (int i = 0; i < 50; i++) {
+            account.depositCents(100, "T" + i);
+        }
+        log.close();
+
+        PostingLog reopened = TestLogs.open(root, SEGMENT_SIZE);
+        BankSnapshot.State state = BankSnapshot.restore(root.resolve("snapshots"), reopened, 2);
+        assertEquals(5000L, state.getAccounts().get("ACC-1").getBalanceCents());
+        assertEquals(50, state.getAccounts().get("ACC-1").getTransactionHistory().size());
+        reopened.close();
+    }
+
+    @Test
+    void snapshotDiscardsCoveredSegmentsAndReplaysOnlyTheTail() throws IOException {
+        PostingLog log = TestLogs.open(root, SEGMENT_SIZE);
+        CheckingAccount account = TestLogs.checking(log, "ACC-1");
+        for (int i = 0; i < 200; i++) {
+            account.depositCents(100, "T" + i);
+        }
+        int segmentsBefore = segments().size();
+        assertTrue(segmentsBefore > 2, "test needs several segments");
+
+        long snapshotLsn = BankSnapshot.write(root.resolve("snapshots"), List.of(account), Map.of(), log, 2);
+        assertTrue(segments().size() < segmentsBefore);
+
+        for (int i = 200; i < 210; i++) {
+            account.depositCents(100, "T" + i);
+        }
+        long lastLsn = log.getLastLsn();
+        log.close();
+
+        PostingLog reopened = TestLogs.open(root, SEGMENT_SIZE);
+        assertEquals(lastLsn, reopened.getLastLsn());
+        BankSnapshot.State state = BankSnapshot.restore(root.resolve("snapshots"), reopened, 2);
+        assertEquals(snapshotLsn, state.getSnapshotLsn());
+        assertEquals(10, state.getReplayedRecords());
+        Account restored = state.getAccounts().get("ACC-1");
+        assertEquals(21000L, restored.getBalanceCents());
+        assertEquals(210, restored.getTransactionHistory().size());
+        reopened.close();
+    }
+
+    @Test
+    void lsnsContinueAfterEverythingWasSnapshotted() throws IOException {
+        PostingLog log = TestLogs.open(root, SEGMENT_SIZE);
+        CheckingAccount account = TestLogs.checking(log, "ACC-1");
+        for (int i = 0; i < 200; i++) {
+            account.depositCents(100, "T" + i);
+        }
+        long snapshotLsn = BankSnapshot.write(root.resolve("snapshots"), List.of(account), Map.of(), log, 1);
+        log.close();
+
+        PostingLog reopened = TestLogs.open(root, SEGMENT_SIZE);
+        assertEquals(snapshotLsn, reopened.getLastLsn());
+        BankSnapshot.State state = BankSnapshot.restore(root.resolve("snapshots"), reopened, 1);
+        Account restored = state.getAccounts().get("ACC-1");
+        restored.depositCents(100, "T200");
+        assertEquals(snapshotLsn + 1, restored.getLastPostingLsn());
+        reopened.close();
+    }
+
+    @Test
+    void replayRefusesALogWithMissingSegments() throws IOException {
+        PostingLog log = TestLogs.open(root, SEGMENT_SIZE);
+        CheckingAccount account = TestLogs.checking(log, "ACC-1");
+        for (int i = 0; i < 200; i++) {
+            account.depositCents(100, "T" + i);
+        }
+        log.close();
+        Files.delete(segments().get(0));
+
+        PostingLog reopened = TestLogs.open(root, SEGMENT_SIZE);
+        assertThrows(IllegalStateException.class,
+                () -> BankSnapshot.restore(root.resolve("snapshots"), reopened, 1));
+        reopened.close();
+    }
+
+    @Test
+    void holdingsAndPreferencesAreReplayed() {
+        PostingLog log = TestLogs.open(root, SEGMENT_SIZE);
+        CheckingAccount account = TestLogs.checking(log, "ACC-1");
+        Stock stock = new Stock("INV-1", "Acme", 10.0, 10.0, 10, LocalDateTime.now(), "user-1", "ACME", 0.02);
+        account.addInvestment(stock);
+        stock.purchaseInvestmentCents(5, 2000);
+        stock.updateCurrentPriceCents(2500);
+        stock.sellInvestment(8, LotReliefMethod.FIFO);
+        account.logHolding(stock);
+        log.commit(log.appendPreference("user-1", notificationType.SMS_SENT));
+        log.close();
+
+        PostingLog reopened = TestLogs.open(root, SEGMENT_SIZE);
+        BankSnapshot.State state = BankSnapshot.restore(root.resolve("snapshots"), reopened, 1);
+        List<Investment> holdings = state.getAccounts().get("ACC-1").getInvestments();
+        assertEquals(1, holdings.size());
+        Investment restored = holdings.get(0);
+        assertNotNull(restored);
+        assertEquals(7, restored.getQuantity());
+        assertEquals(2500L, restored.getCurrentPriceCents());
+        assertEquals(stock.getCostBasisCents(), restored.getCostBasisCents());
+        assertEquals(stock.getRealizedGainCents(), restored.getRealizedGainCents());
+        assertEquals(2, restored.getOpenLots().size());
+        assertEquals(notificationType.SMS_SENT, state.getPreferences().get("user-1"));
+        reopened.close();
+    }
+}
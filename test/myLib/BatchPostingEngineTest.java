@@ -0,0 +1,78 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchPostingEngineTest {
+    @TempDir
+    Path root;
+
+    private static BatchPostingEngine.Posting deposit(String accountId, long cents) {
+        return new BatchPostingEngine.Posting(accountId, TransactionType.DEPOSIT, cents);
+    }
+
+    private static BatchPostingEngine.Posting withdrawal(String accountId, long cents) {
+        return new BatchPostingEngine.Posting(accountId, TransactionType.WITHDRAWAL, cents);
+    }
+
+    @Test
+    void linesApplyInFileOrderPerAccount() {
+        CheckingAccount a = new CheckingAccount("ACC-1", "user-1", 0.0, null);
+        CheckingAccount b = new CheckingAccount("ACC-2", "user-1", 0.0, null);
+        BatchPostingEngine engine = new BatchPostingEngine(Map.of("ACC-1", a, "ACC-2", b), new IDGenerator());
+
+        BatchPostingEngine.Result result = engine.post(List.of(
+                withdrawal("ACC-1", 100L),
+                deposit("ACC-2", 500L),
+                deposit("ACC-1", 300L),
+                deposit("ACC-9", 100L),
+                withdrawal("ACC-1", 100L),
+                deposit("ACC-2", 0L)));
+
+        assertEquals(PostingStatus.INSUFFICIENT_FUNDS, result.getStatus(0));
+        assertEquals(PostingStatus.POSTED, result.getStatus(1));
+        assertEquals(PostingStatus.POSTED, result.getStatus(2));
+        assertEquals(PostingStatus.UNKNOWN_ACCOUNT, result.getStatus(3));
+        assertEquals(PostingStatus.POSTED, result.getStatus(4));
+        assertEquals(PostingStatus.INVALID_AMOUNT, result.getStatus(5));
+        assertEquals(6, result.size());
+        assertEquals(3, result.getPostedCount());
+        assertEquals(3, result.getRejectedCount());
+        assertNull(result.getTransactionId(0));
+        assertTrue(result.getTransactionId(2).endsWith("-2"), result.getTransactionId(2));
+        assertEquals(200L, a.getBalanceCents());
+        assertEquals(500L, b.getBalanceCents());
+    }
+
+    @Test
+    void readsPostingFiles() throws IOException {
+        Path file = root.resolve("postings.csv");
+        Files.write(file, List.of("# account,type,amount", "", "ACC-1, deposit ,12.34", "ACC-2,WITHDRAWAL,5"),
+                StandardCharsets.UTF_8);
+        List<BatchPostingEngine.Posting> postings = BatchPostingEngine.readFile(file);
+        assertEquals(2, postings.size());
+        assertEquals("ACC-1", postings.get(0).getAccountId());
+        assertEquals(TransactionType.DEPOSIT, postings.get(0).getType());
+        assertEquals(1234L, postings.get(0).getAmountCents());
+        assertEquals(TransactionType.WITHDRAWAL, postings.get(1).getType());
+        assertEquals(500L, postings.get(1).getAmountCents());
+
+        for (String malformed : List.of("ACC-1,DEPOSIT", "ACC-1,DEPOSIT,abc", "ACC-1,REFUND,5", "ACC-1,FEE,5")) {
+            Files.write(file, List.of("# header", malformed), StandardCharsets.UTF_8);
+            IOException e = assertThrows(IOException.class, () -> BatchPostingEngine.readFile(file));
+            assertEquals("Malformed posting on line 2: " + malformed, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BondAnalyticsTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 15);
+    private static final long FACE_CENTS = 100_000L;
+
+    // Discounts every annual flow directly with Math.pow, the definition the solver must agree with
+    private static double bruteForcePrice(double couponRate, LocalDate maturity, double yield) {
+        int couponCount = (int) ChronoUnit.YEARS.between(TODAY, maturity.minusDays(1)) + 1;
+        double price = 0.0;
+        for (int k = 0; k < couponCount; k++) {
+            LocalDate paymentDate = maturity.minusYears(couponCount - 1 - k);
+            double amount = FACE_CENTS * couponRate + (k == couponCount - 1 ? FACE_CENTS : 0.0);
+            price += amount * Math.pow(1.0 + yield, -ChronoUnit.DAYS.between(TODAY, paymentDate) / 365.0);
+        }
+        return price;
+    }
+
+    private static Bond bond(String id, LocalDate maturity, double couponRate, double price) {
+        return new Bond(id, id, price, price, 3, LocalDateTime.now(), "user-1", maturity, couponRate,
+                FACE_CENTS / 100.0, "Issuer");
+    }
+
+    @Test
+    void parBondYieldsItsCoupon() {
+        BondAnalytics.Result result = BondAnalytics.analyze(FACE_CENTS, 0.05, TODAY.plusYears(10), FACE_CENTS, TODAY);
+        // Leap days stretch some coupon periods past a year, so par is only approximately the coupon
+        assertEquals(0.05, result.getYieldToMaturity(), 2e-4);
+    }
+
+    @Test
+    void solvedYieldsRepriceTheBond() {
+        double[] couponRates = {0.0, 0.025, 0.08};
+        double[] yields = {-0.005, 0.01, 0.045, 0.12, 0.6};
+        LocalDate[] maturities = {TODAY.plusYears(2).plusDays(17), TODAY.plusYears(10), TODAY.plusYears(30).minusDays(40)};
+        for (double couponRate : couponRates) {
+            for (double yield : yields) {
+                for (LocalDate maturity : maturities) {
+                    long priceCents = Math.round(bruteForcePrice(couponRate, maturity, yield));
+                    if (priceCents < 100) {
+                        continue; // Too few cents left to pin the yield down
+                    }
+                    double solved = BondAnalytics.analyze(FACE_CENTS, couponRate, maturity, priceCents, TODAY)
+                            .getYieldToMaturity();
+                    String label = couponRate + " " + yield + " " + maturity;
+                    assertEquals(priceCents, bruteForcePrice(couponRate, maturity, solved), 1e-3, label);
+                    // Rounding a small price to the cent moves the yield it implies
+                    assertEquals(yield, solved, Math.max(1e-5, 1.0 / priceCents), label);
+                }
+            }
+        }
+    }
+
+    @Test
+    void deepDiscountsSolveAboveOneHundredPercent() {
+        LocalDate maturity = TODAY.plusYears(5);
+        double yield = BondAnalytics.analyze(FACE_CENTS, 0.0, maturity, 1L, TODAY).getYieldToMaturity();
+        assertTrue(yield > 1.0, "yield " + yield);
+        assertEquals(1.0, bruteForcePrice(0.0, maturity, yield), 1e-6);
+    }
+
+    @Test
+    void durationMatchesTheNumericalPriceSensitivity() {
+        LocalDate maturity = TODAY.plusYears(12).plusDays(100);
+        long priceCents = Math.round(bruteForcePrice(0.04, maturity, 0.05));
+        BondAnalytics.Result result = BondAnalytics.analyze(FACE_CENTS, 0.04, maturity, priceCents, TODAY);
+
+        double y = result.getYieldToMaturity();
+        double h = 1e-5;
+        double up = bruteForcePrice(0.04, maturity, y + h);
+        double down = bruteForcePrice(0.04, maturity, y - h);
+        double price = bruteForcePrice(0.04, maturity, y);
+        assertEquals(-(up - down) / (2 * h * price), result.getModifiedDuration(), 1e-5);
+        assertEquals(result.getModifiedDuration() * (1 + y), result.getMacaulayDuration(), 1e-9);
+        assertEquals((up - 2 * price + down) / (h * h * price), result.getConvexity(), 1e-2);
+        assertEquals(result.getModifiedDuration() * priceCents * 0.0001, result.getDv01Cents(), 1e-9);
+    }
+
+    @Test
+    void finalPeriodIsQuotedAsSimpleInterest() {
+        BondAnalytics.Result result = BondAnalytics.analyze(FACE_CENTS, 0.05, TODAY.plusDays(73), FACE_CENTS, TODAY);
+        // 5% coupon earned over a fifth of a year
+        assertEquals(0.25, result.getYieldToMaturity(), 1e-12);
+        assertEquals(73 / 365.0, result.getMacaulayDuration(), 1e-12);
+    }
+
+    @Test
+    void maturedOrUnpricedBondsHaveNoYield() {
+        BondAnalytics.Result matured = BondAnalytics.analyze(FACE_CENTS, 0.05, TODAY, FACE_CENTS, TODAY);
+        assertTrue(matured.isMatured());
+        assertTrue(Double.isNaN(matured.getYieldToMaturity()));
+        assertTrue(Double.isNaN(BondAnalytics.analyze(FACE_CENTS, 0.05, TODAY.plusYears(5), 0L, TODAY)
+                .getYieldToMaturity()));
+    }
+
+    @Test
+    void resultsAreCachedUntilThePriceOrDateChanges() {
+        Bond bond = bond("B1", TODAY.plusYears(5), 0.05, 980.0);
+        BondAnalytics.Result first = BondAnalytics.analyze(bond, TODAY);
+        assertSame(first, BondAnalytics.analyze(bond, TODAY));
+        assertNotSame(first, BondAnalytics.analyze(bond, TODAY.plusDays(1)));
+        bond.updateCurrentPriceCents(97_000);
+        BondAnalytics.Result repriced = BondAnalytics.analyze(bond, TODAY.plusDays(1));
+        assertEquals(97_000L, repriced.getPriceCents());
+    }
+
+    @Test
+    void analyzeAllTotalsLiveBondsOnly() {
+        List<Bond> bonds = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            LocalDate maturity = i % 10 == 0 ? TODAY.minusDays(i) : TODAY.plusDays(30 + 11L * i);
+            bonds.add(bond("B" + i, maturity, (i % 8) / 100.0, 900.0 + i % 200));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BondAnalytics.BookRisk risk;
+        try {
+            risk = BondAnalytics.analyzeAll(bonds, TODAY, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        long marketValue = 0L;
+        double dv01 = 0.0;
+        for (int i = 0; i < bonds.size(); i++) {
+            BondAnalytics.Result result = risk.getResult(i);
+            assertSame(BondAnalytics.analyze(bonds.get(i), TODAY), result);
+            if (!result.isMatured()) {
+                marketValue += result.getPriceCents() * bonds.get(i).getQuantity();
+                dv01 += result.getDv01Cents() * bonds.get(i).getQuantity();
+            }
+        }
+        assertEquals(bonds.size(), risk.size());
+        assertEquals(marketValue, risk.getMarketValueCents());
+        assertEquals(dv01, risk.getDv01Cents(), 1e-6);
+        assertEquals(dv01 / (marketValue * 0.0001), risk.getModifiedDuration(), 1e-9);
+    }
+}
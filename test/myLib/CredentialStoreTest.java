@@ -0,0 +1,80 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CredentialStoreTest {
+    @TempDir
+    Path root;
+
+    @Test
+    void putReplaceAndRemove() {
+        try (CredentialStore store = new CredentialStore(root)) {
+            assertTrue(store.putIfAbsent("alice", "one"));
+            assertFalse(store.putIfAbsent("alice", "two"));
+            assertEquals("one", store.get("alice"));
+
+            assertFalse(store.replace("alice", "stale", "three"));
+            assertTrue(store.replace("alice", "one", "three"));
+            assertEquals("three", store.get("alice"));
+            assertFalse(store.replace("nobody", "one", "two"));
+
+            assertTrue(store.remove("alice"));
+            assertFalse(store.remove("alice"));
+            assertNull(store.get("alice"));
+            assertFalse(store.contains("alice"));
+            assertEquals(0L, store.size());
+
+            assertTrue(store.putIfAbsent("alice", "four"));
+            assertEquals("four", store.get("alice"));
+        }
+    }
+
+    @Test
+    void survivesACleanRestart() {
+        try (CredentialStore store = new CredentialStore(root)) {
+            for (int i = 0; i < 1000; i++) {
+                store.putIfAbsent("user" + i, "credential" + i);
+            }
+            store.remove("user5");
+            store.replace("user6", "credential6", "changed");
+        }
+
+        try (CredentialStore store = new CredentialStore(root)) {
+            assertEquals(999L, store.size());
+            assertNull(store.get("user5"));
+            assertEquals("changed", store.get("user6"));
+            assertEquals("credential999", store.get("user999"));
+        }
+    }
+
+    @Test
+    void rebuildsTheIndexAfterACrashAndDropsATornRecord() throws IOException {
+        CredentialStore crashed = new CredentialStore(root);
+        crashed.putIfAbsent("alice", "one");
+        crashed.putIfAbsent("bob", "two");
+        crashed.replace("alice", "one", "three");
+        // Never closed, so the index stays marked dirty; then half a record lands at the tail
+        Files.write(root.resolve("credentials.dat"), new byte[]{1, 0, 0, 0, 40, 0}, StandardOpenOption.APPEND);
+
+        try (CredentialStore store = new CredentialStore(root)) {
+            assertEquals(2L, store.size());
+            assertEquals("three", store.get("alice"));
+            assertEquals("two", store.get("bob"));
+            assertTrue(store.putIfAbsent("carol", "four"));
+        }
+        try (CredentialStore store = new CredentialStore(root)) {
+            assertEquals("four", store.get("carol"));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EndOfDayCloseTest {
+    private static final LocalDate DAY = LocalDate.of(2023, 6, 1);
+
+    @TempDir
+    Path root;
+
+    private EndOfDayClose closer() {
+        return new EndOfDayClose(root.resolve("eod"), 2, 2);
+    }
+
+    // Opened on DAY
+    private static SavingsAccount savings(PostingLog log, String accountId, long depositCents) {
+        // 3.65% a year on $1000 earns 10 cents a day
+        SavingsAccount account = new SavingsAccount(accountId, "user-1", 3.65, null);
+        account.setOpenedDay(DAY.toEpochDay());
+        if (log != null) {
+            TestLogs.attach(log, account);
+        }
+        if (depositCents > 0) {
+            account.depositCents(depositCents, "D-" + accountId);
+        }
+        return account;
+    }
+
+    @Test
+    void closesEachAccountOncePerBusinessDate() {
+        SavingsAccount a = savings(null, "ACC-1", 100_000);
+        SavingsAccount b = savings(null, "ACC-2", 100_000);
+        SavingsAccount c = savings(null, "ACC-3", 100_000);
+
+        EndOfDayClose.Result first = closer().close(List.of(a, b, c), DAY);
+        assertEquals(2, first.getPartitions());
+        assertEquals(3, first.getAccountsClosed());
+        assertEquals(30, first.getInterestCents());
+        assertEquals(100_010, a.getBalanceCents());
+
+        EndOfDayClose.Result again = closer().close(List.of(a, b, c), DAY);
+        assertEquals(2, again.getSkippedPartitions());
+        assertEquals(0, again.getAccountsClosed());
+        assertEquals(100_010, a.getBalanceCents());
+    }
+
+    @Test
+    void replayedAccountsRememberTheClosedDay() {
+        PostingLog log = TestLogs.open(root);
+        SavingsAccount earning = savings(log, "ACC-1", 100_000);
+        CheckingAccount quiet = new CheckingAccount("ACC-2", "user-1", 0.0, null);
+        quiet.setOpenedDay(DAY.toEpochDay());
+        TestLogs.attach(log, quiet);
+        closer().close(List.of(earning, quiet), DAY);
+        log.close();
+
+        Map<String, Account> restored = TestLogs.restore(root);
+        assertEquals(100_010, restored.get("ACC-1").getBalanceCents());
+        assertEquals(DAY.toEpochDay(), restored.get("ACC-1").getLastClosedDay());
+        // No postings were made for this account, but the closed day is still logged
+        assertEquals(DAY.toEpochDay(), restored.get("ACC-2").getLastClosedDay());
+
+        // Checkpoints are gone, yet the restored accounts are not closed a second time
+        EndOfDayClose.Result again = new EndOfDayClose(root.resolve("other-eod"), 1, 2)
+                .close(restored.values(), DAY);
+        assertEquals(0, again.getAccountsClosed());
+        assertEquals(100_010, restored.get("ACC-1").getBalanceCents());
+    }
+
+    @Test
+    void catchUpClosesEveryMissedDate() {
+        SavingsAccount account = savings(null, "ACC-1", 100_000);
+        EndOfDayClose closer = closer();
+        assertNull(closer.getLastClosedDate());
+
+        closer.close(List.of(account), DAY);
+        assertEquals(DAY, closer.getLastClosedDate());
+
+        List<EndOfDayClose.Result> results = closer.catchUp(List.of(account), DAY.plusDays(3));
+        assertEquals(3, results.size());
+        assertEquals(DAY.plusDays(1), results.get(0).getBusinessDate());
+        assertEquals(DAY.plusDays(3), results.get(2).getBusinessDate());
+        assertEquals(DAY.plusDays(3), closer.getLastClosedDate());
+        assertEquals(DAY.plusDays(3).toEpochDay(), account.getLastClosedDay());
+
+        assertTrue(closer.catchUp(List.of(account), DAY.plusDays(3)).isEmpty());
+    }
+
+    @Test
+    void catchUpWithNothingOnRecordClosesOnlyTheTargetDate() {
+        SavingsAccount account = savings(null, "ACC-1", 100_000);
+        List<EndOfDayClose.Result> results = closer().catchUp(List.of(account), DAY);
+        assertEquals(1, results.size());
+        assertEquals(DAY, results.get(0).getBusinessDate());
+    }
+
+    @Test
+    void catchUpResumesAnInterruptedClose() throws IOException {
+        SavingsAccount account = savings(null, "ACC-1", 100_000);
+        Files.createDirectories(root.resolve("eod"));
+        // A close that started but never recorded its business date as finished
+        Files.createFile(root.resolve("eod").resolve("eod-" + DAY + ".checkpoint"));
+
+        List<EndOfDayClose.Result> results = closer().catchUp(List.of(account), DAY.plusDays(1));
+        assertEquals(2, results.size());
+        assertEquals(DAY, results.get(0).getBusinessDate());
+        assertEquals(DAY.plusDays(1), closer().getLastClosedDate());
+    }
+
+    @Test
+    void lowBalanceFeeIsChargedOnceAMonthAndNeverBelowZero() {
+        SavingsAccount empty = savings(null, "ACC-1", 0);
+        SavingsAccount nearlyEmpty = savings(null, "ACC-2", 300);
+        SavingsAccount low = savings(null, "ACC-3", 5_000);
+        EndOfDayClose closer = closer();
+
+        long feePostings = 0;
+        for (LocalDate day = DAY; day.isBefore(DAY.plusDays(5)); day = day.plusDays(1)) {
+            feePostings += closer.close(List.of(empty, nearlyEmpty, low), day).getFeePostings();
+        }
+        assertEquals(2, feePostings);
+        assertEquals(0L, empty.getBalanceCents());
+        assertEquals(0L, nearlyEmpty.getBalanceCents());
+        assertEquals(4_500L, low.getBalanceCents());
+
+        // A new month is a new fee period
+        closer.close(List.of(empty, nearlyEmpty, low), DAY.withMonth(7));
+        assertEquals(0L, empty.getBalanceCents());
+        assertEquals(0L, nearlyEmpty.getBalanceCents());
+        assertEquals(4_000L, low.getBalanceCents());
+    }
+
+    @Test
+    void monthlyFeePeriodSurvivesARestore() {
+        PostingLog log = TestLogs.open(root);
+        SavingsAccount low = savings(log, "ACC-1", 5_000);
+        closer().close(List.of(low), DAY);
+        log.close();
+
+        Account restored = TestLogs.restore(root).get("ACC-1");
+        assertEquals(DAY.toEpochDay(), restored.getLastFeeDay());
+        new EndOfDayClose(root.resolve("other-eod"), 1, 2).close(List.of(restored), DAY.plusDays(1));
+        assertEquals(4_500L, restored.getBalanceCents());
+    }
+
+    @Test
+    void catchUpSkipsDatesBeforeTheAccountOpened() {
+        SavingsAccount account = savings(null, "ACC-1", 100_000);
+        account.setOpenedDay(DAY.plusDays(2).toEpochDay());
+        EndOfDayClose closer = closer();
+
+        assertEquals(0, closer.close(List.of(account), DAY).getAccountsClosed());
+        List<EndOfDayClose.Result> results = closer.catchUp(List.of(account), DAY.plusDays(2));
+        assertEquals(0, results.get(0).getAccountsClosed());
+        assertEquals(1, results.get(1).getAccountsClosed());
+        assertEquals(100_010, account.getBalanceCents());
+        assertEquals(DAY.plusDays(2).toEpochDay(), account.getLastClosedDay());
+    }
+
+    @Test
+    void catchUpPostsNothingForMissedDates() {
+        SavingsAccount earning = savings(null, "ACC-1", 100_000);
+        SavingsAccount low = savings(null, "ACC-2", 5_000);
+        EndOfDayClose closer = closer();
+        closer.close(List.of(earning, low), DAY);
+
+        // Every June date after DAY and July 1 were missed; only July 2 is closed with interest and fees
+        LocalDate through = DAY.withMonth(7).withDayOfMonth(2);
+        List<EndOfDayClose.Result> results = closer.catchUp(List.of(earning, low), through);
+        assertEquals(31, results.size());
+        for (EndOfDayClose.Result result : results.subList(0, 30)) {
+            assertEquals(2, result.getAccountsClosed());
+            assertEquals(0, result.getInterestPostings());
+            assertEquals(0, result.getFeePostings());
+        }
+        assertEquals(1, results.get(30).getFeePostings());
+        assertEquals(100_020, earning.getBalanceCents());
+        assertEquals(4_000L, low.getBalanceCents());
+        assertEquals(through.toEpochDay(), low.getLastClosedDay());
+    }
+
+    @Test
+    void pruneRemovesOnlyOlderCheckpoints() {
+        SavingsAccount account = savings(null, "ACC-1", 100_000);
+        EndOfDayClose closer = closer();
+        closer.catchUp(List.of(account), DAY);
+        closer.catchUp(List.of(account), DAY.plusDays(1));
+        closer.pruneCheckpoints(DAY.plusDays(1));
+
+        assertFalse(Files.exists(root.resolve("eod").resolve("eod-" + DAY + ".checkpoint")));
+        assertTrue(Files.exists(root.resolve("eod").resolve("eod-" + DAY.plusDays(1) + ".checkpoint")));
+    }
+}
@@ -0,0 +1,103 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HoldingsBookTest {
+    // More than two chunks, so the pooled revaluation actually splits
+    private static final int HOLDINGS = 10_000;
+
+    private static List<Investment> holdings(long seed) {
+        Random random = new Random(seed);
+        List<Investment> holdings = new ArrayList<>(HOLDINGS);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < HOLDINGS; i++) {
+            double price = 1 + random.nextInt(100_000) / 100.0;
+            int quantity = 1 + random.nextInt(500);
+            Investment investment;
+            if (random.nextBoolean()) {
+                investment = new Stock("S" + i, "Stock " + i, price, price, quantity, now, "user-1",
+                        "T" + i, random.nextInt(800) / 10_000.0);
+            } else {
+                investment = new Bond("B" + i, "Bond " + i, price, price, quantity, now, "user-1",
+                        LocalDate.now().plusYears(1 + random.nextInt(30)), random.nextInt(900) / 10_000.0,
+                        1000.0, "Issuer " + i);
+            }
+            // A second lot and a new price so cost basis and value diverge
+            investment.purchaseInvestmentCents(1 + random.nextInt(50), 100 + random.nextInt(100_000));
+            investment.updateCurrentPriceCents(100 + random.nextInt(100_000));
+            holdings.add(investment);
+        }
+        return holdings;
+    }
+
+    private static void assertMatchesEachHolding(HoldingsBook book, HoldingsBook.Totals totals) {
+        long marketValue = 0L;
+        long costBasis = 0L;
+        long income = 0L;
+        for (int i = 0; i < book.size(); i++) {
+            Investment investment = book.getHolding(i);
+            assertEquals(investment.getCurrentValueCents(), book.getValueCents(i), investment.getInvestmentId());
+            assertEquals(investment.getGainLossCents(), book.getGainLossCents(i), investment.getInvestmentId());
+            assertEquals(investment.calculateDividendsCents(), book.getIncomeCents(i), investment.getInvestmentId());
+            marketValue += investment.getCurrentValueCents();
+            costBasis += investment.getCostBasisCents();
+            income += investment.calculateDividendsCents();
+        }
+        assertEquals(book.size(), totals.getHoldings());
+        assertEquals(marketValue, totals.getMarketValueCents());
+        assertEquals(costBasis, totals.getCostBasisCents());
+        assertEquals(marketValue - costBasis, totals.getGainLossCents());
+        assertEquals(income, totals.getIncomeCents());
+    }
+
+    @Test
+    void serialRevaluationMatchesThePerHoldingMethods() {
+        HoldingsBook book = HoldingsBook.pack(holdings(1L));
+        assertMatchesEachHolding(book, book.revalue());
+    }
+
+    @Test
+    void pooledRevaluationMatchesTheSerialOne() {
+        HoldingsBook book = HoldingsBook.pack(holdings(2L));
+        HoldingsBook.Totals serial = book.revalue();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            HoldingsBook.Totals pooled = book.revalue(pool);
+            assertMatchesEachHolding(book, pooled);
+            assertEquals(serial.getMarketValueCents(), pooled.getMarketValueCents());
+            assertEquals(serial.getIncomeCents(), pooled.getIncomeCents());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void refreshPicksUpChangesToTheSourceHoldings() {
+        List<Investment> holdings = holdings(3L);
+        HoldingsBook book = HoldingsBook.pack(holdings);
+        holdings.get(0).updateCurrentPriceCents(12_345);
+        holdings.get(1).sellInvestment(1, LotReliefMethod.LIFO);
+        book.refresh();
+        assertMatchesEachHolding(book, book.revalue());
+    }
+
+    @Test
+    void priceOverridesLeaveTheSourceHoldingAlone() {
+        List<Investment> holdings = holdings(4L);
+        HoldingsBook book = HoldingsBook.pack(holdings);
+        long original = holdings.get(0).getCurrentPriceCents();
+        book.setPriceCents(0, original * 2);
+        book.revalue();
+        assertEquals(original * 2 * holdings.get(0).getQuantity(), book.getValueCents(0));
+        assertEquals(original, holdings.get(0).getCurrentPriceCents());
+    }
+}
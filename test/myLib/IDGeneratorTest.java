@@ -0,0 +1,85 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IDGeneratorTest {
+    @Test
+    void idsAreUniqueAcrossThreadsAndIncreasingWithinEach() throws Exception {
+        IDGenerator generator = new IDGenerator(7);
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    long previous = -1L;
+                    for (int i = 0; i < 20_000; i++) {
+                        long id = generator.nextId();
+                        if (id <= previous || !seen.add(id)) {
+                            return false;
+                        }
+                        previous = id;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(160_000, seen.size());
+    }
+
+    @Test
+    void idsCarryTheirNodeAndTimestamp() {
+        long before = System.currentTimeMillis();
+        long id = new IDGenerator(42).nextId();
+
+        assertTrue(id > 0);
+        assertEquals(42, IDGenerator.nodeId(id));
+        // The generator may run up to its drift allowance ahead of the clock
+        long millis = IDGenerator.timestampMillis(id);
+        assertTrue(millis >= before && millis <= System.currentTimeMillis() + 200, "timestamp " + millis);
+    }
+
+    @Test
+    void nodesNeverCollide() {
+        IDGenerator first = new IDGenerator(1);
+        IDGenerator second = new IDGenerator(2);
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(seen.add(first.nextId()));
+            assertTrue(seen.add(second.nextId()));
+        }
+    }
+
+    @Test
+    void renderedIdsSortLikeTheNumbers() {
+        assertEquals("TXN-0000000000000000042", IDGenerator.render("TXN", 42L));
+        assertEquals("TXN-0000012345678901234", IDGenerator.render("TXN", 12345678901234L));
+        assertEquals("ACC-" + Long.MAX_VALUE, IDGenerator.render("ACC", Long.MAX_VALUE));
+        assertTrue(IDGenerator.render("ACC", 9L).compareTo(IDGenerator.render("ACC", 10L)) < 0);
+        assertTrue(new IDGenerator(0).generateAccountId().startsWith("ACC-"));
+    }
+
+    @Test
+    void rejectsNodeIdsOutsideTheTenBitRange() {
+        assertThrows(IllegalArgumentException.class, () -> new IDGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new IDGenerator(1024));
+    }
+}
@@ -0,0 +1,91 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeasedIDGeneratorTest {
+    @TempDir
+    Path root;
+
+    @Test
+    void coordinatorHandsOutDisjointBlocksThatSurviveARestart() {
+        Path file = root.resolve("ids").resolve("lease");
+        assertEquals(1L, new FileIdBlockCoordinator(file).reserve(100));
+        assertEquals(101L, new FileIdBlockCoordinator(file).reserve(50));
+        assertEquals(151L, new FileIdBlockCoordinator(file).reserve(1));
+        assertThrows(IllegalArgumentException.class, () -> new FileIdBlockCoordinator(file).reserve(0));
+    }
+
+    @Test
+    void idsFollowEachOtherAcrossLeases() {
+        AtomicInteger leases = new AtomicInteger();
+        long[] mark = {1L};
+        IdBlockCoordinator coordinator = (blockSize) -> {
+            leases.incrementAndGet();
+            synchronized (mark) {
+                long first = mark[0];
+                mark[0] += blockSize;
+                return first;
+            }
+        };
+
+        try (LeasedIDGenerator generator = new LeasedIDGenerator(coordinator, 8)) {
+            for (long expected = 1; expected <= 100; expected++) {
+                assertEquals(expected, generator.nextId());
+            }
+            assertTrue(generator.generateTransactionId().startsWith("TXN-"));
+        }
+        assertTrue(leases.get() >= 13);
+    }
+
+    @Test
+    void generatorsSharingALeaseFileNeverCollide() throws Exception {
+        Path file = root.resolve("lease");
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<LeasedIDGenerator> generators = new ArrayList<>();
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int g = 0; g < 4; g++) {
+                LeasedIDGenerator generator = new LeasedIDGenerator(new FileIdBlockCoordinator(file), 100);
+                generators.add(generator);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        if (!seen.add(generator.nextId())) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+            for (LeasedIDGenerator generator : generators) {
+                generator.close();
+            }
+        }
+        assertEquals(20_000, seen.size());
+    }
+
+    @Test
+    void rejectsEmptyBlocks() {
+        assertThrows(IllegalArgumentException.class, () -> new LeasedIDGenerator((blockSize) -> 1L, 0));
+    }
+}
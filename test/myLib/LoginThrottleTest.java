@@ -0,0 +1,90 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LoginThrottleTest {
+    @Test
+    void usernameBurstIsRateLimited() {
+        LoginThrottle throttle = new LoginThrottle(100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(LoginStatus.ADMITTED, throttle.admit("alice", "src-" + i));
+            throttle.complete("alice", true);
+        }
+        assertEquals(LoginStatus.RATE_LIMITED, throttle.admit("alice", "src-5"));
+        assertEquals(LoginStatus.ADMITTED, throttle.admit("bob", "src-5"));
+        assertEquals(1L, throttle.getRateLimitedCount());
+    }
+
+    @Test
+    void sourceBurstIsRateLimitedAcrossUsernames() {
+        LoginThrottle throttle = new LoginThrottle(100);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(LoginStatus.ADMITTED, throttle.admit("user-" + i, "10.0.0.1"));
+            throttle.complete("user-" + i, true);
+        }
+        assertEquals(LoginStatus.RATE_LIMITED, throttle.admit("user-50", "10.0.0.1"));
+        assertEquals(LoginStatus.ADMITTED, throttle.admit("user-50", "10.0.0.2"));
+    }
+
+    @Test
+    void repeatedFailuresLockTheUsernameOut() {
+        LoginThrottle throttle = new LoginThrottle(100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(LoginStatus.ADMITTED, throttle.admit("alice", "src"));
+            throttle.complete("alice", false);
+        }
+        assertEquals(LoginStatus.LOCKED_OUT, throttle.admit("alice", "src"));
+        assertEquals(5L, throttle.getFailedCount());
+        assertEquals(1L, throttle.getLockedOutCount());
+    }
+
+    @Test
+    void successClearsEarlierFailures() {
+        LoginThrottle throttle = new LoginThrottle(100);
+        for (int i = 0; i < 4; i++) {
+            throttle.recordResult("alice", false);
+        }
+        throttle.recordResult("alice", true);
+        throttle.recordResult("alice", false);
+        assertEquals(LoginStatus.ADMITTED, throttle.admit("alice", "src"));
+    }
+
+    @Test
+    void kdfPermitsCapWorkInFlight() {
+        LoginThrottle throttle = new LoginThrottle(2);
+        assertEquals(LoginStatus.ADMITTED, throttle.admit("alice", "src"));
+        assertEquals(LoginStatus.ADMITTED, throttle.admit("bob", "src"));
+        assertEquals(LoginStatus.BUSY, throttle.admit("carol", "src"));
+        assertEquals(0, throttle.getAvailableKdfPermits());
+
+        throttle.complete("alice", true);
+        throttle.release();
+        assertEquals(2, throttle.getAvailableKdfPermits());
+        assertEquals(LoginStatus.ADMITTED, throttle.admit("carol", "src"));
+    }
+
+    @Test
+    void refusedAttemptsDoNotSpendTheUsernamesAllowance() {
+        LoginThrottle throttle = new LoginThrottle(1);
+        for (int i = 0; i < 50; i++) {
+            throttle.admit("user-" + i, "attacker");
+            throttle.complete("user-" + i, true);
+        }
+        // The attacker's source is exhausted, and a busy server turns away everyone else
+        assertEquals(LoginStatus.ADMITTED, throttle.admit("holder", "elsewhere"));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(LoginStatus.RATE_LIMITED, throttle.admit("victim", "attacker"));
+            assertEquals(LoginStatus.BUSY, throttle.admit("victim", "source-" + i));
+        }
+        throttle.complete("holder", true);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(LoginStatus.ADMITTED, throttle.admit("victim", "home"));
+            throttle.complete("victim", true);
+        }
+        assertEquals(LoginStatus.RATE_LIMITED, throttle.admit("victim", "home"));
+        assertEquals(1, throttle.getAvailableKdfPermits());
+    }
+}
@@ -0,0 +1,155 @@
+package myLib;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordManagerTest {
+    @TempDir
+    Path root;
+
+    private CredentialStore store;
+    private PasswordManager manager;
+
+    @BeforeEach
+    void open() {
+        store = new CredentialStore(root.resolve("credentials"));
+        // A 1ms budget would calibrate far below the floor
+        manager = new PasswordManager(store, 2, 8, 1L);
+    }
+
+    @AfterEach
+    void close() {
+        manager.shutdown();
+        store.close();
+    }
+
+    // Encodes a credential the way PasswordManager does, with a chosen iteration count
+    private String credential(String password, int iterations) throws Exception {
+        byte[] salt = new byte[32];
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, 256);
+        byte[] hash = SecretKeyFactory.getInstance(manager.getAlgorithm()).generateSecret(spec).getEncoded();
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return "$pbkdf2-" + manager.getAlgorithm().substring("PBKDF2WithHmac".length()).toLowerCase()
+                + "$i=" + iterations + ",l=256$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    @Test
+    void calibrationNeverGoesBelowTheBaselineCost() {
+        assertTrue(manager.getIterations() >= 1_000_000, "iterations " + manager.getIterations());
+    }
+
+    @Test
+    void accountHashesAreSelfDescribing() {
+        String hash = manager.hashPasswordForAccount("secret");
+        assertTrue(hash.startsWith("$pbkdf2-"), hash);
+        assertTrue(hash.contains("$i=" + manager.getIterations() + ",l=256$"), hash);
+        assertTrue(manager.verifyAccountPassword("secret", hash));
+        assertFalse(manager.verifyAccountPassword("wrong", hash));
+        assertFalse(manager.verifyAccountPassword("secret", "not a credential"));
+    }
+
+    @Test
+    void weakerCredentialsAreUpgradedOnLogin() throws Exception {
+        String weak = credential("secret", 1000);
+        assertTrue(store.putIfAbsent("alice", weak));
+
+        assertEquals(LoginStatus.AUTHENTICATED, manager.authenticateUser("alice", "secret", "test"));
+        String upgraded = store.get("alice");
+        assertNotEquals(weak, upgraded);
+        assertTrue(upgraded.contains("$i=" + manager.getIterations() + ","), upgraded);
+    }
+
+    @Test
+    void strongerCredentialsAreNeverDowngraded() throws Exception {
+        String strong = credential("secret", manager.getIterations() * 2);
+        assertTrue(store.putIfAbsent("bob", strong));
+
+        assertEquals(LoginStatus.AUTHENTICATED, manager.authenticateUser("bob", "secret", "test"));
+        assertEquals(strong, store.get("bob"));
+    }
+
+    @Test
+    void userCountFollowsTheStore() throws Exception {
+        assertEquals(0, manager.getUserCount());
+        assertTrue(store.putIfAbsent("alice", credential("secret", 1000)));
+        assertTrue(store.putIfAbsent("bob", credential("secret", 1000)));
+        assertEquals(2, manager.getUserCount());
+        assertTrue(manager.removeUser("bob"));
+        assertEquals(1, manager.getUserCount());
+    }
+
+    @Test
+    void overloadsWithoutASourceAreThrottled() throws Exception {
+        assertTrue(store.putIfAbsent("carol", credential("secret", manager.getIterations())));
+        for (int i = 0; i < 5; i++) {
+            assertFalse(manager.authenticateUser("carol", "wrong"));
+        }
+        // Locked out now, so even the right password is refused without hashing
+        assertFalse(manager.authenticateUser("carol", "secret"));
+        assertFalse(manager.authenticateUserAsync("carol", "secret").join());
+        assertEquals(LoginStatus.LOCKED_OUT,
+                manager.authenticateUser("carol", "secret", PasswordManager.LOCAL_SOURCE));
+    }
+
+    @Test
+    void asyncRegistrationHashesOnThePool() {
+        assertTrue(manager.registerUserAsync("dave", "secret").join());
+        assertFalse(manager.registerUserAsync("dave", "other").join());
+        assertEquals(LoginStatus.AUTHENTICATED, manager.authenticateUserAsync("dave", "secret", "test").join());
+        assertEquals(LoginStatus.INVALID_CREDENTIALS, manager.authenticateUserAsync("nobody", "secret", "test").join());
+    }
+
+    @Test
+    void aFullHashingQueueRejectsInsteadOfBlocking() {
+        // One thread and one queued hash: the third concurrent registration has nowhere to go
+        PasswordManager small = new PasswordManager(store, 1, 1, 1L);
+        try {
+            CompletableFuture<Boolean> running = small.registerUserAsync("u1", "secret");
+            CompletableFuture<Boolean> queued = small.registerUserAsync("u2", "secret");
+            CompletableFuture<Boolean> rejected = small.registerUserAsync("u3", "secret");
+
+            CompletionException e = assertThrows(CompletionException.class, rejected::join);
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+            assertTrue(running.join());
+            assertTrue(queued.join());
+            assertEquals(0, small.getQueuedHashCount());
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void saltedLegacyHashesIgnoreTheCalibratedCost() throws Exception {
+        byte[] salt = manager.generateSaltForAccount();
+        PBEKeySpec spec = new PBEKeySpec("secret".toCharArray(), salt, 1_000_000, 256);
+        String expected = Base64.getEncoder().encodeToString(
+                SecretKeyFactory.getInstance(manager.getAlgorithm()).generateSecret(spec).getEncoded());
+
+        assertEquals(expected, manager.hashPasswordWithSalt("secret", salt));
+        // A manager calibrated to a much higher cost still produces the same legacy hash
+        PasswordManager slower = new PasswordManager(store, 1, 1, 10_000L);
+        try {
+            assertTrue(slower.getIterations() > 1_000_000, "iterations " + slower.getIterations());
+            assertEquals(expected, slower.hashPasswordWithSalt("secret", salt));
+        } finally {
+            slower.shutdown();
+        }
+    }
+}
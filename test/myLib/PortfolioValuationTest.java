@@ -0,0 +1,89 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PortfolioValuationTest {
+    private static Stock stock(String id, double price) {
+        return new Stock(id, id, price, price, 10, LocalDateTime.now(), "user-1", id, 0.0);
+    }
+
+    // Recomputes what the running totals should hold from the accounts themselves
+    private static void assertMatches(PortfolioValuation.Valuation valuation, List<Account> accounts) {
+        long cash = 0L;
+        long marketValue = 0L;
+        long costBasis = 0L;
+        long positions = 0L;
+        for (Account account : accounts) {
+            cash += account.getBalanceCents();
+            for (Investment investment : account.getInvestments()) {
+                marketValue += investment.getCurrentValueCents();
+                costBasis += investment.getCostBasisCents();
+                positions++;
+            }
+        }
+        assertEquals(cash, valuation.getCashCents());
+        assertEquals(marketValue, valuation.getMarketValueCents());
+        assertEquals(costBasis, valuation.getCostBasisCents());
+        assertEquals(marketValue - costBasis, valuation.getUnrealizedGainLossCents());
+        assertEquals(cash + marketValue, valuation.getNetWorthCents());
+        assertEquals(positions, valuation.getPositionCount());
+    }
+
+    @Test
+    void totalsFollowEveryChangeAfterAttach() {
+        CheckingAccount first = new CheckingAccount("ACC-1", "user-1", 0.0, null);
+        CheckingAccount second = new CheckingAccount("ACC-2", "user-1", 0.0, null);
+        first.depositCents(50_000, "D1");
+        Stock acme = stock("ACME", 10.0);
+        first.addInvestment(acme);
+
+        PortfolioValuation valuation = new PortfolioValuation();
+        valuation.attach(first);
+        valuation.attach(second);
+        valuation.attach(first);
+        assertMatches(valuation.getAccountValuation("ACC-1"), List.of(first));
+        assertMatches(valuation.getUserValuation("user-1"), List.of(first, second));
+
+        second.depositCents(20_000, "D2");
+        first.withdrawCents(5_000, "W1");
+        acme.updateCurrentPriceCents(1_250);
+        acme.purchaseInvestmentCents(4, 1_300);
+        acme.sellInvestment(6, LotReliefMethod.HIGHEST_COST);
+        Stock globex = stock("GLOBEX", 40.0);
+        second.addInvestment(globex);
+        globex.updateCurrentPriceCents(3_500);
+
+        assertMatches(valuation.getAccountValuation("ACC-1"), List.of(first));
+        assertMatches(valuation.getAccountValuation("ACC-2"), List.of(second));
+        assertMatches(valuation.getUserValuation("user-1"), List.of(first, second));
+    }
+
+    @Test
+    void detachRemovesTheAccountFromItsOwnersTotals() {
+        CheckingAccount first = new CheckingAccount("ACC-1", "user-1", 0.0, null);
+        CheckingAccount second = new CheckingAccount("ACC-2", "user-1", 0.0, null);
+        first.depositCents(10_000, "D1");
+        second.depositCents(30_000, "D2");
+        Stock acme = stock("ACME", 10.0);
+        first.addInvestment(acme);
+
+        PortfolioValuation valuation = new PortfolioValuation();
+        valuation.attach(first);
+        valuation.attach(second);
+        valuation.detach(first);
+
+        // Later changes to the detached account no longer count
+        first.depositCents(10_000, "D3");
+        acme.updateCurrentPriceCents(2_000);
+
+        assertNull(valuation.getAccountValuation("ACC-1"));
+        assertMatches(valuation.getUserValuation("user-1"), List.of(second));
+        assertNull(valuation.getUserValuation("user-2"));
+    }
+}
@@ -0,0 +1,242 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostingLogTest {
+    private static final long SEGMENT_SIZE = 1024L;
+
+    @TempDir
+    Path root;
+
+    private static PostingLog open(Path directory) {
+        return new PostingLog(directory, SyncPolicy.PER_OP, SEGMENT_SIZE, 1, 50L);
+    }
+
+    private static long append(PostingLog log, String description) {
+        Transaction transaction = Transaction.Builder
+                .ofCents("TXN-" + description, "ACC-1", 100L, TransactionType.DEPOSIT, description).build();
+        long lsn = log.append("ACC-1", transaction, 100L, 100L);
+        log.commit(lsn);
+        return lsn;
+    }
+
+    // LSN and description of every record replayed, in replay order
+    private static List<String> replay(Path directory) {
+        List<String> records = new ArrayList<>();
+        try (PostingLog log = open(directory)) {
+            log.replay(0L, new PostingLog.ReplayHandler() {
+                @Override
+                public void onAccountOpened(long lsn, Account account) {
+                }
+
+                @Override
+                public void onPosting(PostingRecord record) {
+                    records.add(record.getLsn() + ":" + record.getDescription());
+                }
+
+                @Override
+                public void onHolding(long lsn, String accountId, Investment investment) {
+                }
+
+                @Override
+                public void onPreference(long lsn, String userId, notificationType preference) {
+                }
+
+                @Override
+                public void onDayClosed(long lsn, String accountId, long businessDay, List<PostingRecord> postings) {
+                }
+            });
+        }
+        return records;
+    }
+
+    private static long lastLsn(Path directory) {
+        try (PostingLog log = open(directory)) {
+            return log.getLastLsn();
+        }
+    }
+
+    private static Path firstSegment(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().findFirst().orElseThrow();
+        }
+    }
+
+    // Start offsets of the records in a segment, walked through their length prefixes
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segment));
+        List<Integer> offsets = new ArrayList<>();
+        int position = 0;
+        while (position + 4 <= bytes.limit() && bytes.getInt(position) != 0) {
+            offsets.add(position);
+            position += bytes.getInt(position);
+        }
+        offsets.add(position);
+        return offsets;
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    @Test
+    void aRecordTornAtAnyByteIsDroppedAndOverwritten() throws IOException {
+        Path original = root.resolve("original");
+        try (PostingLog log = open(original)) {
+            for (int i = 1; i <= 5; i++) {
+                append(log, "P" + i);
+            }
+        }
+        List<Integer> offsets = recordOffsets(firstSegment(original));
+        int lastStart = offsets.get(4);
+        int end = offsets.get(5);
+
+        for (int cut = lastStart; cut < end; cut++) {
+            Path torn = root.resolve("torn-" + cut);
+            copy(original, torn);
+            try (FileChannel channel = FileChannel.open(firstSegment(torn), StandardOpenOption.WRITE)) {
+                channel.truncate(cut);
+            }
+
+            assertEquals(4L, lastLsn(torn), "cut at " + cut);
+            assertEquals(List.of("1:P1", "2:P2", "3:P3", "4:P4"), replay(torn), "cut at " + cut);
+
+            try (PostingLog log = open(torn)) {
+                assertEquals(5L, append(log, "N5"));
+            }
+            assertEquals(List.of("1:P1", "2:P2", "3:P3", "4:P4", "5:N5"), replay(torn), "cut at " + cut);
+        }
+    }
+
+    @Test
+    void staleRecordsBehindARecoveredTailAreNeverReplayed() throws IOException {
+        Path directory = root.resolve("wal");
+        try (PostingLog log = open(directory)) {
+            for (int i = 1; i <= 5; i++) {
+                append(log, "P" + i);
+            }
+        }
+        Path segment = firstSegment(directory);
+        int third = recordOffsets(segment).get(2);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer flipped = ByteBuffer.allocate(1);
+            channel.read(flipped, third + 20);
+            flipped.put(0, (byte) ~flipped.get(0));
+            flipped.rewind();
+            channel.write(flipped, third + 20);
+        }
+
+        // The replacement has the same length, so records 4 and 5 still sit at the next offsets
+        try (PostingLog log = open(directory)) {
+            assertEquals(2L, log.getLastLsn());
+            assertEquals(3L, append(log, "Q3"));
+        }
+
+        assertEquals(3L, lastLsn(directory));
+        assertEquals(List.of("1:P1", "2:P2", "3:Q3"), replay(directory));
+    }
+
+    @Test
+    void recordsRotateAcrossSegmentsWithoutGaps() throws IOException {
+        Path directory = root.resolve("wal");
+        List<String> expected = new ArrayList<>();
+        try (PostingLog log = open(directory)) {
+            for (int i = 1; i <= 60; i++) {
+                String description = "P" + i + "-" + "x".repeat(i % 37);
+                assertEquals(i, append(log, description));
+                expected.add(i + ":" + description);
+            }
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 2);
+        }
+        assertEquals(expected, replay(directory));
+
+        try (PostingLog log = open(directory)) {
+            assertEquals(60L, log.getLastLsn());
+            assertEquals(61L, append(log, "P61"));
+        }
+        assertEquals(61, replay(directory).size());
+    }
+
+    @Test
+    void perOpSyncsEveryCommit() {
+        try (PostingLog log = new PostingLog(root.resolve("wal"), SyncPolicy.PER_OP, SEGMENT_SIZE, 4, 60_000L)) {
+            long lsn = append(log, "P1");
+            assertEquals(lsn, log.getSyncedLsn());
+        }
+    }
+
+    @Test
+    void batchedSyncsOnceABatchIsPending() {
+        try (PostingLog log = new PostingLog(root.resolve("wal"), SyncPolicy.BATCHED, SEGMENT_SIZE, 4, 60_000L)) {
+            for (int i = 1; i <= 3; i++) {
+                append(log, "P" + i);
+            }
+            assertEquals(0L, log.getSyncedLsn());
+
+            append(log, "P4");
+            assertEquals(4L, log.getSyncedLsn());
+        }
+    }
+
+    @Test
+    void batchedSyncsAPartialBatchWithinTheInterval() throws InterruptedException {
+        try (PostingLog log = new PostingLog(root.resolve("wal"), SyncPolicy.BATCHED, SEGMENT_SIZE, 256, 20L)) {
+            long lsn = append(log, "P1");
+            assertTrue(awaitSynced(log, lsn));
+        }
+    }
+
+    @Test
+    void intervalSyncsOnlyOnTheTimer() throws InterruptedException {
+        try (PostingLog log = new PostingLog(root.resolve("wal"), SyncPolicy.INTERVAL, SEGMENT_SIZE, 1, 60_000L)) {
+            append(log, "P1");
+            assertEquals(0L, log.getSyncedLsn());
+        }
+        try (PostingLog log = new PostingLog(root.resolve("timed"), SyncPolicy.INTERVAL, SEGMENT_SIZE, 1, 20L)) {
+            long lsn = append(log, "P1");
+            assertTrue(awaitSynced(log, lsn));
+        }
+    }
+
+    @Test
+    void closeSyncsWhateverIsPending() {
+        PostingLog log = new PostingLog(root.resolve("wal"), SyncPolicy.INTERVAL, SEGMENT_SIZE, 1, 60_000L);
+        long lsn = append(log, "P1");
+        log.close();
+        assertEquals(lsn, log.getSyncedLsn());
+    }
+
+    private static boolean awaitSynced(PostingLog log, long lsn) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (log.getSyncedLsn() < lsn) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10L);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceFeedTest {
+    private static Stock stock(String id, String ticker) {
+        return new Stock(id, ticker, 10.0, 10.0, 10, LocalDateTime.now(), "user-1", ticker, 0.0);
+    }
+
+    @Test
+    void parsesPricesIntoCents() {
+        assertEquals(12345L, PriceFeed.parseCents("123.45", 0, 6));
+        assertEquals(12300L, PriceFeed.parseCents(" 123 ", 0, 5));
+        assertEquals(1235L, PriceFeed.parseCents("12.345", 0, 6));
+        assertEquals(1234L, PriceFeed.parseCents("12.344", 0, 6));
+        assertEquals(50L, PriceFeed.parseCents(".5", 0, 2));
+        assertEquals(-1L, PriceFeed.parseCents("12a", 0, 3));
+        assertEquals(-1L, PriceFeed.parseCents("-1", 0, 2));
+        assertEquals(-1L, PriceFeed.parseCents("  ", 0, 2));
+    }
+
+    @Test
+    void appliesOnTheCallerWhenNoDispatcherRuns() throws IOException {
+        PriceHistory history = new PriceHistory();
+        PriceFeed feed = new PriceFeed(history);
+        Stock a = stock("INV-1", "ACME");
+        Stock b = stock("INV-2", "acme");
+        feed.register(a);
+        feed.register(b);
+
+        feed.ingest(new StringReader("# header\nACME,11.00\n acme ,12.50\nNOPE,1\nbad line\nACME,x\n\n"));
+        assertEquals(1000L, a.getCurrentPriceCents());
+        assertTrue(feed.awaitApplied());
+
+        assertEquals(1250L, a.getCurrentPriceCents());
+        assertEquals(1250L, b.getCurrentPriceCents());
+        assertEquals(1250L, history.getLatestPriceCents("ACME"));
+        assertEquals(1, feed.getTickerCount());
+        assertEquals(3L, feed.getTicksReceived());
+        assertEquals(1L, feed.getTicksUnknown());
+        assertEquals(2L, feed.getTicksMalformed());
+        assertEquals(1L, feed.getTicksConflated());
+        assertEquals(2L, feed.getHoldingsRepriced());
+    }
+
+    @Test
+    void awaitAppliedSeesTheLatestPriceOfEveryImport() throws IOException {
+        Stock stock = stock("INV-1", "ACME");
+        try (PriceFeed feed = new PriceFeed()) {
+            feed.register(stock);
+            feed.start();
+            for (int round = 1; round <= 200; round++) {
+                StringBuilder ticks = new StringBuilder();
+                for (int i = 1; i <= 50; i++) {
+                    ticks.append("ACME,").append(round).append('.').append(i < 10 ? "0" : "").append(i).append('\n');
+                }
+                feed.ingest(new StringReader(ticks.toString()));
+                assertTrue(feed.awaitApplied());
+                assertEquals(round * 100L + 50L, stock.getCurrentPriceCents());
+            }
+        }
+    }
+
+    @Test
+    void closeAppliesWhatIsPendingAndLaterImportsStillApply() {
+        Stock stock = stock("INV-1", "ACME");
+        PriceFeed feed = new PriceFeed();
+        feed.register(stock);
+        feed.start();
+        feed.onTick("ACME", 2000L);
+        feed.close();
+        assertEquals(2000L, stock.getCurrentPriceCents());
+
+        feed.onTick("ACME", 2100L);
+        assertTrue(feed.awaitApplied());
+        assertEquals(2100L, stock.getCurrentPriceCents());
+
+        feed.unregister(stock);
+        feed.onTick("ACME", 2200L);
+        assertTrue(feed.awaitApplied());
+        assertEquals(2100L, stock.getCurrentPriceCents());
+    }
+}
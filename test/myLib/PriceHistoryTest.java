@@ -0,0 +1,166 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceHistoryTest {
+    private static final long START = 1_700_000_000_000L;
+
+    // Several blocks of ticks mixing regular spacing, jitter, repeats, long gaps, flat runs and jumps
+    private static long[][] ticks(long seed, int count) {
+        Random random = new Random(seed);
+        long[][] ticks = new long[count][2];
+        long time = START;
+        long price = 10_000L;
+        for (int i = 0; i < count; i++) {
+            int shape = random.nextInt(10);
+            if (shape < 5) {
+                time += 1000;
+            } else if (shape < 7) {
+                time += random.nextInt(5000);
+            } else if (shape < 8) {
+                time += 0;
+            } else if (shape < 9) {
+                time += random.nextInt(86_400_000);
+            } else {
+                time += (long) random.nextInt(Integer.MAX_VALUE) * 1000L;
+            }
+
+            int move = random.nextInt(10);
+            if (move < 3) {
+                price += 0;
+            } else if (move < 8) {
+                price = Math.max(0L, price + random.nextInt(21) - 10);
+            } else if (move < 9) {
+                price = random.nextInt(1_000_000);
+            } else {
+                price = random.nextLong() >>> 2;
+            }
+            ticks[i][0] = time;
+            ticks[i][1] = price;
+        }
+        return ticks;
+    }
+
+    private static PriceHistory record(long[][] ticks) {
+        PriceHistory history = new PriceHistory();
+        for (long[] tick : ticks) {
+            assertTrue(history.record("acme", tick[0], tick[1]));
+        }
+        return history;
+    }
+
+    private static List<long[]> scan(PriceHistory history, long from, long to) {
+        List<long[]> visited = new ArrayList<>();
+        long count = history.scan(" ACME", from, to, (time, price) -> visited.add(new long[]{time, price}));
+        assertEquals(visited.size(), count);
+        return visited;
+    }
+
+    private static void assertSameTicks(long[][] ticks, long from, long to, List<long[]> visited) {
+        int next = 0;
+        for (long[] tick : ticks) {
+            if (tick[0] >= from && tick[0] < to) {
+                assertEquals(tick[0], visited.get(next)[0], "time of tick " + next);
+                assertEquals(tick[1], visited.get(next)[1], "price of tick " + next);
+                next++;
+            }
+        }
+        assertEquals(next, visited.size());
+    }
+
+    @Test
+    void scansReturnExactlyWhatWasRecorded() {
+        long[][] ticks = ticks(1L, 5000);
+        PriceHistory history = record(ticks);
+        long end = ticks[ticks.length - 1][0] + 1;
+        assertSameTicks(ticks, START, end, scan(history, Long.MIN_VALUE, Long.MAX_VALUE));
+
+        Random random = new Random(2L);
+        for (int i = 0; i < 200; i++) {
+            long[] from = ticks[random.nextInt(ticks.length)];
+            long[] to = ticks[random.nextInt(ticks.length)];
+            long low = Math.min(from[0], to[0]) + random.nextInt(3) - 1;
+            long high = Math.max(from[0], to[0]) + random.nextInt(3) - 1;
+            assertSameTicks(ticks, low, high, scan(history, low, high));
+        }
+        assertEquals(0L, history.scan("ACME", end, START, (time, price) -> { }));
+        assertEquals(0L, history.scan("OTHER", START, end, (time, price) -> { }));
+    }
+
+    @Test
+    void barsMatchABruteForceDownsample() {
+        long[][] ticks = ticks(3L, 5000);
+        PriceHistory history = record(ticks);
+        // Small intervals split blocks; the largest lets whole blocks fall inside one bar
+        long[] intervals = {1000L, 60_000L, 3_600_000L, 86_400_000L, 1L << 50};
+        long from = ticks[100][0];
+        long to = ticks[4500][0];
+        for (long interval : intervals) {
+            List<PriceHistory.Bar> bars = history.ohlc("ACME", from, to, interval);
+            List<long[]> expected = new ArrayList<>();
+            for (long[] tick : ticks) {
+                if (tick[0] < from || tick[0] >= to) {
+                    continue;
+                }
+                long bucket = Math.floorDiv(tick[0], interval);
+                long[] bar = expected.isEmpty() ? null : expected.get(expected.size() - 1);
+                if (bar == null || bar[0] != bucket * interval) {
+                    expected.add(new long[]{bucket * interval, tick[1], tick[1], tick[1], tick[1], 1});
+                } else {
+                    bar[2] = Math.max(bar[2], tick[1]);
+                    bar[3] = Math.min(bar[3], tick[1]);
+                    bar[4] = tick[1];
+                    bar[5]++;
+                }
+            }
+
+            assertEquals(expected.size(), bars.size(), "interval " + interval);
+            for (int i = 0; i < bars.size(); i++) {
+                PriceHistory.Bar bar = bars.get(i);
+                long[] want = expected.get(i);
+                String label = "interval " + interval + " bar " + i;
+                assertEquals(want[0], bar.getStartMillis(), label);
+                assertEquals(want[1], bar.getOpenCents(), label);
+                assertEquals(want[2], bar.getHighCents(), label);
+                assertEquals(want[3], bar.getLowCents(), label);
+                assertEquals(want[4], bar.getCloseCents(), label);
+                assertEquals(want[5], bar.getTicks(), label);
+            }
+        }
+    }
+
+    @Test
+    void outOfOrderTicksAreRejected() {
+        PriceHistory history = new PriceHistory();
+        assertTrue(history.record("ACME", START, 100L));
+        assertTrue(history.record("ACME", START, 101L));
+        assertFalse(history.record("ACME", START - 1, 99L));
+        assertEquals(101L, history.getLatestPriceCents("acme"));
+        assertEquals(-1L, history.getLatestPriceCents("OTHER"));
+        assertEquals(2L, history.getPointsRecorded());
+        assertEquals(1L, history.getPointsRejected());
+        assertEquals(1, history.getTickerCount());
+    }
+
+    @Test
+    void regularTicksWithSmallMovesCompressWell() {
+        PriceHistory history = new PriceHistory();
+        Random random = new Random(4L);
+        long price = 10_000L;
+        for (int i = 0; i < 100_000; i++) {
+            price += random.nextInt(5) - 2;
+            history.record("ACME", START + i * 1000L, price);
+        }
+        assertEquals(price, history.getLatestPriceCents("ACME"));
+        // 16 bytes a point uncompressed
+        assertTrue(history.getCompressedBytes() < 100_000L * 2, "bytes " + history.getCompressedBytes());
+    }
+}
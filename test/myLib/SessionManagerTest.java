@@ -0,0 +1,99 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SessionManagerTest {
+    private static byte[] key(int fill) {
+        byte[] key = new byte[32];
+        Arrays.fill(key, (byte) fill);
+        return key;
+    }
+
+    @Test
+    void issuedTokensValidate() {
+        SessionManager sessions = new SessionManager();
+        String token = sessions.createSession("user|with|pipes");
+        SessionManager.Session session = sessions.validate(token);
+        assertNotNull(session);
+        assertEquals("user|with|pipes", session.getUserId());
+        assertEquals(session.getIssuedAtMillis() + 15 * 60 * 1000L, session.getExpiresAtMillis());
+    }
+
+    @Test
+    void tamperedOrMalformedTokensAreRejected() {
+        SessionManager sessions = new SessionManager();
+        String token = sessions.createSession("alice");
+        int dot = token.indexOf('.');
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+        String payload = new String(decoder.decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+        String forged = encoder.encodeToString(payload.replace("alice", "mallory").getBytes(StandardCharsets.UTF_8))
+                + token.substring(dot);
+        assertNull(sessions.validate(forged));
+
+        assertNull(sessions.validate(null));
+        assertNull(sessions.validate("no-dot"));
+        assertNull(sessions.validate(token.substring(0, dot + 1)));
+        assertNull(sessions.validate(token.substring(0, dot) + ".!!!"));
+    }
+
+    @Test
+    void onlyNodesSharingTheKeyAcceptTheToken() {
+        String token = new SessionManager(key(1), 60_000L, 600_000L).createSession("alice");
+        assertNotNull(new SessionManager(key(1), 60_000L, 600_000L).validate(token));
+        assertNull(new SessionManager(key(2), 60_000L, 600_000L).validate(token));
+    }
+
+    @Test
+    void tokensExpireAfterTheIdleTimeout() throws InterruptedException {
+        SessionManager sessions = new SessionManager(key(1), 300L, 600_000L);
+        String token = sessions.createSession("alice");
+        assertNotNull(sessions.validate(token));
+        Thread.sleep(400L);
+        assertNull(sessions.validate(token));
+        assertNull(sessions.refresh(token));
+    }
+
+    @Test
+    void refreshExtendsTheSameSessionUpToTheMaximumLifetime() throws InterruptedException {
+        SessionManager sessions = new SessionManager(key(1), 1_000L, 1_250L);
+        String token = sessions.createSession("alice");
+        // Still fresh, so nothing to re-sign
+        assertSame(token, sessions.refresh(token));
+
+        Thread.sleep(600L);
+        String refreshed = sessions.refresh(token);
+        assertNotEquals(token, refreshed);
+        SessionManager.Session original = sessions.validate(token);
+        SessionManager.Session extended = sessions.validate(refreshed);
+        assertEquals(original.getSessionId(), extended.getSessionId());
+        assertEquals(original.getIssuedAtMillis() + 1_250L, extended.getExpiresAtMillis());
+    }
+
+    @Test
+    void revokingASessionInvalidatesRefreshedTokensToo() throws InterruptedException {
+        SessionManager sessions = new SessionManager(key(1), 1_000L, 60_000L);
+        String token = sessions.createSession("alice");
+        Thread.sleep(600L);
+        String refreshed = sessions.refresh(token);
+        assertNotEquals(token, refreshed);
+
+        sessions.revoke(token);
+        assertNull(sessions.validate(token));
+        assertNull(sessions.validate(refreshed));
+        assertEquals(1, sessions.getRevokedCount());
+        sessions.purgeRevocations();
+        assertEquals(1, sessions.getRevokedCount());
+    }
+}
@@ -0,0 +1,50 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementGeneratorTest {
+    @TempDir
+    Path root;
+
+    @Test
+    void printsTransfersInAndOutOnSeparateLines() throws IOException {
+        CheckingAccount a = new CheckingAccount("ACC-1", "user-1", 0.0, null);
+        CheckingAccount b = new CheckingAccount("ACC-2", "user-1", 0.0, null);
+        a.depositCents(10_000, "D1");
+        b.depositCents(5_000, "D2");
+        TransferEngine engine = new TransferEngine();
+        engine.transfer(a, b, 2_500L, "T1");
+        engine.transfer(b, a, 700L, "T2");
+
+        YearMonth period = YearMonth.now();
+        String statement = Files.readString(new StatementGenerator(root, 1).generate(a, period));
+        assertTrue(statement.contains("Transfers in: $7.00\n"), statement);
+        assertTrue(statement.contains("Transfers out: $25.00\n"), statement);
+        assertTrue(statement.contains("Closing balance: $82.00\n"), statement);
+    }
+
+    @Test
+    void batchGenerationWritesOneStatementPerAccount() throws IOException {
+        CheckingAccount a = new CheckingAccount("ACC-1", "user-1", 0.0, null);
+        SavingsAccount b = new SavingsAccount("ACC-2", "user-1", 0.01, null);
+        a.depositCents(1_000, "D1");
+        b.depositCents(2_000, "D2");
+
+        YearMonth period = YearMonth.now();
+        StatementGenerator.Report report = new StatementGenerator(root, 2).generate(List.of(a, b), period);
+        assertEquals(2, report.getStatements());
+        assertEquals(2, report.getTransactions());
+        assertTrue(Files.exists(root.resolve(period.toString()).resolve("ACC-1.txt")));
+        assertTrue(Files.exists(root.resolve(period.toString()).resolve("ACC-2.txt")));
+    }
+}
@@ -0,0 +1,162 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TaxLotLedgerTest {
+    private static final LocalDateTime ACQUIRED = LocalDateTime.of(2024, 1, 2, 10, 0);
+
+    // Lots of 10 at 100, 300 and 200 cents a share
+    private static TaxLotLedger threeLots() {
+        TaxLotLedger ledger = new TaxLotLedger();
+        ledger.buy(10, 100L, ACQUIRED);
+        ledger.buy(10, 300L, ACQUIRED.plusDays(1));
+        ledger.buy(10, 200L, ACQUIRED.plusDays(2));
+        return ledger;
+    }
+
+    @Test
+    void fifoRelievesTheOldestLotsFirst() {
+        TaxLotLedger ledger = threeLots();
+        TaxLotLedger.Sale sale = ledger.sell(15, 250L, LotReliefMethod.FIFO);
+        assertEquals(10 * 100L + 5 * 300L, sale.getCostBasisCents());
+        assertEquals(15 * 250L, sale.getProceedsCents());
+        assertEquals(2, sale.getLotsRelieved());
+        assertEquals(2, ledger.getOpenLotCount());
+        assertEquals(5, ledger.getLot(2L).getQuantity());
+    }
+
+    @Test
+    void lifoRelievesTheNewestLotsFirst() {
+        TaxLotLedger ledger = threeLots();
+        TaxLotLedger.Sale sale = ledger.sell(15, 250L, LotReliefMethod.LIFO);
+        assertEquals(10 * 200L + 5 * 300L, sale.getCostBasisCents());
+        assertNull(ledger.getLot(3L));
+        assertEquals(5, ledger.getLot(2L).getQuantity());
+    }
+
+    @Test
+    void highestCostRelievesTheDearestLotsFirst() {
+        TaxLotLedger ledger = threeLots();
+        TaxLotLedger.Sale sale = ledger.sell(15, 250L, LotReliefMethod.HIGHEST_COST);
+        assertEquals(10 * 300L + 5 * 200L, sale.getCostBasisCents());
+        assertEquals(15 * 250L - (10 * 300L + 5 * 200L), sale.getRealizedGainCents());
+        assertEquals(sale.getRealizedGainCents(), ledger.getRealizedGainCents());
+    }
+
+    @Test
+    void specificLotSalesNeedAnOpenLot() {
+        TaxLotLedger ledger = threeLots();
+        TaxLotLedger.Sale sale = ledger.sellLot(3L, 10, 250L);
+        assertEquals(10 * 200L, sale.getCostBasisCents());
+        assertEquals(List.of(1L, 2L), List.of(ledger.getOpenLots().get(0).getLotId(), ledger.getOpenLots().get(1).getLotId()));
+
+        assertThrows(IllegalArgumentException.class, () -> ledger.sellLot(3L, 1, 250L));
+        assertThrows(IllegalArgumentException.class, () -> ledger.sellLot(1L, 11, 250L));
+        assertThrows(IllegalArgumentException.class, () -> ledger.sell(1, 250L, LotReliefMethod.SPECIFIC_LOT));
+        assertThrows(IllegalArgumentException.class, () -> ledger.sell(21, 250L, LotReliefMethod.FIFO));
+        assertThrows(IllegalArgumentException.class, () -> ledger.sell(0, 250L, LotReliefMethod.FIFO));
+        assertThrows(IllegalArgumentException.class, () -> ledger.buy(0, 250L, ACQUIRED));
+        assertEquals(20L, ledger.getOpenQuantity());
+    }
+
+    // Mixes every method over many lots and checks each sale against a plain list of lots
+    @Test
+    void randomSalesMatchABruteForceLedger() {
+        Random random = new Random(7L);
+        TaxLotLedger ledger = new TaxLotLedger();
+        // {lot id, unit cost, open quantity} in acquisition order
+        List<long[]> model = new ArrayList<>();
+        long realized = 0L;
+
+        for (int step = 0; step < 20_000; step++) {
+            long open = model.stream().mapToLong(lot -> lot[2]).sum();
+            if (open == 0 || random.nextInt(3) == 0) {
+                int quantity = 1 + random.nextInt(20);
+                long cost = 1 + random.nextInt(50);
+                model.add(new long[]{ledger.buy(quantity, cost, ACQUIRED.plusSeconds(step)), cost, quantity});
+                continue;
+            }
+
+            long price = 1 + random.nextInt(50);
+            LotReliefMethod method = LotReliefMethod.values()[random.nextInt(LotReliefMethod.values().length)];
+            TaxLotLedger.Sale sale;
+            long expectedCost = 0L;
+            if (method == LotReliefMethod.SPECIFIC_LOT) {
+                long[] lot = model.get(random.nextInt(model.size()));
+                int quantity = 1 + random.nextInt((int) lot[2]);
+                sale = ledger.sellLot(lot[0], quantity, price);
+                expectedCost = lot[1] * quantity;
+                lot[2] -= quantity;
+            } else {
+                int remaining = 1 + random.nextInt((int) Math.min(open, 60));
+                sale = ledger.sell(remaining, price, method);
+                while (remaining > 0) {
+                    long[] lot = next(model, method);
+                    long relieved = Math.min(remaining, lot[2]);
+                    expectedCost += lot[1] * relieved;
+                    lot[2] -= relieved;
+                    remaining -= relieved;
+                }
+            }
+            model.removeIf(lot -> lot[2] == 0);
+            realized += sale.getRealizedGainCents();
+
+            assertEquals(expectedCost, sale.getCostBasisCents(), "step " + step + " " + method);
+            assertEquals(model.size(), ledger.getOpenLotCount());
+            assertEquals(model.stream().mapToLong(lot -> lot[2]).sum(), ledger.getOpenQuantity());
+            assertEquals(model.stream().mapToLong(lot -> lot[1] * lot[2]).sum(), ledger.getOpenCostCents());
+        }
+        assertEquals(realized, ledger.getRealizedGainCents());
+        List<TaxLot> lots = ledger.getOpenLots();
+        for (int i = 0; i < model.size(); i++) {
+            assertEquals(model.get(i)[0], lots.get(i).getLotId());
+            assertEquals(model.get(i)[2], lots.get(i).getQuantity());
+        }
+    }
+
+    private static long[] next(List<long[]> model, LotReliefMethod method) {
+        switch (method) {
+            case FIFO:
+                return model.stream().filter(lot -> lot[2] > 0).findFirst().orElseThrow();
+            case LIFO:
+                for (int i = model.size() - 1; i >= 0; i--) {
+                    if (model.get(i)[2] > 0) {
+                        return model.get(i);
+                    }
+                }
+                throw new AssertionError("no open lot");
+            default:
+                long[] best = null;
+                for (long[] lot : model) {
+                    if (lot[2] > 0 && (best == null || lot[1] > best[1])) {
+                        best = lot;
+                    }
+                }
+                return best;
+        }
+    }
+
+    @Test
+    void restoreReinstatesLotsAndCounters() {
+        TaxLotLedger source = threeLots();
+        source.sell(5, 400L, LotReliefMethod.FIFO);
+
+        TaxLotLedger restored = new TaxLotLedger();
+        restored.restore(source.getNextLotId(), source.getRealizedGainCents(), source.getOpenLots());
+        assertEquals(source.getOpenQuantity(), restored.getOpenQuantity());
+        assertEquals(source.getOpenCostCents(), restored.getOpenCostCents());
+        assertEquals(source.getRealizedGainCents(), restored.getRealizedGainCents());
+        assertEquals(source.getUnrealizedGainCents(500L), restored.getUnrealizedGainCents(500L));
+        assertEquals(4L, restored.buy(1, 100L, ACQUIRED.plusDays(3)));
+        assertEquals(5L * 100L, restored.sell(5, 100L, LotReliefMethod.FIFO).getCostBasisCents());
+    }
+}
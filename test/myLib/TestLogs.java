@@ -0,0 +1,41 @@
+package myLib;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+// Posting log fixtures shared by the tests that restore accounts from the log. Logs live in
+// root/wal and snapshots in root/snapshots.
+final class TestLogs {
+    private static final long SEGMENT_SIZE = 64 * 1024;
+
+    private TestLogs() {
+    }
+
+    static PostingLog open(Path root) {
+        return open(root, SEGMENT_SIZE);
+    }
+
+    static PostingLog open(Path root, long segmentSize) {
+        return new PostingLog(root.resolve("wal"), SyncPolicy.PER_OP, segmentSize, 1, 50L);
+    }
+
+    // Logs the account's opening and routes its postings through the log
+    static <T extends Account> T attach(PostingLog log, T account) {
+        log.appendAccountOpen(account);
+        account.attachPostingLog(log);
+        return account;
+    }
+
+    static CheckingAccount checking(PostingLog log, String accountId) {
+        return attach(log, new CheckingAccount(accountId, "user-1", 0.0, null));
+    }
+
+    static Map<String, Account> restore(Path root) {
+        PostingLog log = open(root);
+        try {
+            return BankSnapshot.restore(root.resolve("snapshots"), log, 1).getAccounts();
+        } finally {
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionJournalTest {
+
+    private static void append(TransactionJournal journal, long millis, long cents) {
+        journal.append(millis, cents, TransactionType.DEPOSIT, "T" + millis, "A1", null, "Deposit", null);
+    }
+
+    @Test
+    void outOfOrderTimestampIsKeptAsRecorded() {
+        TransactionJournal journal = new TransactionJournal();
+        append(journal, 1_000L, 100L);
+        append(journal, 3_000L, 100L);
+        append(journal, 2_000L, 100L);
+
+        assertEquals(2_000L, journal.getTimestampMillis(2));
+        assertEquals(1, journal.getOutOfOrderCount());
+    }
+
+    @Test
+    void lowerBoundUsesPostingOrder() {
+        TransactionJournal journal = new TransactionJournal();
+        append(journal, 1_000L, 100L);
+        append(journal, 3_000L, 100L);
+        append(journal, 2_000L, 100L);
+        append(journal, 4_000L, 100L);
+
+        assertEquals(0, journal.lowerBound(0L));
+        assertEquals(1, journal.lowerBound(1_500L));
+        assertEquals(3, journal.lowerBound(3_500L));
+        assertEquals(4, journal.lowerBound(5_000L));
+    }
+
+    @Test
+    void queryPagesThroughRange() {
+        TransactionJournal journal = new TransactionJournal();
+        for (int i = 0; i < 10; i++) {
+            append(journal, i * 1_000L, i);
+        }
+
+        HistoryPage first = journal.query(new HistoryQuery.Builder()
+                .from(TransactionJournal.toLocalDateTime(2_000L))
+                .to(TransactionJournal.toLocalDateTime(8_000L))
+                .limit(4).oldestFirst().build());
+        assertEquals(4, first.getTransactions().size());
+        assertEquals(2L, first.getTransactions().get(0).getAmountCents());
+
+        HistoryPage second = journal.query(new HistoryQuery.Builder()
+                .from(TransactionJournal.toLocalDateTime(2_000L))
+                .to(TransactionJournal.toLocalDateTime(8_000L))
+                .limit(4).oldestFirst().cursor(first.getNextCursor()).build());
+        assertEquals(2, second.getTransactions().size());
+        assertEquals(7L, second.getTransactions().get(1).getAmountCents());
+    }
+
+    private static List<String> ids(HistoryPage page) {
+        return page.getTransactions().stream().map(Transaction::getTransactionId).collect(Collectors.toList());
+    }
+
+    // Follows the cursor to the last page, returning the transaction ids in the order served
+    private static List<String> allPages(TransactionJournal journal, HistoryQuery.Builder query) {
+        List<String> served = new ArrayList<>();
+        HistoryPage page = journal.query(query.build());
+        served.addAll(ids(page));
+        while (page.hasMore()) {
+            page = journal.query(query.cursor(page.getNextCursor()).build());
+            served.addAll(ids(page));
+        }
+        return served;
+    }
+
+    @Test
+    void queryMatchesOutOfOrderEntriesOnTheirRecordedTime() {
+        TransactionJournal journal = new TransactionJournal();
+        append(journal, 1_000L, 1L);
+        append(journal, 3_000L, 1L);
+        append(journal, 2_000L, 1L);
+        append(journal, 4_000L, 1L);
+        append(journal, 500L, 1L);
+
+        HistoryQuery.Builder middle = new HistoryQuery.Builder()
+                .from(TransactionJournal.toLocalDateTime(1_500L))
+                .to(TransactionJournal.toLocalDateTime(2_500L));
+        assertEquals(List.of("T2000"), ids(journal.query(middle.build())));
+
+        HistoryQuery.Builder early = new HistoryQuery.Builder()
+                .to(TransactionJournal.toLocalDateTime(1_500L));
+        assertEquals(List.of("T500", "T1000"), ids(journal.query(early.build())));
+        assertEquals(List.of("T1000", "T500"), ids(journal.query(early.oldestFirst().build())));
+
+        HistoryQuery.Builder late = new HistoryQuery.Builder()
+                .from(TransactionJournal.toLocalDateTime(3_000L))
+                .oldestFirst();
+        assertEquals(List.of("T3000", "T4000"), ids(journal.query(late.build())));
+    }
+
+    @Test
+    void cursorPagesThroughEveryEntryInBothDirections() {
+        TransactionJournal journal = new TransactionJournal();
+        List<String> posted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            append(journal, i * 1_000L, i);
+            posted.add("T" + i * 1_000L);
+        }
+
+        assertEquals(posted, allPages(journal, new HistoryQuery.Builder().limit(3).oldestFirst()));
+
+        List<String> newestFirst = new ArrayList<>(posted);
+        Collections.reverse(newestFirst);
+        assertEquals(newestFirst, allPages(journal, new HistoryQuery.Builder().limit(3)));
+    }
+
+    @Test
+    void typeFilterSkipsOtherTypesAcrossPages() {
+        TransactionJournal journal = new TransactionJournal();
+        for (int i = 0; i < 9; i++) {
+            TransactionType type = i % 3 == 0 ? TransactionType.WITHDRAWAL : TransactionType.DEPOSIT;
+            journal.append(i * 1_000L, 1L, type, "T" + i, "A1", null, "Entry", null);
+        }
+
+        assertEquals(List.of("T0", "T3", "T6"), allPages(journal, new HistoryQuery.Builder()
+                .types(TransactionType.WITHDRAWAL).limit(2).oldestFirst()));
+        assertEquals(List.of("T8", "T7", "T5", "T4", "T2", "T1"), allPages(journal, new HistoryQuery.Builder()
+                .types(TransactionType.DEPOSIT, TransactionType.FEE).limit(4)));
+        assertEquals(List.of(), allPages(journal, new HistoryQuery.Builder().types(TransactionType.FEE)));
+    }
+
+    @Test
+    void frozenJournalIgnoresLaterAppends() {
+        TransactionJournal journal = new TransactionJournal();
+        append(journal, 1_000L, 100L);
+        TransactionJournal frozen = journal.freeze();
+        for (int i = 0; i < 100; i++) {
+            append(journal, 2_000L + i, 1L);
+        }
+
+        assertEquals(1, frozen.size());
+        assertEquals(101, journal.size());
+        assertThrows(UnsupportedOperationException.class, () -> append(frozen, 5_000L, 1L));
+    }
+
+    @Test
+    void signedCentsFollowTransferDirection() {
+        TransactionJournal journal = new TransactionJournal();
+        journal.append(1_000L, 500L, TransactionType.TRANSFER, "T1", "A1", "A2", "Transfer", null);
+
+        assertEquals(Arrays.asList(-500L, 500L),
+                Arrays.asList(journal.getSignedCents(0, "A1"), journal.getSignedCents(0, "A2")));
+    }
+}
@@ -0,0 +1,30 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransactionTest {
+
+    @Test
+    void intLiteralAmountIsDollars() {
+        Transaction transaction = new Transaction.Builder("T1", "A1", 100, TransactionType.DEPOSIT, "Deposit").build();
+
+        assertEquals(10_000L, transaction.getAmountCents());
+        assertEquals(100.0, transaction.getAmount());
+    }
+
+    @Test
+    void ofCentsKeepsCents() {
+        Transaction transaction = Transaction.Builder.ofCents("T1", "A1", 100, TransactionType.DEPOSIT, "Deposit").build();
+
+        assertEquals(100L, transaction.getAmountCents());
+    }
+
+    @Test
+    void fractionalDollarsRoundToCents() {
+        Transaction transaction = new Transaction.Builder("T1", "A1", 0.1 + 0.2, TransactionType.DEPOSIT, "Deposit").build();
+
+        assertEquals(30L, transaction.getAmountCents());
+    }
+}
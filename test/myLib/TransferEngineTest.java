@@ -0,0 +1,133 @@
+package myLib;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferEngineTest {
+    @TempDir
+    Path root;
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @Test
+    void transferMovesMoneyAndIsReplayedAsOneRecord() {
+        PostingLog log = TestLogs.open(root);
+        CheckingAccount from = TestLogs.checking(log, "ACC-1");
+        CheckingAccount to = TestLogs.checking(log, "ACC-2");
+        from.depositCents(10_000, "D1");
+
+        assertEquals(PostingStatus.POSTED, new TransferEngine().transfer(from, to, 2_500L, "T1"));
+        assertEquals(7_500L, from.getBalanceCents());
+        assertEquals(2_500L, to.getBalanceCents());
+        assertEquals(from.getLastPostingLsn(), to.getLastPostingLsn());
+        log.close();
+
+        Map<String, Account> restored = TestLogs.restore(root);
+        assertEquals(7_500L, restored.get("ACC-1").getBalanceCents());
+        assertEquals(2_500L, restored.get("ACC-2").getBalanceCents());
+    }
+
+    @Test
+    void rejectedTransfersChangeNothing() {
+        PostingLog log = TestLogs.open(root);
+        CheckingAccount from = TestLogs.checking(log, "ACC-1");
+        CheckingAccount to = TestLogs.checking(log, "ACC-2");
+        TransferEngine engine = new TransferEngine();
+
+        assertEquals(PostingStatus.INSUFFICIENT_FUNDS, engine.transfer(from, to, 100L, "T1"));
+        assertEquals(PostingStatus.SAME_ACCOUNT, engine.transfer(from, from, 100L, "T2"));
+        assertEquals(PostingStatus.INVALID_AMOUNT, engine.transfer(from, to, 0L, "T3"));
+        assertEquals(0L, from.getBalanceCents());
+        assertEquals(0L, to.getBalanceCents());
+        log.close();
+    }
+
+    @Test
+    void logTornBetweenTheLegsRecoversNeither() throws IOException {
+        PostingLog log = TestLogs.open(root);
+        CheckingAccount from = TestLogs.checking(log, "ACC-1");
+        CheckingAccount to = TestLogs.checking(log, "ACC-2");
+        from.depositCents(10_000, "D1");
+        new TransferEngine().transfer(from, to, 2_500L, "T1");
+        log.close();
+
+        // Simulate a crash that persisted the debit leg but not the credit leg that follows it
+        Path segment;
+        try (Stream<Path> files = Files.list(root.resolve("wal"))) {
+            segment = files.sorted().collect(Collectors.toList()).get(0);
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        int creditLeg = indexOf(bytes, "Transfer from account ACC-1".getBytes(StandardCharsets.UTF_8));
+        assertTrue(creditLeg > 0);
+        for (int i = creditLeg; i < creditLeg + 64; i++) {
+            bytes[i] = 0;
+        }
+        Files.write(segment, bytes);
+
+        Map<String, Account> restored = TestLogs.restore(root);
+        assertEquals(10_000L, restored.get("ACC-1").getBalanceCents());
+        assertEquals(0L, restored.get("ACC-2").getBalanceCents());
+        assertEquals(1, restored.get("ACC-1").getTransactionHistory().size());
+        assertEquals(0, restored.get("ACC-2").getTransactionHistory().size());
+    }
+
+    @Test
+    void settleCommitsEveryTransferInTheBatch() {
+        PostingLog log = TestLogs.open(root);
+        CheckingAccount a = TestLogs.checking(log, "ACC-1");
+        CheckingAccount b = TestLogs.checking(log, "ACC-2");
+        a.depositCents(1_000, "D1");
+
+        PostingStatus[] statuses = new TransferEngine().settle(List.of(
+                new TransferEngine.Transfer(a, b, 600L, "T1"),
+                new TransferEngine.Transfer(a, b, 600L, "T2"),
+                new TransferEngine.Transfer(b, a, 100L, "T3")));
+        assertEquals(PostingStatus.POSTED, statuses[0]);
+        assertEquals(PostingStatus.INSUFFICIENT_FUNDS, statuses[1]);
+        assertEquals(PostingStatus.POSTED, statuses[2]);
+        log.close();
+
+        Map<String, Account> restored = TestLogs.restore(root);
+        assertEquals(500L, restored.get("ACC-1").getBalanceCents());
+        assertEquals(500L, restored.get("ACC-2").getBalanceCents());
+    }
+
+    @Test
+    void settleMakesAnOverdraftFeeDurableToo() {
+        // Syncs once four records are pending: the two opens, the transfer and its overdraft fee. The
+        // timer is kept out of the way so only the commit can have synced them.
+        PostingLog log = new PostingLog(root.resolve("wal"), SyncPolicy.BATCHED, 64 * 1024, 4, 60_000L);
+        CheckingAccount from = TestLogs.attach(log, new CheckingAccount("ACC-1", "user-1", 100.0, null));
+        CheckingAccount to = TestLogs.checking(log, "ACC-2");
+
+        PostingStatus[] statuses = new TransferEngine().settle(List.of(new TransferEngine.Transfer(from, to, 1_000L, "T1")));
+        assertEquals(PostingStatus.POSTED, statuses[0]);
+        assertEquals(-1_000L - from.getOverdraftFeeCents(), from.getBalanceCents());
+        assertTrue(from.getLastPostingLsn() > to.getLastPostingLsn());
+        assertEquals(log.getLastLsn(), log.getSyncedLsn());
+        log.close();
+    }
+}